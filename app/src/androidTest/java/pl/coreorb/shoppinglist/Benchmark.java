@@ -0,0 +1,17 @@
+package pl.coreorb.shoppinglist;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks tests measuring performance. Their timings depend on device and its load, so they only
+ * log results and are excluded from default test run. To run them:
+ * ./gradlew connectedAndroidTest -Pbenchmarks
+ * -Pandroid.testInstrumentationRunnerArguments.annotation=pl.coreorb.shoppinglist.Benchmark
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Benchmark {
+}
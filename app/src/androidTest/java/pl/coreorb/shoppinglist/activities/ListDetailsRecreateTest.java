@@ -0,0 +1,279 @@
+package pl.coreorb.shoppinglist.activities;
+
+import android.app.Activity;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.test.runner.lifecycle.ActivityLifecycleMonitorRegistry;
+import android.support.test.runner.lifecycle.Stage;
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import pl.coreorb.shoppinglist.R;
+import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataFuture;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataTask;
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that items added just before activity is recreated (e.g. rotated) get their ids, so they
+ * can still be edited and removed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListDetailsRecreateTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    @Rule
+    public ActivityTestRule<ListDetailsActivity> activityRule =
+            new ActivityTestRule<>(ListDetailsActivity.class, false, false);
+
+    private ContentResolver contentResolver;
+    private long shoppingListId;
+    private CountDownLatch writesBlocked;
+
+    @Before
+    public void setUp() {
+        contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        ShoppingList shoppingList = new ShoppingList();
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, "recreate test");
+        contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, shoppingList.getCreatedAt().getTimeInMillis());
+        contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, false);
+        shoppingListId = ContentUris.parseId(contentResolver.insert(
+                ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, contentValues));
+        shoppingList.setId(shoppingListId);
+        shoppingList.setTitle("recreate test");
+        shoppingList.setFullyLoaded(true);
+
+        Intent intent = new Intent(InstrumentationRegistry.getTargetContext(), ListDetailsActivity.class);
+        intent.putExtra(ListDetailsActivity.ARG_SHOPPING_LIST, shoppingList);
+        activityRule.launchActivity(intent);
+        waitForList();
+    }
+
+    @After
+    public void tearDown() {
+        if (writesBlocked != null) {
+            writesBlocked.countDown();
+        }
+        contentResolver.delete(ContentUris.withAppendedId(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                shoppingListId), null, null);
+    }
+
+    @Test
+    public void itemAddedBeforeRecreateCanBeEditedAndRemoved() throws Throwable {
+        blockWrites();
+        final Item kept = new Item(-1, "milk", false);
+        final Item removed = new Item(-1, "bread", false);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                getFragment().onItemAdded(kept);
+                getFragment().onItemAdded(removed);
+            }
+        });
+        recreate();
+        writesBlocked.countDown();
+
+        final Item restoredKept = waitForId("milk");
+        final Item restoredRemoved = waitForId("bread");
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Item previousItem = new Item(restoredKept.getId(), restoredKept.getContent(), restoredKept.isChecked());
+                restoredKept.setContent("milk 2%");
+                restoredKept.setChecked(true);
+                getFragment().onItemEdited(restoredKept, previousItem);
+                getFragment().onItemRemoveClicked(restoredRemoved);
+            }
+        });
+        finishWrites();
+
+        ArrayList<Item> items = queryItems();
+        assertEquals(1, items.size());
+        assertEquals(restoredKept.getId(), items.get(0).getId());
+        assertEquals("milk 2%", items.get(0).getContent());
+        assertTrue(items.get(0).isChecked());
+    }
+
+    @Test
+    public void itemRemovedWhileCreatedBeforeRecreateIsDeleted() throws Throwable {
+        blockWrites();
+        final Item item = new Item(-1, "eggs", false);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                getFragment().onItemAdded(item);
+                getFragment().onItemRemoveClicked(item);
+            }
+        });
+        recreate();
+        writesBlocked.countDown();
+        waitForList();
+        //item is found and deleted after write thread is released
+        finishWrites();
+        finishWrites();
+
+        assertEquals(0, queryItems().size());
+    }
+
+    /**
+     * Makes write thread wait until writesBlocked is counted down, so items added meanwhile are
+     * still being created when activity is recreated.
+     */
+    private void blockWrites() {
+        writesBlocked = new CountDownLatch(1);
+        new DataTask<Void>() {
+            @Override
+            protected Void doInBackground() {
+                try {
+                    writesBlocked.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        }.executeWrite();
+    }
+
+    private void recreate() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                getResumedActivity().recreate();
+            }
+        });
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        waitForList();
+    }
+
+    private void finishWrites() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                getFragment().finishWrites().addCallback(new DataFuture.Callback<Void>() {
+                    @Override
+                    public void onSuccess(Void value) {
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onFailure() {
+                        latch.countDown();
+                    }
+                });
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Waits until item with provided content shown by current fragment has id.
+     */
+    private Item waitForId(final String content) throws InterruptedException {
+        final Item[] found = new Item[1];
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    found[0] = null;
+                    for (Item item : getFragment().getCurrentShoppingList().getItems()) {
+                        if (item.getContent().equals(content) && item.getId() != -1) {
+                            found[0] = item;
+                        }
+                    }
+                }
+            });
+            if (found[0] != null) {
+                assertNotEquals(-1, found[0].getId());
+                return found[0];
+            }
+            Thread.sleep(50);
+        }
+        fail("Item " + content + " has no id");
+        return null;
+    }
+
+    /**
+     * Waits until current fragment shows list of items, so it accepts added items.
+     */
+    private void waitForList() {
+        final boolean[] shown = new boolean[1];
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!shown[0] && System.currentTimeMillis() < deadline) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    ListDetailsActivityFragment fragment = getFragment();
+                    shown[0] = fragment != null && fragment.getView() != null
+                            && ((RecyclerView) fragment.getView().findViewById(R.id.list_rv)).getAdapter() != null;
+                }
+            });
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+        assertTrue(shown[0]);
+    }
+
+    private ArrayList<Item> queryItems() {
+        ArrayList<Item> items = new ArrayList<>();
+        Cursor cursor = contentResolver.query(ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                new String[]{ItemsTable.COLUMN_ID, ItemsTable.COLUMN_CONTENT, ItemsTable.COLUMN_CHECKED},
+                ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?", new String[]{String.valueOf(shoppingListId)}, null);
+        assert cursor != null;
+        try {
+            while (cursor.moveToNext()) {
+                items.add(new Item(cursor.getLong(0), cursor.getString(1), cursor.getInt(2) == 1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+
+    /**
+     * Must be called on main thread.
+     */
+    private static ListDetailsActivityFragment getFragment() {
+        Activity activity = getResumedActivity();
+        if (!(activity instanceof ListDetailsActivity)) {
+            return null;
+        }
+        return (ListDetailsActivityFragment) ((ListDetailsActivity) activity).getSupportFragmentManager()
+                .findFragmentById(R.id.container);
+    }
+
+    /**
+     * Must be called on main thread.
+     */
+    private static Activity getResumedActivity() {
+        Collection<Activity> activities = ActivityLifecycleMonitorRegistry.getInstance()
+                .getActivitiesInStage(Stage.RESUMED);
+        return activities.isEmpty() ? null : activities.iterator().next();
+    }
+}
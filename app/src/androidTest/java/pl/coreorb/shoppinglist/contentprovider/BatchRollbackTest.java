@@ -0,0 +1,71 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.os.RemoteException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that batch with insert which doesn't insert row is rolled back as a whole.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchRollbackTest {
+
+    private static final String TITLE = "batch rollback test";
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        contentResolver.delete(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                ShoppingListsTable.COLUMN_TITLE + " = ?", new String[]{TITLE});
+    }
+
+    @Test
+    public void batchWithFailedInsertIsRolledBack() throws RemoteException {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI)
+                .withValue(ShoppingListsTable.COLUMN_TITLE, TITLE)
+                .build());
+        //rejected by foreign key, as shopping list doesn't exist
+        operations.add(ContentProviderOperation.newInsert(ShoppingListsContentProvider.ITEM_CONTENT_URI)
+                .withValue(ItemsTable.COLUMN_SHOPPING_LIST_ID, Long.MAX_VALUE)
+                .withValue(ItemsTable.COLUMN_CONTENT, "orphan")
+                .build());
+
+        try {
+            contentResolver.applyBatch(ShoppingListsContentProvider.AUTHORITY, operations);
+            fail("Batch with failed insert was applied");
+        } catch (OperationApplicationException e) {
+            //expected
+        }
+
+        Cursor cursor = contentResolver.query(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                new String[]{ShoppingListsTable.COLUMN_ID}, ShoppingListsTable.COLUMN_TITLE + " = ?",
+                new String[]{TITLE}, null);
+        assert cursor != null;
+        try {
+            assertEquals(0, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+}
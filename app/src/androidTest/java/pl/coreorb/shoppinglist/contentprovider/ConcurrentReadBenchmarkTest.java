@@ -0,0 +1,175 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import pl.coreorb.shoppinglist.Benchmark;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Stress benchmark measuring latency of main screen query while another thread keeps writing
+ * (like checkbox toggles in list details), with rollback journal and with write-ahead logging.
+ * Latencies are logged to compare, not asserted, as they depend on device.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+@Benchmark
+public class ConcurrentReadBenchmarkTest {
+
+    private static final String LOG_TAG = ConcurrentReadBenchmarkTest.class.getSimpleName();
+
+    private static final int SHOPPING_LISTS = 200;
+    private static final int ITEMS_PER_LIST = 20;
+    private static final int READER_THREADS = 3;
+    private static final int READS_PER_THREAD = 100;
+
+    private static final String MAIN_SCREEN_QUERY = "SELECT "
+            + ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID + ", "
+            + ShoppingListsTable.COLUMN_TITLE + ", "
+            + ItemsTable.COLUMN_CONTENT
+            + " FROM " + ShoppingListsTable.TABLE_SHOPPING_LISTS + " LEFT JOIN " + ItemsTable.TABLE_ITEMS
+            + " ON (" + ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID
+            + " = " + ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_SHOPPING_LIST_ID + ")"
+            + " WHERE " + ShoppingListsTable.COLUMN_ARCHIVED + " = 0 AND ("
+            + ItemsTable.COLUMN_CHECKED + " IS null OR " + ItemsTable.COLUMN_CHECKED + " != 1)"
+            + " ORDER BY " + ShoppingListsTable.COLUMN_CREATED_AT + " DESC, "
+            + ItemsTable.COLUMN_TIMESTAMP + " DESC";
+
+    @Test
+    public void readLatencyUnderWritesWithRollbackJournalAndWriteAheadLog() throws InterruptedException {
+        long[] rollback = runBenchmark(false);
+        long[] wal = runBenchmark(true);
+
+        Log.i(LOG_TAG, "rollback journal: " + describe(rollback));
+        Log.i(LOG_TAG, "write-ahead log:  " + describe(wal));
+        assertEquals(READER_THREADS * READS_PER_THREAD, rollback.length);
+        assertEquals(READER_THREADS * READS_PER_THREAD, wal.length);
+    }
+
+    /**
+     * Runs readers concurrently with single writer and returns sorted read latencies in microseconds.
+     */
+    private long[] runBenchmark(boolean writeAheadLogging) throws InterruptedException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        File file = context.getDatabasePath("benchmark_" + (writeAheadLogging ? "wal" : "rollback"));
+        SQLiteDatabase.deleteDatabase(file);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        final SQLiteDatabase db = SQLiteDatabase.openDatabase(file.getPath(), null,
+                SQLiteDatabase.CREATE_IF_NECESSARY
+                        | (writeAheadLogging ? SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING : 0));
+        try {
+            assertEquals(writeAheadLogging, db.isWriteAheadLoggingEnabled());
+            ShoppingListsTable.onCreate(db);
+            ItemsTable.onCreate(db);
+            insertData(db);
+
+            final AtomicBoolean running = new AtomicBoolean(true);
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long itemId = 1;
+                    ContentValues contentValues = new ContentValues();
+                    while (running.get()) {
+                        contentValues.put(ItemsTable.COLUMN_CHECKED, itemId % 2 == 0);
+                        db.update(ItemsTable.TABLE_ITEMS, contentValues,
+                                ItemsTable.COLUMN_ID + " = ?", new String[]{itemId + ""});
+                        itemId = itemId % (SHOPPING_LISTS * ITEMS_PER_LIST) + 1;
+                    }
+                }
+            });
+
+            final List<Long> latencies = new ArrayList<>();
+            final CountDownLatch finished = new CountDownLatch(READER_THREADS);
+            writer.start();
+            for (int i = 0; i < READER_THREADS; i++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        long[] threadLatencies = new long[READS_PER_THREAD];
+                        for (int j = 0; j < READS_PER_THREAD; j++) {
+                            long start = System.nanoTime();
+                            Cursor cursor = db.rawQuery(MAIN_SCREEN_QUERY, null);
+                            //noinspection StatementWithEmptyBody
+                            while (cursor.moveToNext()) {
+                                //read whole result like the application does
+                            }
+                            cursor.close();
+                            threadLatencies[j] = (System.nanoTime() - start) / 1000;
+                        }
+                        synchronized (latencies) {
+                            for (long latency : threadLatencies) {
+                                latencies.add(latency);
+                            }
+                        }
+                        finished.countDown();
+                    }
+                }).start();
+            }
+            finished.await();
+            running.set(false);
+            writer.join();
+
+            long[] result = new long[latencies.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = latencies.get(i);
+            }
+            Arrays.sort(result);
+            return result;
+        } finally {
+            db.close();
+            SQLiteDatabase.deleteDatabase(file);
+        }
+    }
+
+    private static void insertData(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            ContentValues contentValues = new ContentValues();
+            for (int i = 0; i < SHOPPING_LISTS; i++) {
+                contentValues.clear();
+                contentValues.put(ShoppingListsTable.COLUMN_TITLE, "list " + i);
+                contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, false);
+                contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, i);
+                long shoppingListId = db.insert(ShoppingListsTable.TABLE_SHOPPING_LISTS, null, contentValues);
+                for (int j = 0; j < ITEMS_PER_LIST; j++) {
+                    contentValues.clear();
+                    contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+                    contentValues.put(ItemsTable.COLUMN_CONTENT, "item " + j);
+                    contentValues.put(ItemsTable.COLUMN_CHECKED, false);
+                    contentValues.put(ItemsTable.COLUMN_TIMESTAMP, j);
+                    db.insert(ItemsTable.TABLE_ITEMS, null, contentValues);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private static String describe(long[] sorted) {
+        return "p50=" + percentile(sorted, 50) + "us p95=" + percentile(sorted, 95)
+                + "us p99=" + percentile(sorted, 99) + "us max=" + sorted[sorted.length - 1] + "us";
+    }
+}
@@ -0,0 +1,74 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that items are deleted together with their shopping list.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemsForeignKeyTest {
+
+    private ShoppingListsDatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new ShoppingListsDatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void deletingShoppingListDeletesItsItems() {
+        long deleted = insertShoppingList();
+        long kept = insertShoppingList();
+        insertItem(deleted);
+        insertItem(deleted);
+        insertItem(kept);
+
+        db.delete(ShoppingListsTable.TABLE_SHOPPING_LISTS, ShoppingListsTable.COLUMN_ID + " = " + deleted, null);
+
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ItemsTable.TABLE_ITEMS));
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, ItemsTable.TABLE_ITEMS,
+                ItemsTable.COLUMN_SHOPPING_LIST_ID + " = " + kept));
+        //triggers run also for items deleted by foreign key
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, SearchTable.TABLE_ITEMS_SEARCH));
+    }
+
+    @Test
+    public void itemWithoutShoppingListIsRejected() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, 12345);
+        contentValues.put(ItemsTable.COLUMN_CONTENT, "orphan");
+        assertEquals(-1, db.insert(ItemsTable.TABLE_ITEMS, null, contentValues));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, ItemsTable.TABLE_ITEMS));
+    }
+
+    private long insertShoppingList() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, "list");
+        return db.insert(ShoppingListsTable.TABLE_SHOPPING_LISTS, null, contentValues);
+    }
+
+    private void insertItem(long shoppingListId) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+        contentValues.put(ItemsTable.COLUMN_CONTENT, "item");
+        db.insert(ItemsTable.TABLE_ITEMS, null, contentValues);
+    }
+}
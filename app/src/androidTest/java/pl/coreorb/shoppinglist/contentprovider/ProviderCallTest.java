@@ -0,0 +1,191 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks operations run by content provider's call() and their results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProviderCallTest {
+
+    private static final String TITLE = "provider call test";
+
+    private ContentResolver contentResolver;
+
+    @Before
+    public void setUp() {
+        contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        deleteShoppingLists();
+    }
+
+    @After
+    public void tearDown() {
+        deleteShoppingLists();
+    }
+
+    @Test
+    public void checkAllAndUncheckAllChangeOnlyItemsOfShoppingList() {
+        long shoppingListId = insertShoppingList(System.currentTimeMillis());
+        long otherShoppingListId = insertShoppingList(System.currentTimeMillis());
+        insertItem(shoppingListId, "milk", false);
+        insertItem(shoppingListId, "bread", true);
+        insertItem(shoppingListId, "eggs", false);
+        insertItem(otherShoppingListId, "coffee", false);
+
+        Bundle result = call(ShoppingListsContentProvider.METHOD_CHECK_ALL, shoppingListId, null);
+        assertEquals(2, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+        assertEquals(Arrays.asList(true, true, true), queryCheckedStates(shoppingListId));
+        assertEquals(Arrays.asList(false), queryCheckedStates(otherShoppingListId));
+
+        result = call(ShoppingListsContentProvider.METHOD_UNCHECK_ALL, shoppingListId, null);
+        assertEquals(3, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+        assertEquals(Arrays.asList(false, false, false), queryCheckedStates(shoppingListId));
+    }
+
+    @Test
+    public void deleteCheckedRemovesOnlyCheckedItems() {
+        long shoppingListId = insertShoppingList(System.currentTimeMillis());
+        insertItem(shoppingListId, "milk", false);
+        insertItem(shoppingListId, "bread", true);
+        insertItem(shoppingListId, "eggs", true);
+
+        Bundle result = call(ShoppingListsContentProvider.METHOD_DELETE_CHECKED, shoppingListId, null);
+
+        assertEquals(2, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+        assertEquals(Arrays.asList(false), queryCheckedStates(shoppingListId));
+    }
+
+    @Test
+    public void archiveOlderThanArchivesOnlyOlderShoppingLists() {
+        //far in the past, so no other shopping list is older
+        long older = insertShoppingList(1000);
+        long newer = insertShoppingList(3000);
+
+        Bundle result = call(ShoppingListsContentProvider.METHOD_ARCHIVE_OLDER_THAN, 2000, null);
+
+        assertEquals(1, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+        assertTrue(isArchived(older));
+        assertFalse(isArchived(newer));
+        //already archived shopping list isn't counted again
+        result = call(ShoppingListsContentProvider.METHOD_ARCHIVE_OLDER_THAN, 2000, null);
+        assertEquals(0, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+    }
+
+    @Test
+    public void duplicateListCopiesItemsAsUnchecked() {
+        long shoppingListId = insertShoppingList(1000);
+        insertItem(shoppingListId, "milk", false);
+        insertItem(shoppingListId, "bread", true);
+        Bundle extras = new Bundle();
+        extras.putLong(ShoppingListsContentProvider.EXTRA_CREATED_AT, 5000);
+
+        Bundle result = call(ShoppingListsContentProvider.METHOD_DUPLICATE_LIST, shoppingListId, extras);
+
+        long copyId = result.getLong(ShoppingListsContentProvider.RESULT_ID);
+        assertNotEquals(-1, copyId);
+        assertNotEquals(shoppingListId, copyId);
+        assertEquals(2, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+        assertEquals(5000, queryCreatedAt(copyId));
+        assertEquals(Arrays.asList(false, false), queryCheckedStates(copyId));
+        assertEquals(Arrays.asList(false, true), queryCheckedStates(shoppingListId));
+    }
+
+    @Test
+    public void duplicateListOfMissingShoppingListReturnsNoId() {
+        Bundle result = call(ShoppingListsContentProvider.METHOD_DUPLICATE_LIST, Long.MAX_VALUE, null);
+
+        assertEquals(-1, result.getLong(ShoppingListsContentProvider.RESULT_ID));
+        assertEquals(0, result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+    }
+
+    private Bundle call(String method, long arg, Bundle extras) {
+        Bundle result = contentResolver.call(ShoppingListsContentProvider.BASE_CONTENT_URI, method,
+                String.valueOf(arg), extras);
+        assertNotNull(result);
+        return result;
+    }
+
+    private long insertShoppingList(long createdAt) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, TITLE);
+        contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, createdAt);
+        contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, false);
+        return ContentUris.parseId(contentResolver.insert(
+                ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, contentValues));
+    }
+
+    private void insertItem(long shoppingListId, String content, boolean checked) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+        contentValues.put(ItemsTable.COLUMN_CONTENT, content);
+        contentValues.put(ItemsTable.COLUMN_CHECKED, checked);
+        contentValues.put(ItemsTable.COLUMN_TIMESTAMP, System.currentTimeMillis());
+        contentResolver.insert(ShoppingListsContentProvider.ITEM_CONTENT_URI, contentValues);
+    }
+
+    /**
+     * Returns checked states of items of shopping list in order of insertion.
+     */
+    private List<Boolean> queryCheckedStates(long shoppingListId) {
+        List<Boolean> checkedStates = new ArrayList<>();
+        Cursor cursor = contentResolver.query(ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                new String[]{ItemsTable.COLUMN_CHECKED}, ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?",
+                new String[]{String.valueOf(shoppingListId)}, ItemsTable.COLUMN_ID);
+        assert cursor != null;
+        try {
+            while (cursor.moveToNext()) {
+                checkedStates.add(cursor.getInt(0) == 1);
+            }
+        } finally {
+            cursor.close();
+        }
+        return checkedStates;
+    }
+
+    private boolean isArchived(long shoppingListId) {
+        return queryShoppingListColumn(shoppingListId, ShoppingListsTable.COLUMN_ARCHIVED) == 1;
+    }
+
+    private long queryCreatedAt(long shoppingListId) {
+        return queryShoppingListColumn(shoppingListId, ShoppingListsTable.COLUMN_CREATED_AT);
+    }
+
+    private long queryShoppingListColumn(long shoppingListId, String column) {
+        Cursor cursor = contentResolver.query(ContentUris.withAppendedId(
+                ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, shoppingListId),
+                new String[]{column}, null, null, null);
+        assert cursor != null;
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void deleteShoppingLists() {
+        contentResolver.delete(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                ShoppingListsTable.COLUMN_TITLE + " = ?", new String[]{TITLE});
+    }
+}
@@ -0,0 +1,179 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on queries used by the application and checks that none of them
+ * falls back to full table scan and that paged and summary queries use their indexes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private ShoppingListsDatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new ShoppingListsDatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void itemsForShoppingListQueryUsesIndex() {
+        String[] projection = new String[]{ItemsTable.COLUMN_ID, ItemsTable.COLUMN_CONTENT,
+                ItemsTable.COLUMN_CHECKED};
+        assertNoFullScan(ShoppingListsContentProvider.ITEM_CONTENT_URI, projection,
+                ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?",
+                ItemsTable.COLUMN_TIMESTAMP + " DESC",
+                new String[]{"1"});
+    }
+
+    @Test
+    public void shoppingListsAndUncheckedItemsQueryUsesIndexes() {
+        String[] projection = new String[]{
+                ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID,
+                ShoppingListsTable.COLUMN_TITLE,
+                ShoppingListsTable.COLUMN_CREATED_AT,
+                ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_ID,
+                ItemsTable.COLUMN_CONTENT};
+        assertNoFullScan(ShoppingListsContentProvider.SHOPPING_LIST_AND_ITEM_CONTENT_URI, projection,
+                ShoppingListsTable.COLUMN_ARCHIVED + " = ? AND ("
+                        + ItemsTable.COLUMN_CHECKED + " IS null OR " + ItemsTable.COLUMN_CHECKED + " != ?)",
+                ShoppingListsTable.COLUMN_CREATED_AT + " DESC, " + ItemsTable.COLUMN_TIMESTAMP + " DESC",
+                new String[]{"0", "1"});
+    }
+
+    @Test
+    public void shoppingListSummariesQueryUsesIndexes() {
+        //shopping lists are read by archived state and creation time, summary of each one by
+        //unchecked items of shopping list
+        assertUsesIndexes(ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI, null,
+                ShoppingListsTable.COLUMN_ARCHIVED + " = ?",
+                ShoppingListsTable.COLUMN_CREATED_AT + " DESC",
+                new String[]{"0"},
+                ShoppingListsTable.INDEX_ARCHIVED_CREATED_AT, ItemsTable.INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP);
+    }
+
+    @Test
+    public void pageQueriesUseIndexes() {
+        assertUsesIndexes(ShoppingListsContentProvider.buildPageUri(
+                ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI, 30, 1000L, 5L),
+                null, ShoppingListsTable.COLUMN_ARCHIVED + " = ?",
+                ShoppingListsTable.COLUMN_CREATED_AT + " DESC, " + ShoppingListsTable.COLUMN_ID + " DESC",
+                new String[]{"0"},
+                ShoppingListsTable.INDEX_ARCHIVED_CREATED_AT, ItemsTable.INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP);
+        assertUsesIndexes(ShoppingListsContentProvider.buildPageUri(
+                ShoppingListsContentProvider.ITEM_CONTENT_URI, 50, 1000L, 5L),
+                null, ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?",
+                ItemsTable.COLUMN_TIMESTAMP + " DESC, " + ItemsTable.COLUMN_ID + " DESC",
+                new String[]{"1"},
+                ItemsTable.INDEX_SHOPPING_LIST_ID_TIMESTAMP);
+    }
+
+    @Test
+    public void deleteItemsOfShoppingListUsesIndex() {
+        assertNoFullScan("DELETE FROM " + ItemsTable.TABLE_ITEMS
+                        + " WHERE " + ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?",
+                new String[]{"1"});
+    }
+
+    @Test
+    public void singleRowQueriesUsePrimaryKey() {
+        assertNoFullScan(Uri.withAppendedPath(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, "1"),
+                null, null, null, null);
+        assertNoFullScan(Uri.withAppendedPath(ShoppingListsContentProvider.ITEM_CONTENT_URI, "1"),
+                null, null, null, null);
+    }
+
+    @Test
+    public void searchQueryUsesFullTextIndexes() {
+        assertNoFullScan(SearchTable.SEARCH_QUERY, new String[]{"kawa*", "kawa*"});
+    }
+
+    /**
+     * Builds query exactly like content provider does and checks its plan.
+     */
+    private void assertNoFullScan(Uri uri, String[] projection, String selection, String sortOrder,
+                                  String[] selectionArgs) {
+        String sql = ShoppingListsContentProvider.createQueryBuilder(uri, projection)
+                .buildQuery(projection, selection, null, null, sortOrder, null);
+        assertNoFullScan(sql, selectionArgs);
+    }
+
+    /**
+     * Builds query exactly like content provider does and checks that its plan has no full scan
+     * and uses all provided indexes (as covering indexes or not).
+     */
+    private void assertUsesIndexes(Uri uri, String[] projection, String selection, String sortOrder,
+                                   String[] selectionArgs, String... indexes) {
+        String sql = ShoppingListsContentProvider.createQueryBuilder(uri, projection)
+                .buildQuery(projection, selection, null, null, sortOrder, null);
+        String plan = assertNoFullScan(sql, selectionArgs);
+        for (String index : indexes) {
+            if (!plan.contains("USING INDEX " + index) && !plan.contains("USING COVERING INDEX " + index)) {
+                fail("Index " + index + " not used in query:\n" + sql + "\nplan:\n" + plan);
+            }
+        }
+    }
+
+    /**
+     * Checks that plan of query has no full scan.
+     *
+     * @return plan of query, one step per line
+     */
+    private String assertNoFullScan(String sql, String[] selectionArgs) {
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            StringBuilder plan = new StringBuilder();
+            boolean fullScan = false;
+            while (cursor.moveToNext()) {
+                String detail = cursor.getString(detailIndex);
+                plan.append(detail).append('\n');
+                if (isFullScan(detail)) {
+                    fullScan = true;
+                }
+            }
+            if (fullScan) {
+                fail("Full table scan in query:\n" + sql + "\nplan:\n" + plan);
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Plan step is full scan if it scans one of the tables without using any index, e.g.
+     * "SCAN TABLE items" (or "SCAN items" in newer SQLite versions). Scans of full-text search
+     * tables (e.g. "SCAN TABLE items_search VIRTUAL TABLE INDEX 3:") use their own index.
+     */
+    private static boolean isFullScan(String detail) {
+        if (!detail.startsWith("SCAN ") || detail.contains(" USING ")) {
+            return false;
+        }
+        String scanned = detail.substring("SCAN ".length());
+        if (scanned.startsWith("TABLE ")) {
+            scanned = scanned.substring("TABLE ".length());
+        }
+        String table = scanned.split(" ")[0];
+        return table.equals(ShoppingListsTable.TABLE_SHOPPING_LISTS)
+                || table.equals(ItemsTable.TABLE_ITEMS);
+    }
+}
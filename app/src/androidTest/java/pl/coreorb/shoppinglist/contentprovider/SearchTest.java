@@ -0,0 +1,167 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks full-text search tables kept in sync by triggers and search query.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchTest {
+
+    private static final String LOG_TAG = SearchTest.class.getSimpleName();
+
+    private ShoppingListsDatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new ShoppingListsDatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void matchesWithoutDiacriticsAndCase() {
+        long shoppingListId = insertShoppingList("Łazienka");
+        insertItem(shoppingListId, "Ręcznik kąpielowy");
+        insertItem(shoppingListId, "Żółta gąbka");
+
+        assertEquals(listOf("Ręcznik kąpielowy"), search("recznik"));
+        assertEquals(listOf("Ręcznik kąpielowy"), search("RĘCZ kąp"));
+        assertEquals(listOf("Żółta gąbka"), search("zolta"));
+        assertEquals(listOf("Łazienka"), search("lazien"));
+        assertEquals(listOf(), search("ręcznik zolta"));
+    }
+
+    @Test
+    public void shoppingListsAreRankedBeforeItems() {
+        long shoppingListId = insertShoppingList("Kawa i herbata");
+        insertItem(shoppingListId, "kawa ziarnista");
+        insertItem(shoppingListId, "kawa");
+
+        assertEquals(listOf("Kawa i herbata", "kawa", "kawa ziarnista"), search("kawa"));
+    }
+
+    @Test
+    public void itemsAreRankedByRelevance() {
+        long shoppingListId = insertShoppingList("list");
+        insertItem(shoppingListId, "kawa mielona");
+        insertItem(shoppingListId, "kawa, kawa i jeszcze raz kawa");
+        insertItem(shoppingListId, "mleko");
+
+        //more occurrences outweigh longer content
+        assertEquals(listOf("kawa, kawa i jeszcze raz kawa", "kawa mielona"), search("kawa"));
+    }
+
+    @Test
+    public void followsChangesOfItems() {
+        long shoppingListId = insertShoppingList("list");
+        long itemId = insertItem(shoppingListId, "mleko");
+
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_CONTENT, "masło");
+        db.update(ItemsTable.TABLE_ITEMS, contentValues, ItemsTable.COLUMN_ID + " = " + itemId, null);
+        assertEquals(listOf(), search("mleko"));
+        assertEquals(listOf("masło"), search("maslo"));
+
+        db.delete(ItemsTable.TABLE_ITEMS, ItemsTable.COLUMN_ID + " = " + itemId, null);
+        assertEquals(listOf(), search("maslo"));
+    }
+
+    @Test
+    public void ignoresQueryWithoutWords() {
+        assertNull(SearchTable.buildMatchExpression(" \"*-( "));
+        assertEquals("kawa* or* mleko*", SearchTable.buildMatchExpression("kawa OR \"mleko\""));
+    }
+
+    @Test
+    @LargeTest
+    public void searchFindsPrefixMatchesInLargeDataset() {
+        String[] contents = {"chleb", "mleko", "masło", "ręcznik", "kawa ziarnista", "herbata"};
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                long shoppingListId = insertShoppingList("list " + i);
+                for (int j = 0; j < 100; j++) {
+                    insertItem(shoppingListId, contents[(i + j) % contents.length] + " " + j);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        long start = System.nanoTime();
+        List<String> result = search("recz");
+        long durationMs = (System.nanoTime() - start) / 1000000;
+        Log.i(LOG_TAG, "search in 100000 items took " + durationMs + "ms");
+        assertEquals(50, result.size());
+        for (String text : result) {
+            assertTrue(text, text.startsWith("ręcznik"));
+        }
+    }
+
+    private long insertShoppingList(String title) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, title);
+        return db.insert(ShoppingListsTable.TABLE_SHOPPING_LISTS, null, contentValues);
+    }
+
+    private long insertItem(long shoppingListId, String content) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+        contentValues.put(ItemsTable.COLUMN_CONTENT, content);
+        return db.insert(ItemsTable.TABLE_ITEMS, null, contentValues);
+    }
+
+    private List<String> search(String query) {
+        String matchExpression = SearchTable.buildMatchExpression(query);
+        Cursor matches = db.rawQuery(SearchTable.SEARCH_QUERY, new String[]{matchExpression, matchExpression});
+        Cursor cursor;
+        try {
+            cursor = SearchTable.rankMatches(matches, 50);
+        } finally {
+            matches.close();
+        }
+        try {
+            List<String> result = new ArrayList<>();
+            int textIndex = cursor.getColumnIndexOrThrow(SearchTable.COLUMN_TEXT);
+            while (cursor.moveToNext()) {
+                result.add(cursor.getString(textIndex));
+            }
+            return result;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<String> listOf(String... texts) {
+        List<String> result = new ArrayList<>();
+        for (String text : texts) {
+            result.add(text);
+        }
+        return result;
+    }
+}
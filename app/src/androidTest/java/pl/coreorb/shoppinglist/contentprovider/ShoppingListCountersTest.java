@@ -0,0 +1,107 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks counters of items in shopping_lists table kept up to date by triggers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShoppingListCountersTest {
+
+    private ShoppingListsDatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new ShoppingListsDatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void countersFollowChangesOfItems() {
+        long first = insertShoppingList();
+        long second = insertShoppingList();
+        long milk = insertItem(first, false);
+        long bread = insertItem(first, true);
+        insertItem(second, false);
+        assertCounters(first, 1, 2);
+        assertCounters(second, 1, 1);
+
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_CHECKED, true);
+        db.update(ItemsTable.TABLE_ITEMS, contentValues, ItemsTable.COLUMN_ID + " = " + milk, null);
+        assertCounters(first, 0, 2);
+
+        contentValues.clear();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, second);
+        db.update(ItemsTable.TABLE_ITEMS, contentValues, ItemsTable.COLUMN_ID + " = " + bread, null);
+        assertCounters(first, 0, 1);
+        assertCounters(second, 1, 2);
+
+        db.delete(ItemsTable.TABLE_ITEMS, ItemsTable.COLUMN_SHOPPING_LIST_ID + " = " + second, null);
+        assertCounters(second, 0, 0);
+    }
+
+    @Test
+    public void changeOfItemUpdatesLastModified() {
+        long shoppingListId = insertShoppingList();
+        long before = System.currentTimeMillis();
+        insertItem(shoppingListId, false);
+
+        Cursor cursor = db.query(ShoppingListsTable.TABLE_SHOPPING_LISTS,
+                new String[]{ShoppingListsTable.COLUMN_LAST_MODIFIED},
+                ShoppingListsTable.COLUMN_ID + " = " + shoppingListId, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            //julianday() has millisecond precision, so allow small difference
+            assertTrue(cursor.getLong(0) >= before - 1);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long insertShoppingList() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, "list");
+        contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, 0);
+        return db.insert(ShoppingListsTable.TABLE_SHOPPING_LISTS, null, contentValues);
+    }
+
+    private long insertItem(long shoppingListId, boolean checked) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+        contentValues.put(ItemsTable.COLUMN_CONTENT, "item");
+        contentValues.put(ItemsTable.COLUMN_CHECKED, checked);
+        return db.insert(ItemsTable.TABLE_ITEMS, null, contentValues);
+    }
+
+    private void assertCounters(long shoppingListId, int uncheckedCount, int totalCount) {
+        Cursor cursor = db.query(ShoppingListsTable.TABLE_SHOPPING_LISTS,
+                new String[]{ShoppingListsTable.COLUMN_UNCHECKED_COUNT, ShoppingListsTable.COLUMN_TOTAL_COUNT},
+                ShoppingListsTable.COLUMN_ID + " = " + shoppingListId, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertArrayEquals(new int[]{uncheckedCount, totalCount},
+                    new int[]{cursor.getInt(0), cursor.getInt(1)});
+        } finally {
+            cursor.close();
+        }
+    }
+}
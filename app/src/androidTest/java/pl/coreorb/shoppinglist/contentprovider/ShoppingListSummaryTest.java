@@ -0,0 +1,84 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks summary of unchecked items computed by shopping list summary query.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShoppingListSummaryTest {
+
+    private ShoppingListsDatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        helper = new ShoppingListsDatabaseHelper(InstrumentationRegistry.getTargetContext(), null);
+        db = helper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void summaryListsNewestUncheckedItemsFirst() {
+        long shoppingListId = insertShoppingList();
+        insertItem(shoppingListId, "bread", 100, false);
+        insertItem(shoppingListId, "milk", 300, false);
+        insertItem(shoppingListId, "eggs", 200, false);
+        //same timestamp as milk, newer row comes first
+        insertItem(shoppingListId, "butter", 300, false);
+        insertItem(shoppingListId, "coffee", 400, true);
+
+        assertEquals("butter, milk, eggs, bread",
+                querySummary(ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI));
+        assertEquals("butter, milk", querySummary(ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI
+                .buildUpon()
+                .appendQueryParameter(ShoppingListsContentProvider.PARAM_SUMMARY_MAX_ITEMS, "2")
+                .build()));
+    }
+
+    private String querySummary(Uri uri) {
+        String[] projection = new String[]{ShoppingListsTable.COLUMN_UNCHECKED_ITEMS_SUMMARY};
+        String sql = ShoppingListsContentProvider.createQueryBuilder(uri, projection)
+                .buildQuery(projection, null, null, null, null, null);
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private long insertShoppingList() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, "list");
+        contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, 0);
+        return db.insert(ShoppingListsTable.TABLE_SHOPPING_LISTS, null, contentValues);
+    }
+
+    private long insertItem(long shoppingListId, String content, long timestamp, boolean checked) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+        contentValues.put(ItemsTable.COLUMN_CONTENT, content);
+        contentValues.put(ItemsTable.COLUMN_TIMESTAMP, timestamp);
+        contentValues.put(ItemsTable.COLUMN_CHECKED, checked);
+        return db.insert(ItemsTable.TABLE_ITEMS, null, contentValues);
+    }
+}
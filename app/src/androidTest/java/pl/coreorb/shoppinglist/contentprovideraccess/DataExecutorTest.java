@@ -0,0 +1,118 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.os.Looper;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that writes are executed in order and results are delivered on main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataExecutorTest {
+
+    private static final int TASKS = 50;
+
+    @Test
+    public void writesAreExecutedInOrderOfSubmitting() throws InterruptedException {
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            final int index = i;
+            new DataTask<Void>() {
+                @Override
+                protected Void doInBackground() {
+                    executed.add(index);
+                    return null;
+                }
+
+                @Override
+                protected void onPostExecute(Void result) {
+                    latch.countDown();
+                }
+            }.executeWrite();
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < TASKS; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+    }
+
+    @Test
+    public void resultIsDeliveredOnMainThread() throws InterruptedException {
+        final boolean[] onMainThread = new boolean[2];
+        final CountDownLatch latch = new CountDownLatch(1);
+        new DataTask<Boolean>() {
+            @Override
+            protected Boolean doInBackground() {
+                return Looper.myLooper() == Looper.getMainLooper();
+            }
+
+            @Override
+            protected void onPostExecute(Boolean result) {
+                onMainThread[0] = result;
+                onMainThread[1] = Looper.myLooper() == Looper.getMainLooper();
+                latch.countDown();
+            }
+        }.executeRead();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(false, onMainThread[0]);
+        assertEquals(true, onMainThread[1]);
+        assertTrue(DataExecutor.getInstance().getReadMetrics().getTasksCount() > 0);
+    }
+
+    @Test
+    public void cancelledWriteIsCompletedWithoutCallback() throws InterruptedException {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final boolean[] executed = new boolean[1];
+        final boolean[] delivered = new boolean[1];
+        final CountDownLatch done = new CountDownLatch(1);
+        //keeps write thread busy, so next task is cancelled before it starts
+        new DataTask<Void>() {
+            @Override
+            protected Void doInBackground() {
+                try {
+                    blocker.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return null;
+            }
+        }.executeWrite();
+        OperationHandle handle = new DataTask<Void>() {
+            @Override
+            protected Void doInBackground() {
+                executed[0] = true;
+                done.countDown();
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Void result) {
+                delivered[0] = true;
+            }
+        }.executeWrite();
+
+        handle.cancel();
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(handle.isCancelled());
+        assertTrue(executed[0]);
+        //give main thread time to deliver result, if it was (wrongly) posted
+        Thread.sleep(200);
+        assertEquals(false, delivered[0]);
+    }
+}
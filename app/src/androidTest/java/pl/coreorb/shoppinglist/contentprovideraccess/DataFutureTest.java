@@ -0,0 +1,180 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.os.Looper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that composed futures run dependent steps on background threads and deliver only final
+ * result on main thread, and that cancelled futures don't call callbacks.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataFutureTest {
+
+    @Test
+    public void dependentStepRunsWithoutReturningToMainThread() throws InterruptedException {
+        final boolean[] onMainThread = new boolean[3];
+        final int[] result = new int[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        DataFuture.write(new DataFuture.Operation<Integer>() {
+            @Override
+            public Integer perform() {
+                onMainThread[0] = isMainThread();
+                return 1;
+            }
+        }).then(new DataFuture.Step<Integer, Integer>() {
+            @Override
+            public DataFuture<Integer> apply(final Integer previous) {
+                return DataFuture.write(new DataFuture.Operation<Integer>() {
+                    @Override
+                    public Integer perform() {
+                        onMainThread[1] = isMainThread();
+                        return previous + 1;
+                    }
+                });
+            }
+        }).addCallback(new DataFuture.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer value) {
+                onMainThread[2] = isMainThread();
+                result[0] = value;
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure() {
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(onMainThread[0]);
+        assertFalse(onMainThread[1]);
+        assertTrue(onMainThread[2]);
+        assertEquals(2, result[0]);
+    }
+
+    @Test
+    public void allOfKeepsOrderOfFutures() throws InterruptedException {
+        final ArrayList<Integer> results = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(1);
+        DataFuture.allOf(Arrays.asList(read(1), read(2), read(3)))
+                .addCallback(new DataFuture.Callback<ArrayList<Integer>>() {
+                    @Override
+                    public void onSuccess(ArrayList<Integer> values) {
+                        results.addAll(values);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void onFailure() {
+                        latch.countDown();
+                    }
+                });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 2, 3), results);
+    }
+
+    @Test
+    public void combineFailsWhenAnyFutureFails() throws InterruptedException {
+        final boolean[] failed = new boolean[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        DataFuture<Integer> failing = DataFuture.read(new DataFuture.Operation<Integer>() {
+            @Override
+            public Integer perform() {
+                throw new IllegalStateException("test");
+            }
+        });
+        DataFuture.combine(read(1), failing, new DataFuture.Combiner<Integer, Integer, Integer>() {
+            @Override
+            public Integer combine(Integer first, Integer second) {
+                return first + second;
+            }
+        }).addCallback(new DataFuture.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer value) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailure() {
+                failed[0] = true;
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(failed[0]);
+    }
+
+    @Test
+    public void cancelledWriteIsCompletedWithoutCallingCallbacks() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final boolean[] performed = new boolean[1];
+        final boolean[] called = new boolean[1];
+        DataFuture<Integer> future = DataFuture.write(new DataFuture.Operation<Integer>() {
+            @Override
+            public Integer perform() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                performed[0] = true;
+                return 1;
+            }
+        });
+        future.addCallback(new DataFuture.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer value) {
+                called[0] = true;
+            }
+
+            @Override
+            public void onFailure() {
+                called[0] = true;
+            }
+        });
+        future.cancel();
+        //cancelled write is still running
+        assertTrue(future.isCancelled());
+        assertFalse(future.isFinished());
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!future.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(future.isFinished());
+        assertTrue(performed[0]);
+        //callbacks would be delivered on main thread, if they weren't dropped
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertFalse(called[0]);
+    }
+
+    private static DataFuture<Integer> read(final int value) {
+        return DataFuture.read(new DataFuture.Operation<Integer>() {
+            @Override
+            public Integer perform() {
+                return value;
+            }
+        });
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+}
@@ -0,0 +1,153 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import pl.coreorb.shoppinglist.pojos.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that updates of the same item are merged, that buffer is written FLUSH_DELAY_MILLIS
+ * after first update and immediately when MAX_PENDING_ITEMS items are buffered.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemWriteBufferTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final UpdateCallback<Item> IGNORED = callback(new boolean[1], 0);
+
+    private final RecordingContentProviderAccess contentProviderAccess = new RecordingContentProviderAccess();
+
+    @After
+    public void tearDown() {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ItemWriteBuffer.getInstance().flush();
+            }
+        });
+    }
+
+    @Test
+    public void updatesOfTheSameItemAreMerged() throws InterruptedException {
+        final boolean[] called = new boolean[3];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ItemWriteBuffer buffer = ItemWriteBuffer.getInstance();
+                buffer.update(contentProviderAccess, new Item(1, "milk", false), callback(called, 0));
+                buffer.update(contentProviderAccess, new Item(2, "bread", false), callback(called, 1));
+                buffer.update(contentProviderAccess, new Item(1, "milk 2%", true), callback(called, 2));
+            }
+        });
+
+        ArrayList<Item> written = nextWrite();
+        assertEquals(2, written.size());
+        assertEquals(1, written.get(0).getId());
+        assertEquals("milk 2%", written.get(0).getContent());
+        assertTrue(written.get(0).isChecked());
+        assertEquals(2, written.get(1).getId());
+        assertTrue(called[0] && called[1] && called[2]);
+        assertNull(contentProviderAccess.writes.poll(ItemWriteBuffer.FLUSH_DELAY_MILLIS * 2, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void bufferIsWrittenAfterDelayFromFirstUpdate() throws InterruptedException {
+        final long start = System.nanoTime();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ItemWriteBuffer.getInstance().update(contentProviderAccess, new Item(1, "milk", false), IGNORED);
+            }
+        });
+        Thread.sleep(ItemWriteBuffer.FLUSH_DELAY_MILLIS / 2);
+        //later update doesn't postpone write
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ItemWriteBuffer.getInstance().update(contentProviderAccess, new Item(2, "bread", false), IGNORED);
+            }
+        });
+
+        assertEquals(2, nextWrite().size());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(contentProviderAccess.lastWriteNanos - start);
+        assertTrue(String.valueOf(elapsedMillis), elapsedMillis >= ItemWriteBuffer.FLUSH_DELAY_MILLIS);
+    }
+
+    @Test
+    public void bufferIsWrittenImmediatelyWhenFull() {
+        final boolean[] writtenBeforeFull = new boolean[1];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ItemWriteBuffer buffer = ItemWriteBuffer.getInstance();
+                for (int i = 1; i < ItemWriteBuffer.MAX_PENDING_ITEMS; i++) {
+                    buffer.update(contentProviderAccess, new Item(i, "item " + i, false), IGNORED);
+                }
+                writtenBeforeFull[0] = !contentProviderAccess.writes.isEmpty();
+                buffer.update(contentProviderAccess, new Item(ItemWriteBuffer.MAX_PENDING_ITEMS, "last", false), IGNORED);
+            }
+        });
+
+        assertFalse(writtenBeforeFull[0]);
+        ArrayList<Item> written = contentProviderAccess.writes.poll();
+        assertNotNull(written);
+        assertEquals(ItemWriteBuffer.MAX_PENDING_ITEMS, written.size());
+    }
+
+    private ArrayList<Item> nextWrite() throws InterruptedException {
+        ArrayList<Item> written = contentProviderAccess.writes.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull(written);
+        return written;
+    }
+
+    private static UpdateCallback<Item> callback(final boolean[] called, final int index) {
+        return new UpdateCallback<Item>() {
+            @Override
+            public void onSuccess(Item object) {
+                called[index] = true;
+            }
+
+            @Override
+            public void onFailure() {
+            }
+        };
+    }
+
+    private static void runOnMainSync(Runnable runnable) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(runnable);
+    }
+
+    /**
+     * Records items written by buffer instead of writing them and reports success at once.
+     */
+    private static class RecordingContentProviderAccess extends ContentProviderAccess {
+
+        final LinkedBlockingQueue<ArrayList<Item>> writes = new LinkedBlockingQueue<>();
+        volatile long lastWriteNanos;
+
+        RecordingContentProviderAccess() {
+            super(InstrumentationRegistry.getTargetContext().getContentResolver());
+        }
+
+        @Override
+        void writeBufferedItemUpdates(ArrayList<Item> items, UpdateCallback<ArrayList<Item>> callback) {
+            lastWriteNanos = System.nanoTime();
+            callback.onSuccess(items);
+            writes.add(items);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that prefetching stops when all cached items reach memory budget and that shopping
+ * lists already in cache are skipped without marking them as recently used.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ItemsPrefetcherTest {
+
+    private static final String TITLE = "items prefetcher test";
+    private static final int ITEMS_COUNT = 10;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ContentResolver contentResolver;
+    private ContentProviderAccess contentProviderAccess;
+
+    @Before
+    public void setUp() {
+        contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        contentProviderAccess = new ContentProviderAccess(contentResolver);
+        deleteShoppingLists();
+    }
+
+    @After
+    public void tearDown() {
+        deleteShoppingLists();
+    }
+
+    @Test
+    public void prefetchingStopsAtBudgetOfAllCachedItems() throws InterruptedException {
+        ShoppingListCache cache = new ShoppingListCache(ShoppingListCache.DEFAULT_MAX_SIZE_BYTES);
+        ShoppingList cached = insertShoppingList();
+        ShoppingList first = insertShoppingList();
+        ShoppingList second = insertShoppingList();
+        cache.put(cached.getId(), items(), cache.getGeneration());
+        int shoppingListSizeBytes = cache.getSizeBytes();
+
+        //room for first shopping list next to already cached one, but not for second
+        ItemsPrefetcher prefetcher = new ItemsPrefetcher(contentProviderAccess, cache,
+                2 * shoppingListSizeBytes + shoppingListSizeBytes / 2);
+        prefetch(prefetcher, Arrays.asList(first, second));
+
+        assertTrue(cache.contains(first.getId()));
+        assertFalse(cache.contains(second.getId()));
+    }
+
+    @Test
+    public void cachedShoppingListIsSkippedWithoutMarkingItAsUsed() throws InterruptedException {
+        ShoppingListCache cache = new ShoppingListCache(ShoppingListCache.DEFAULT_MAX_SIZE_BYTES);
+        ShoppingList older = insertShoppingList();
+        ShoppingList newer = insertShoppingList();
+        ShoppingList prefetched = insertShoppingList();
+        cache.put(older.getId(), items(), cache.getGeneration());
+        int shoppingListSizeBytes = cache.getSizeBytes();
+        //room for two shopping lists, so prefetching third one evicts least recently used
+        cache.setMaxSizeBytes(2 * shoppingListSizeBytes + shoppingListSizeBytes / 2);
+        cache.put(older.getId(), items(), cache.getGeneration());
+        cache.put(newer.getId(), items(), cache.getGeneration());
+
+        ItemsPrefetcher prefetcher = new ItemsPrefetcher(contentProviderAccess, cache, Integer.MAX_VALUE);
+        prefetch(prefetcher, Arrays.asList(older, prefetched));
+
+        assertTrue(cache.contains(prefetched.getId()));
+        assertTrue(cache.contains(newer.getId()));
+        assertFalse(cache.contains(older.getId()));
+    }
+
+    private void prefetch(final ItemsPrefetcher prefetcher, final List<ShoppingList> shoppingLists)
+            throws InterruptedException {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                prefetcher.prefetch(shoppingLists);
+            }
+        });
+        final boolean[] prefetching = {true};
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (prefetching[0] && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    prefetching[0] = prefetcher.isPrefetching();
+                }
+            });
+        }
+        assertFalse(prefetching[0]);
+    }
+
+    /**
+     * Inserts shopping list with ITEMS_COUNT items, which have the same size as items().
+     */
+    private ShoppingList insertShoppingList() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, TITLE);
+        contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, System.currentTimeMillis());
+        contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, false);
+        long shoppingListId = ContentUris.parseId(contentResolver.insert(
+                ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, contentValues));
+        for (Item item : items()) {
+            contentValues = new ContentValues();
+            contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListId);
+            contentValues.put(ItemsTable.COLUMN_CONTENT, item.getContent());
+            contentValues.put(ItemsTable.COLUMN_CHECKED, false);
+            contentValues.put(ItemsTable.COLUMN_TIMESTAMP, System.currentTimeMillis());
+            contentResolver.insert(ShoppingListsContentProvider.ITEM_CONTENT_URI, contentValues);
+        }
+        ShoppingList shoppingList = new ShoppingList();
+        shoppingList.setId(shoppingListId);
+        shoppingList.setTitle(TITLE);
+        shoppingList.setItemsCount(ITEMS_COUNT);
+        return shoppingList;
+    }
+
+    private static ArrayList<Item> items() {
+        ArrayList<Item> items = new ArrayList<>();
+        for (int i = 0; i < ITEMS_COUNT; i++) {
+            items.add(new Item(i + 1, "item " + i, false));
+        }
+        return items;
+    }
+
+    private void deleteShoppingLists() {
+        contentResolver.delete(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                ShoppingListsTable.COLUMN_TITLE + " = ?", new String[]{TITLE});
+    }
+}
@@ -0,0 +1,196 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that changes between results of observed query contain only changed rows, that query
+ * is run again when data changes, that changes in quick succession cause single re-query and
+ * that appended pages are re-read.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ObservableQueryTest {
+
+    private static final String TITLE = "observable query test";
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private ContentResolver contentResolver;
+    private final LinkedBlockingQueue<ArrayList<ShoppingList>> results = new LinkedBlockingQueue<>();
+    private final QueryCallback<ShoppingList> callback = new QueryCallback<ShoppingList>() {
+        @Override
+        public void onChanged(ArrayList<ShoppingList> objects, DiffUtil.DiffResult diff) {
+            results.add(objects);
+        }
+
+        @Override
+        public void onFailure() {
+            results.add(new ArrayList<ShoppingList>());
+        }
+    };
+    private ObservableQuery<ShoppingList> query;
+
+    @Before
+    public void setUp() {
+        contentResolver = InstrumentationRegistry.getTargetContext().getContentResolver();
+        deleteShoppingLists();
+    }
+
+    @After
+    public void tearDown() {
+        if (query != null) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    query.unsubscribe(callback);
+                }
+            });
+        }
+        deleteShoppingLists();
+    }
+
+    @Test
+    public void diffContainsOnlyChangedRows() {
+        ArrayList<ShoppingList> previous = new ArrayList<>(Arrays.asList(
+                shoppingList(1, "groceries"), shoppingList(2, "party"), shoppingList(3, "garden")));
+        ArrayList<ShoppingList> current = new ArrayList<>(Arrays.asList(
+                shoppingList(4, "pharmacy"), shoppingList(1, "groceries 2"), shoppingList(3, "garden")));
+
+        final int[] counts = new int[3];
+        ObservableQuery.diff(previous, current, RowMappers.SHOPPING_LIST_COMPARATOR).dispatchUpdatesTo(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                counts[0] += count;
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                counts[1] += count;
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                counts[2] += count;
+            }
+        });
+
+        //pharmacy inserted, party removed, groceries renamed, garden untouched
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[2]);
+    }
+
+    @Test
+    public void queryIsRunAgainWhenDataChanges() throws InterruptedException {
+        subscribe(0);
+        assertEquals(0, nextResult().size());
+
+        long id = insertShoppingList(1000);
+
+        ArrayList<ShoppingList> result = nextResult();
+        assertEquals(1, result.size());
+        assertEquals(id, result.get(0).getId());
+    }
+
+    @Test
+    public void changesInQuickSuccessionCauseSingleQuery() throws InterruptedException {
+        subscribe(0);
+        nextResult();
+
+        for (int i = 0; i < 5; i++) {
+            contentResolver.notifyChange(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, null);
+        }
+
+        assertNotNull(nextResult());
+        assertNull(results.poll(ObservableQuery.DEBOUNCE_MILLIS * 5, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void appendedPageIsReadAgain() throws InterruptedException {
+        final long newerId = insertShoppingList(2000);
+        final long olderId = insertShoppingList(1000);
+        subscribe(1);
+        final ArrayList<ShoppingList> firstPage = nextResult();
+        assertEquals(1, firstPage.size());
+        assertEquals(newerId, firstPage.get(0).getId());
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                query.appendPage(new ArrayList<>(Arrays.asList(shoppingList(olderId, TITLE))));
+            }
+        });
+        contentResolver.notifyChange(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, null);
+
+        ArrayList<ShoppingList> result = nextResult();
+        assertEquals(2, result.size());
+        assertEquals(olderId, result.get(1).getId());
+    }
+
+    private void subscribe(final int limit) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                query = new ObservableQuery<>(contentResolver, ShoppingListsContentProvider.BASE_CONTENT_URI,
+                        ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI,
+                        ShoppingListsTable.COLUMN_TITLE + " = ?", new String[]{TITLE},
+                        ShoppingListsTable.COLUMN_CREATED_AT + " DESC",
+                        RowMappers.SHOPPING_LIST_SUMMARY, RowMappers.SHOPPING_LIST_COMPARATOR, limit);
+                query.subscribe(callback);
+            }
+        });
+    }
+
+    private ArrayList<ShoppingList> nextResult() throws InterruptedException {
+        ArrayList<ShoppingList> result = results.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull(result);
+        return result;
+    }
+
+    private long insertShoppingList(long createdAt) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, TITLE);
+        contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, createdAt);
+        contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, false);
+        return ContentUris.parseId(contentResolver.insert(
+                ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, contentValues));
+    }
+
+    private void deleteShoppingLists() {
+        contentResolver.delete(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                ShoppingListsTable.COLUMN_TITLE + " = ?", new String[]{TITLE});
+    }
+
+    private static ShoppingList shoppingList(long id, String title) {
+        ShoppingList shoppingList = new ShoppingList();
+        shoppingList.setId(id);
+        shoppingList.setTitle(title);
+        return shoppingList;
+    }
+}
@@ -0,0 +1,129 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+
+import pl.coreorb.shoppinglist.Benchmark;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of mapping rows to shopping lists with columns resolved once per cursor, compared
+ * with looking columns up in every row.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class RowMapperBenchmarkTest {
+
+    private static final String LOG_TAG = RowMapperBenchmarkTest.class.getSimpleName();
+
+    private static final int ROWS = 10000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void rowMapperMapsTheSameAsLookingUpColumns() {
+        MatrixCursor cursor = createCursor();
+        ArrayList<ShoppingList> expected = mapLookingUpColumns(cursor);
+        ArrayList<ShoppingList> mapped = mapWithRowMapper(cursor);
+        cursor.close();
+
+        assertEquals(ROWS, mapped.size());
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(expected.get(i).getId(), mapped.get(i).getId());
+            assertEquals(expected.get(i).getTitle(), mapped.get(i).getTitle());
+            assertEquals(expected.get(i).isArchived(), mapped.get(i).isArchived());
+            assertEquals(expected.get(i).getCreatedAt().getTimeInMillis(), mapped.get(i).getCreatedAt().getTimeInMillis());
+            assertEquals(expected.get(i).getUncheckedItemsCount(), mapped.get(i).getUncheckedItemsCount());
+            assertEquals(expected.get(i).getItemsCount(), mapped.get(i).getItemsCount());
+            assertEquals(expected.get(i).getLastModified(), mapped.get(i).getLastModified());
+        }
+    }
+
+    /**
+     * Times are logged to compare, not asserted, as they depend on device.
+     */
+    @Test
+    @Benchmark
+    public void rowMapperAndLookingUpColumnsInEveryRow() {
+        MatrixCursor cursor = createCursor();
+        //warm up both, so JIT doesn't favour the second one
+        mapLookingUpColumns(cursor);
+        mapWithRowMapper(cursor);
+
+        long lookingUpNanos = Long.MAX_VALUE;
+        long rowMapperNanos = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            mapLookingUpColumns(cursor);
+            lookingUpNanos = Math.min(lookingUpNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            ArrayList<ShoppingList> mapped = mapWithRowMapper(cursor);
+            rowMapperNanos = Math.min(rowMapperNanos, System.nanoTime() - start);
+            assertEquals(ROWS, mapped.size());
+        }
+        cursor.close();
+
+        Log.i(LOG_TAG, "per row: looking up columns " + lookingUpNanos / ROWS + "ns, row mapper "
+                + rowMapperNanos / ROWS + "ns");
+    }
+
+    @Test
+    public void columnsWithTheSameNameAreTakenByPosition() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "title", "created_at", "_id", "content"});
+        cursor.addRow(new Object[]{1, "list", 0, 10, "milk"});
+        cursor.addRow(new Object[]{1, "list", 0, 11, "bread"});
+
+        ArrayList<ShoppingList> result = RowMappers.groupShoppingListsWithItems(cursor, false);
+
+        assertEquals(1, result.size());
+        assertEquals(10, result.get(0).getItems().get(0).getId());
+        assertEquals(11, result.get(0).getItems().get(1).getId());
+    }
+
+    private static MatrixCursor createCursor() {
+        MatrixCursor cursor = new MatrixCursor(RowMappers.SHOPPING_LIST.getProjection(), ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{i, "list " + i, i % 2, i * 1000L, i % 7, i % 11, i * 1000L});
+        }
+        return cursor;
+    }
+
+    private static ArrayList<ShoppingList> mapWithRowMapper(Cursor cursor) {
+        cursor.moveToPosition(-1);
+        return RowMappers.SHOPPING_LIST.mapAll(cursor);
+    }
+
+    /**
+     * Mapping used before, kept to compare with.
+     */
+    private static ArrayList<ShoppingList> mapLookingUpColumns(Cursor cursor) {
+        cursor.moveToPosition(-1);
+        ArrayList<ShoppingList> result = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            ShoppingList item = new ShoppingList();
+            item.setId(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_ID)));
+            item.setTitle(cursor.getString(cursor.getColumnIndex(ShoppingListsTable.COLUMN_TITLE)));
+            item.setArchived(cursor.getShort(cursor.getColumnIndex(ShoppingListsTable.COLUMN_ARCHIVED)) == 1);
+            GregorianCalendar cal = new GregorianCalendar();
+            cal.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_CREATED_AT)));
+            item.setCreatedAt(cal);
+            item.setUncheckedItemsCount(cursor.getInt(cursor.getColumnIndex(ShoppingListsTable.COLUMN_UNCHECKED_COUNT)));
+            item.setItemsCount(cursor.getInt(cursor.getColumnIndex(ShoppingListsTable.COLUMN_TOTAL_COUNT)));
+            item.setLastModified(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_LAST_MODIFIED)));
+            result.add(item);
+        }
+        return result;
+    }
+}
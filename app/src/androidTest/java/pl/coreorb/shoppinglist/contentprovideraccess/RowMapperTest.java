@@ -0,0 +1,45 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Checks that columns of joined tables with the same name are taken by position and that cursor
+ * whose columns can't be told apart is rejected instead of read from wrong column.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowMapperTest {
+
+    @Test
+    public void joinedColumnsWithSameNameAreTakenByPosition() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "title", "created_at", "_id", "content"});
+
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4}, RowMappers.SHOPPING_LIST_AND_ITEM.resolveColumns(cursor));
+    }
+
+    @Test
+    public void columnsInOtherOrderAreFoundByName() {
+        RowMapper<Long> mapper = new RowMapper<Long>("shopping_lists._id", "title", "created_at") {
+            @Override
+            Long mapRow(Cursor cursor, int[] columns) {
+                return cursor.getLong(columns[0]);
+            }
+        };
+        MatrixCursor cursor = new MatrixCursor(new String[]{"title", "_id", "archived", "created_at"});
+
+        assertArrayEquals(new int[]{1, 0, 3}, mapper.resolveColumns(cursor));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ambiguousColumnIsRejected() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "title", "_id", "created_at", "content"});
+
+        RowMappers.SHOPPING_LIST_AND_ITEM.resolveColumns(cursor);
+    }
+}
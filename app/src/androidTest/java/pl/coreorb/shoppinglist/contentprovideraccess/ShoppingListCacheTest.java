@@ -0,0 +1,90 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import pl.coreorb.shoppinglist.pojos.Item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that cache keeps own copies of items, stays within its memory budget, skips data
+ * read before invalidation and evicts shopping lists of changed items. Every test uses its own
+ * cache, not the process-wide one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ShoppingListCacheTest {
+
+    private ShoppingListCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ShoppingListCache(ShoppingListCache.DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    @Test
+    public void returnedItemsAreCopies() {
+        cache.put(1, items(1, 2), cache.getGeneration());
+
+        ArrayList<Item> items = cache.getItems(1);
+        assertNotNull(items);
+        items.get(0).setChecked(true);
+        items.clear();
+
+        ArrayList<Item> cachedItems = cache.getItems(1);
+        assertNotNull(cachedItems);
+        assertEquals(2, cachedItems.size());
+        assertFalse(cachedItems.get(0).isChecked());
+    }
+
+    @Test
+    public void leastRecentlyUsedShoppingListIsEvictedOverBudget() {
+        cache.setMaxSizeBytes(1000);
+        cache.put(1, items(1, 2, 3), cache.getGeneration());
+        cache.put(2, items(4, 5, 6), cache.getGeneration());
+        cache.getItems(1);
+        cache.put(3, items(7, 8, 9), cache.getGeneration());
+
+        assertNotNull(cache.getItems(1));
+        assertNull(cache.getItems(2));
+        assertNotNull(cache.getItems(3));
+    }
+
+    @Test
+    public void itemsReadBeforeInvalidationAreNotCached() {
+        int generation = cache.getGeneration();
+        cache.remove(1);
+        cache.put(1, items(1), generation);
+
+        assertNull(cache.getItems(1));
+    }
+
+    @Test
+    public void shoppingListOfChangedItemIsEvicted() {
+        cache.put(1, items(1, 2), cache.getGeneration());
+        cache.put(2, items(3), cache.getGeneration());
+        int generation = cache.getGeneration();
+
+        cache.removeShoppingListsOfItems(2);
+        cache.put(1, items(1, 2), generation);
+
+        assertNull(cache.getItems(1));
+        assertNotNull(cache.getItems(2));
+    }
+
+    private static ArrayList<Item> items(long... ids) {
+        ArrayList<Item> items = new ArrayList<>();
+        for (long id : ids) {
+            items.add(new Item(id, "item " + id, false));
+        }
+        return items;
+    }
+}
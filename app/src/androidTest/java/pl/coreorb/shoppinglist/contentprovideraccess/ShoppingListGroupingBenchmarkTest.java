@@ -0,0 +1,121 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.filters.LargeTest;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+
+import pl.coreorb.shoppinglist.Benchmark;
+import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of grouping rows of shopping lists joined with items, comparing single pass grouping
+ * with previous search of every row's shopping list in already grouped ones.
+ */
+@RunWith(AndroidJUnit4.class)
+@LargeTest
+public class ShoppingListGroupingBenchmarkTest {
+
+    private static final String LOG_TAG = ShoppingListGroupingBenchmarkTest.class.getSimpleName();
+
+    private static final int SHOPPING_LISTS = 1000;
+    private static final int ITEMS_PER_LIST = 50;
+
+    @Test
+    public void singlePassGroupingGroupsTheSameAsSearching() {
+        MatrixCursor cursor = createCursor();
+
+        cursor.moveToPosition(-1);
+        ArrayList<ShoppingList> previous = groupBySearching(cursor);
+        cursor.moveToPosition(-1);
+        ArrayList<ShoppingList> grouped = RowMappers.groupShoppingListsWithItems(cursor, false);
+        cursor.close();
+
+        assertEquals(previous.size(), grouped.size());
+        for (int i = 0; i < grouped.size(); i++) {
+            assertEquals(previous.get(i).getId(), grouped.get(i).getId());
+            assertEquals(previous.get(i).getItems().size(), grouped.get(i).getItems().size());
+        }
+        assertEquals(ITEMS_PER_LIST, grouped.get(0).getItems().size());
+    }
+
+    /**
+     * Times are logged to compare, not asserted, as they depend on device.
+     */
+    @Test
+    @Benchmark
+    public void singlePassGroupingAndSearching() {
+        MatrixCursor cursor = createCursor();
+
+        cursor.moveToPosition(-1);
+        long start = System.nanoTime();
+        groupBySearching(cursor);
+        long previousNanos = System.nanoTime() - start;
+
+        cursor.moveToPosition(-1);
+        start = System.nanoTime();
+        ArrayList<ShoppingList> grouped = RowMappers.groupShoppingListsWithItems(cursor, false);
+        long groupedNanos = System.nanoTime() - start;
+        cursor.close();
+
+        Log.i(LOG_TAG, "searching: " + previousNanos / 1000000 + "ms, single pass: "
+                + groupedNanos / 1000000 + "ms");
+        assertEquals(SHOPPING_LISTS, grouped.size());
+    }
+
+    /**
+     * Creates cursor with rows like returned by join of shopping lists and items, sorted by
+     * shopping list.
+     */
+    private static MatrixCursor createCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{ShoppingListsTable.COLUMN_ID,
+                ShoppingListsTable.COLUMN_TITLE, ShoppingListsTable.COLUMN_CREATED_AT,
+                ItemsTable.COLUMN_ID, ItemsTable.COLUMN_CONTENT}, SHOPPING_LISTS * ITEMS_PER_LIST);
+        long itemId = 0;
+        for (int i = SHOPPING_LISTS; i > 0; i--) {
+            for (int j = 0; j < ITEMS_PER_LIST; j++) {
+                cursor.addRow(new Object[]{i, "list " + i, i * 1000L, ++itemId, "item " + itemId});
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Grouping used before, kept to compare with.
+     */
+    private static ArrayList<ShoppingList> groupBySearching(Cursor cursor) {
+        ArrayList<ShoppingList> result = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            ShoppingList tempShoppingList = new ShoppingList();
+            tempShoppingList.setId(cursor.getLong(0));
+            tempShoppingList.setTitle(cursor.getString(cursor.getColumnIndex(ShoppingListsTable.COLUMN_TITLE)));
+            GregorianCalendar cal = new GregorianCalendar();
+            cal.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_CREATED_AT)));
+            tempShoppingList.setCreatedAt(cal);
+
+            Item tempItem = new Item();
+            tempItem.setId(cursor.getLong(3));
+            tempItem.setContent(cursor.getString(cursor.getColumnIndex(ItemsTable.COLUMN_CONTENT)));
+
+            if (result.contains(tempShoppingList)) {
+                result.get(result.indexOf(tempShoppingList)).addItem(tempItem);
+            } else {
+                tempShoppingList.addItem(tempItem);
+                result.add(tempShoppingList);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package pl.coreorb.shoppinglist.utils;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that percentiles read from histogram are within accuracy of its buckets.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LatencyStatsTest {
+
+    @Test
+    public void bucketContainsLatency() {
+        for (long micros = 0; micros < 100000; micros += 7) {
+            int bucket = LatencyStats.Histogram.bucketOf(micros);
+            assertTrue(micros <= LatencyStats.Histogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || micros > LatencyStats.Histogram.upperBoundOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinQuarterOfLatency() {
+        LatencyStats.Histogram histogram = new LatencyStats.Histogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        long[] counts = histogram.getCounts();
+        assertEquals(100, histogram.getCount());
+        assertWithinQuarter(50000, LatencyStats.Histogram.percentile(counts, 100, 0.50));
+        assertWithinQuarter(90000, LatencyStats.Histogram.percentile(counts, 100, 0.90));
+        assertWithinQuarter(99000, LatencyStats.Histogram.percentile(counts, 100, 0.99));
+        assertEquals(100000, histogram.getMaxMicros());
+    }
+
+    private static void assertWithinQuarter(long expectedMicros, long actualMicros) {
+        assertTrue("expected about " + expectedMicros + "us, was " + actualMicros + "us",
+                actualMicros >= expectedMicros && actualMicros <= expectedMicros * 5 / 4);
+    }
+}
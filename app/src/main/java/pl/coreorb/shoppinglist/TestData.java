@@ -1,9 +1,10 @@
 package pl.coreorb.shoppinglist;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
-import android.net.Uri;
-import android.os.AsyncTask;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
 
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
@@ -12,6 +13,7 @@ import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
 import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
 import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
 import pl.coreorb.shoppinglist.contentprovideraccess.CreateCallback;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataTask;
 import pl.coreorb.shoppinglist.pojos.Item;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
 import pl.coreorb.shoppinglist.utils.Logger;
@@ -31,8 +33,7 @@ public class TestData {
      * @param callback returns onSuccess when insert finishes.
      */
     public void createTestData(final ContentResolver contentResolver, String lang, final CreateCallback<ShoppingList> callback) {
-        new InsertTestDataTask(contentResolver, callback)
-                .execute(getTestArray(lang).toArray(new ShoppingList[0]));
+        new InsertTestDataTask(contentResolver, getTestArray(lang), callback).executeWrite();
     }
 
     /**
@@ -171,50 +172,58 @@ public class TestData {
         return result;
     }
 
-    private static class InsertTestDataTask extends AsyncTask<ShoppingList, Void, Void> {
+    private static class InsertTestDataTask extends DataTask<Void> {
 
         private final ContentResolver contentResolver;
+        private final ArrayList<ShoppingList> shoppingLists;
         private final CreateCallback<ShoppingList> callback;
 
-        InsertTestDataTask(ContentResolver contentResolver, CreateCallback<ShoppingList> callback) {
+        InsertTestDataTask(ContentResolver contentResolver, ArrayList<ShoppingList> shoppingLists,
+                           CreateCallback<ShoppingList> callback) {
             this.contentResolver = contentResolver;
+            this.shoppingLists = shoppingLists;
             this.callback = callback;
         }
 
         @Override
-        protected Void doInBackground(ShoppingList[] params) {
+        protected Void doInBackground() {
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
             ContentValues contentValues;
-            Uri tempUri;
-            for (ShoppingList param : params) {
+            long timestamp = (new GregorianCalendar()).getTimeInMillis();
+            for (ShoppingList param : shoppingLists) {
                 contentValues = new ContentValues();
                 contentValues.put(ShoppingListsTable.COLUMN_TITLE, param.getTitle());
                 contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, param.getCreatedAt().getTimeInMillis());
+                contentValues.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, param.getCreatedAt().getTimeInMillis());
                 contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, param.isArchived());
-
-                long id = -1;
-                tempUri = contentResolver.insert(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, contentValues);
-                if (tempUri != null) {
-                    id = Long.parseLong(tempUri.getLastPathSegment());
-                } else {
-                    Logger.e(LOG_TAG, "Failed to insert shopping list: " + param);
-                }
+                int shoppingListOperationIndex = operations.size();
+                operations.add(ContentProviderOperation
+                        .newInsert(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI)
+                        .withValues(contentValues)
+                        .build());
 
                 for (Item item : param.getItems()) {
                     contentValues = new ContentValues();
-                    contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, id);
                     contentValues.put(ItemsTable.COLUMN_CONTENT, item.getContent());
                     contentValues.put(ItemsTable.COLUMN_CHECKED, item.isChecked());
-                    contentValues.put(ItemsTable.COLUMN_TIMESTAMP, (new GregorianCalendar()).getTimeInMillis());
-
-                    if (contentResolver.insert(ShoppingListsContentProvider.ITEM_CONTENT_URI,
-                            contentValues) == null) {
-                        Logger.e(LOG_TAG, "Failed to insert item: " + item);
-                    }
+                    contentValues.put(ItemsTable.COLUMN_TIMESTAMP, timestamp);
+                    operations.add(ContentProviderOperation
+                            .newInsert(ShoppingListsContentProvider.ITEM_CONTENT_URI)
+                            .withValues(contentValues)
+                            .withValueBackReference(ItemsTable.COLUMN_SHOPPING_LIST_ID, shoppingListOperationIndex)
+                            .build());
                 }
             }
+
+            try {
+                contentResolver.applyBatch(ShoppingListsContentProvider.AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Logger.e(LOG_TAG, "Failed to insert test data: " + e);
+            }
             return null;
         }
 
+        @Override
         protected void onPostExecute(Void result) {
             callback.onSuccess(new ShoppingList());
         }
@@ -0,0 +1,175 @@
+package pl.coreorb.shoppinglist.activities;
+
+import android.os.Bundle;
+import android.support.design.widget.CoordinatorLayout;
+import android.support.design.widget.Snackbar;
+import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.Toolbar;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Locale;
+
+import pl.coreorb.shoppinglist.R;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataTask;
+import pl.coreorb.shoppinglist.utils.LatencyStats;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Debug activity showing percentiles of latencies recorded by data access layer and exporting
+ * them as CSV file into app's external files directory.
+ */
+public class LatencyStatsActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = LatencyStatsActivity.class.getSimpleName();
+
+    private CoordinatorLayout coordinatorCL;
+    private TextView statsTV;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_latency_stats);
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+
+        assert getSupportActionBar() != null;
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        coordinatorCL = findViewById(R.id.coordinator_cl);
+        statsTV = findViewById(R.id.stats_tv);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showStats();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_latency_stats, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+
+        if (id == R.id.action_refresh) {
+            showStats();
+            return true;
+        } else if (id == R.id.action_export) {
+            exportStats();
+            return true;
+        } else if (id == R.id.action_reset) {
+            LatencyStats.reset();
+            showStats();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void showStats() {
+        List<LatencyStats.Summary> summaries = LatencyStats.getSummaries();
+        if (summaries.isEmpty()) {
+            statsTV.setText(R.string.activity_latency_stats_empty);
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        String lastKey = null;
+        for (LatencyStats.Summary summary : summaries) {
+            if (!summary.key.equals(lastKey)) {
+                if (lastKey != null) {
+                    text.append('\n');
+                }
+                text.append(summary.key).append('\n');
+                lastKey = summary.key;
+            }
+            text.append(String.format(Locale.US, "  %-8s n=%-6d p50=%-8s p90=%-8s p99=%-8s max=%s\n",
+                    summary.phase, summary.count, formatMicros(summary.p50Micros),
+                    formatMicros(summary.p90Micros), formatMicros(summary.p99Micros),
+                    formatMicros(summary.maxMicros)));
+        }
+        statsTV.setText(text);
+    }
+
+    private static String formatMicros(long micros) {
+        return micros < 1000 ? micros + "us" : String.format(Locale.US, "%.1fms", micros / 1000f);
+    }
+
+    private void exportStats() {
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            //external storage is not available
+            directory = getFilesDir();
+        }
+        File file = new File(directory, "latency_stats_" + System.currentTimeMillis() + ".csv");
+        //not on write thread, pending writes of items must not wait for export
+        new ExportStatsTask(this, file, LatencyStats.toCsv()).executeRead();
+    }
+
+    private void onStatsExported(File file) {
+        if (file != null) {
+            Snackbar.make(coordinatorCL, getString(R.string.activity_latency_stats_exported,
+                    file.getAbsolutePath()), Snackbar.LENGTH_LONG).show();
+        } else {
+            Snackbar.make(coordinatorCL, R.string.activity_latency_stats_error_export,
+                    Snackbar.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Writes CSV into file, returns file or null if writing failed.
+     */
+    private static class ExportStatsTask extends DataTask<File> {
+
+        private final WeakReference<LatencyStatsActivity> activity;
+        private final File file;
+        private final String csv;
+
+        ExportStatsTask(LatencyStatsActivity activity, File file, String csv) {
+            this.activity = new WeakReference<>(activity);
+            this.file = file;
+            this.csv = csv;
+        }
+
+        @Override
+        protected File doInBackground() {
+            Writer writer = null;
+            try {
+                writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                writer.write(csv);
+                return file;
+            } catch (IOException e) {
+                Logger.e(LOG_TAG, "ExportStatsTask: " + e.getMessage());
+                return null;
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        Logger.e(LOG_TAG, "ExportStatsTask: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void onPostExecute(File result) {
+            LatencyStatsActivity latencyStatsActivity = activity.get();
+            if (latencyStatsActivity != null && !latencyStatsActivity.isFinishing()) {
+                latencyStatsActivity.onStatsExported(result);
+            }
+        }
+    }
+}
@@ -12,8 +12,9 @@ import android.view.View;
 
 import pl.coreorb.shoppinglist.R;
 import pl.coreorb.shoppinglist.contentprovideraccess.ContentProviderAccess;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataFuture;
 import pl.coreorb.shoppinglist.contentprovideraccess.DeleteCallback;
-import pl.coreorb.shoppinglist.contentprovideraccess.UpdateCallback;
+import pl.coreorb.shoppinglist.contentprovideraccess.PendingWriteJournal;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
 import pl.coreorb.shoppinglist.utils.AnimationFinishedCallback;
 import pl.coreorb.shoppinglist.utils.Logger;
@@ -43,12 +44,15 @@ public class ListDetailsActivity extends AppCompatActivity {
     private CoordinatorLayout coordinatorCL;
 
     private ListDetailsActivityFragment listDetailsFragment;
+    private ContentProviderAccess contentProviderAccess;
     private boolean newMode;
     private boolean listArchived;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        //activity can be the first one started after process was killed
+        PendingWriteJournal.init(this);
         setContentView(R.layout.activity_list_details);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -57,6 +61,8 @@ public class ListDetailsActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
 
         coordinatorCL = findViewById(R.id.coordinator_cl);
+        //operations are cancelled when activity is destroyed
+        contentProviderAccess = new ContentProviderAccess(getContentResolver(), this);
 
         if (getSupportFragmentManager().findFragmentByTag(TAG_FRAGMENT_LIST_DETAILS) != null) {
             listDetailsFragment = (ListDetailsActivityFragment)
@@ -130,11 +136,16 @@ public class ListDetailsActivity extends AppCompatActivity {
             }
         });
 
-        ContentProviderAccess cpa = new ContentProviderAccess(getContentResolver());
-        ShoppingList currentShoppingList = listDetailsFragment.getCurrentShoppingList();
+        final ShoppingList currentShoppingList = listDetailsFragment.getCurrentShoppingList();
         currentShoppingList.setArchived(true);
 
-        UpdateCallback<ShoppingList> callback = new UpdateCallback<ShoppingList>() {
+        //edits made in fragment are written first, archiving follows them on write thread
+        contentProviderAccess.bind(listDetailsFragment.finishWrites().then(new DataFuture.Step<Void, ShoppingList>() {
+            @Override
+            public DataFuture<ShoppingList> apply(Void result) {
+                return contentProviderAccess.updateShoppingList(currentShoppingList);
+            }
+        })).addCallback(new DataFuture.Callback<ShoppingList>() {
             @Override
             public void onSuccess(ShoppingList object) {
                 Intent returnIntent = new Intent();
@@ -146,6 +157,7 @@ public class ListDetailsActivity extends AppCompatActivity {
 
             @Override
             public void onFailure() {
+                currentShoppingList.setArchived(false);
                 Snackbar.make(coordinatorCL, R.string.fragment_list_details_error_update_shopping_list, Snackbar.LENGTH_LONG)
                         .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
                             @Override
@@ -154,8 +166,7 @@ public class ListDetailsActivity extends AppCompatActivity {
                             }
                         }).show();
             }
-        };
-        cpa.updateShoppingList(currentShoppingList, callback);
+        });
     }
 
     /**
@@ -174,7 +185,6 @@ public class ListDetailsActivity extends AppCompatActivity {
             }
         });
 
-        ContentProviderAccess cpa = new ContentProviderAccess(getContentResolver());
         ShoppingList currentShoppingList = listDetailsFragment.getCurrentShoppingList();
 
         DeleteCallback<ShoppingList> callback = new DeleteCallback<ShoppingList>() {
@@ -198,12 +208,13 @@ public class ListDetailsActivity extends AppCompatActivity {
                         }).show();
             }
         };
-        cpa.deleteShoppingList(currentShoppingList, callback);
+        contentProviderAccess.deleteShoppingList(currentShoppingList, callback);
     }
 
     /**
-     * Makes sure no EditTexts are focused, then waits for queries to database in fragment to finish
-     * (queries are called then EditText looses focus) and calls returnResult().
+     * Makes sure no EditTexts are focused, then waits for writes to database started by fragment
+     * to finish (they are started when EditText looses focus) and calls returnResult(). Writes are
+     * journaled, so they are applied even if process is killed meanwhile.
      * Called by back button press(called also by back arrow in ActionBar press).
      */
     @Override
@@ -230,24 +241,17 @@ public class ListDetailsActivity extends AppCompatActivity {
         });
         coordinatorCL.requestFocus();
         listDetailsFragment.clearFocusOnTitleEditText();
-        if (!listDetailsFragment.isQueryRunning()) {
-            returnResult();
-        } else {
-            Thread thread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    while (listDetailsFragment.isQueryRunning()) {
-                        try {
-                            Thread.sleep(200);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    returnResult();
-                }
-            });
-            thread.start();
-        }
+        contentProviderAccess.bind(listDetailsFragment.finishWrites()).addCallback(new DataFuture.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                returnResult();
+            }
+
+            @Override
+            public void onFailure() {
+                returnResult();
+            }
+        });
     }
 
     /**
@@ -256,20 +260,18 @@ public class ListDetailsActivity extends AppCompatActivity {
      */
     private void returnResult() {
         Logger.v(LOG_TAG, "returnResult()");
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                Intent returnIntent = new Intent();
-                if (!newMode) {
-                    returnIntent.putExtra(RESULT_OPERATION, OPERATION_UPDATE);
-                } else {
-                    returnIntent.putExtra(RESULT_OPERATION, OPERATION_ADD);
-                }
-                returnIntent.putExtra(RESULT_SHOPPING_LIST, listDetailsFragment.getCurrentShoppingList());
-                setResult(RESULT_OK, returnIntent);
-                finish();
-            }
-        });
+        if (isFinishing()) {
+            return;
+        }
+        Intent returnIntent = new Intent();
+        if (!newMode) {
+            returnIntent.putExtra(RESULT_OPERATION, OPERATION_UPDATE);
+        } else {
+            returnIntent.putExtra(RESULT_OPERATION, OPERATION_ADD);
+        }
+        returnIntent.putExtra(RESULT_SHOPPING_LIST, listDetailsFragment.getCurrentShoppingList());
+        setResult(RESULT_OK, returnIntent);
+        finish();
     }
 
     @Override
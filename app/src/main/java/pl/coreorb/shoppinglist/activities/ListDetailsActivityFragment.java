@@ -16,13 +16,17 @@ import android.view.animation.AnimationUtils;
 import android.widget.EditText;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
 
 import me.zhanghai.android.materialprogressbar.MaterialProgressBar;
 import pl.coreorb.shoppinglist.R;
 import pl.coreorb.shoppinglist.contentprovideraccess.ContentProviderAccess;
 import pl.coreorb.shoppinglist.contentprovideraccess.CreateCallback;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataFuture;
 import pl.coreorb.shoppinglist.contentprovideraccess.DeleteCallback;
 import pl.coreorb.shoppinglist.contentprovideraccess.SelectCallback;
+import pl.coreorb.shoppinglist.contentprovideraccess.ShoppingListCache;
 import pl.coreorb.shoppinglist.contentprovideraccess.UpdateCallback;
 import pl.coreorb.shoppinglist.pojos.Item;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
@@ -42,9 +46,14 @@ public class ListDetailsActivityFragment extends Fragment implements
     private static final String LOG_TAG = ListDetailsActivityFragment.class.getSimpleName();
 
     private static final String STATE_CURRENT_SHOPPING_LIST = "state_current_shopping_list";
+    private static final String STATE_REMOVED_CLIENT_KEYS = "state_removed_client_keys";
 
     private static final String ARG_SHOPPING_LIST = "arg_shopping_list";
 
+    //number of items loaded at once and distance from end of list at which next page is loaded
+    private static final int PAGE_SIZE = 50;
+    private static final int LOAD_NEXT_PAGE_THRESHOLD = 10;
+
     private RecyclerView listRV;
     private ListDetailsActivityFragmentListAdapter adapter;
     private MaterialProgressBar loadingMPB;
@@ -57,7 +66,15 @@ public class ListDetailsActivityFragment extends Fragment implements
     private ContentProviderAccess contentProviderAccess;
     private ShoppingList currentShoppingList;
 
-    private boolean queryRunning = false;
+    //items added optimistically, whose ids are not known yet
+    private final ArrayList<Item> itemsBeingCreated = new ArrayList<>();
+    //items removed before they were created, deleted once they are
+    private final ArrayList<Item> itemsRemovedWhileCreated = new ArrayList<>();
+    //state of edited items before first of their not yet written edits, by item id
+    private final HashMap<Long, PendingEdit> pendingEdits = new HashMap<>();
+    private boolean loadingNextPage = false;
+    //generation of cache when loading of items started
+    private int cacheGeneration;
 
     public static ListDetailsActivityFragment newInstance() {
         return new ListDetailsActivityFragment();
@@ -84,13 +101,23 @@ public class ListDetailsActivityFragment extends Fragment implements
         //get views
         listRV = rootView.findViewById(R.id.list_rv);
         loadingMPB = rootView.findViewById(R.id.loading_mpb);
+        //list is set up again for every loaded shopping list, so listener is added only here
+        listRV.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadNextItemsPageIfNeeded();
+            }
+        });
 
         //get animations
         scale90To100FadeIn = AnimationUtils.loadAnimation(getContext(), R.anim.scale_90_to_100_fade_in);
         scale100To90FadeOut = AnimationUtils.loadAnimation(getContext(), R.anim.scale_100_to_90_fade_out);
 
-        assert getContext() != null;
-        contentProviderAccess = new ContentProviderAccess(getContext().getContentResolver());
+        if (contentProviderAccess == null) {
+            assert getContext() != null;
+            //operations are cancelled when fragment is destroyed
+            contentProviderAccess = new ContentProviderAccess(getContext().getContentResolver(), this);
+        }
 
         hideAllViews(false, null);
 
@@ -108,6 +135,33 @@ public class ListDetailsActivityFragment extends Fragment implements
         return rootView;
     }
 
+    /**
+     * Writes buffered updates of items, so they are not lost if app is killed in background.
+     */
+    @Override
+    public void onPause() {
+        Logger.v(LOG_TAG, "onPause()");
+        super.onPause();
+        contentProviderAccess.flushItemUpdates();
+    }
+
+    /**
+     * Stops loading of items and drops results of running writes, there are no views to show
+     * them in. Writes themselves are completed, ids of items being created are found by
+     * resolveItemsBeingCreated() once view is restored.
+     */
+    @Override
+    public void onDestroyView() {
+        Logger.v(LOG_TAG, "onDestroyView()");
+        contentProviderAccess.cancelAll();
+        //cancelled page is loaded again by new view
+        loadingNextPage = false;
+        itemsBeingCreated.clear();
+        itemsRemovedWhileCreated.clear();
+        pendingEdits.clear();
+        super.onDestroyView();
+    }
+
     /**
      * Continuations of onCreate() method in case of creating new list.
      */
@@ -150,8 +204,16 @@ public class ListDetailsActivityFragment extends Fragment implements
      * @param initialShoppingList shopping list to edit
      */
     private void onCreateViewEditList(final ShoppingList initialShoppingList) {
-        Logger.v(LOG_TAG, "onCreateViewEditList(" + initialShoppingList + ")");
+        Logger.v(LOG_TAG, "onCreateViewEditList({})", initialShoppingList);
         currentShoppingList = initialShoppingList;
+        final ShoppingListCache cache = ShoppingListCache.getInstance(getContext());
+        if (!initialShoppingList.isFullyLoaded()) {
+            ArrayList<Item> cachedItems = cache.getItems(initialShoppingList.getId());
+            if (cachedItems != null) {
+                initialShoppingList.setItems(cachedItems);
+                initialShoppingList.setFullyLoaded(true);
+            }
+        }
 
         //if object if already fully loaded just read data from object
         if (initialShoppingList.isFullyLoaded()) {
@@ -164,12 +226,13 @@ public class ListDetailsActivityFragment extends Fragment implements
                 }
             });
         } else {
-            //get items for current shopping list
+            //get first page of items for current shopping list, next pages are loaded on scroll
             SelectCallback<Item> callback = new SelectCallback<Item>() {
                 @Override
                 public void onSuccess(ArrayList<Item> objects) {
                     currentShoppingList.setItems(objects);
-                    currentShoppingList.setFullyLoaded(true);
+                    currentShoppingList.setFullyLoaded(objects.size() < PAGE_SIZE);
+                    putIntoCacheIfFullyLoaded();
                     hideViewLoading(true, new AnimationFinishedCallback() {
                         @Override
                         public void animationFinished() {
@@ -194,10 +257,77 @@ public class ListDetailsActivityFragment extends Fragment implements
                     }
                 }
             };
-            contentProviderAccess.getItemsForShoppingList(currentShoppingList, callback);
+            cacheGeneration = cache.getGeneration();
+            contentProviderAccess.getItemsForShoppingListPage(currentShoppingList, null, PAGE_SIZE, callback);
+        }
+    }
+
+    /**
+     * Puts items into cache once last page is loaded, so opening this shopping list again doesn't
+     * need database.
+     */
+    private void putIntoCacheIfFullyLoaded() {
+        if (currentShoppingList.isFullyLoaded()) {
+            ShoppingListCache.getInstance(getContext()).put(currentShoppingList.getId(),
+                    currentShoppingList.getItems(), cacheGeneration);
+        }
+    }
+
+    /**
+     * Loads next page of items if shopping list is not fully loaded and user scrolled near end
+     * of already loaded items.
+     */
+    private void loadNextItemsPageIfNeeded() {
+        if (loadingNextPage || adapter == null || currentShoppingList == null
+                || currentShoppingList.isFullyLoaded()) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) listRV.getLayoutManager();
+        if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - LOAD_NEXT_PAGE_THRESHOLD) {
+            loadNextItemsPage();
         }
     }
 
+    /**
+     * Loads from database page of items following already loaded ones and appends it to RecyclerView.
+     */
+    private void loadNextItemsPage() {
+        Logger.v(LOG_TAG, "loadNextItemsPage()");
+        loadingNextPage = true;
+        final ArrayList<Item> items = currentShoppingList.getItems();
+        SelectCallback<Item> callback = new SelectCallback<Item>() {
+            @Override
+            public void onSuccess(ArrayList<Item> objects) {
+                loadingNextPage = false;
+                currentShoppingList.setFullyLoaded(objects.size() < PAGE_SIZE);
+                int positionStart = items.size();
+                items.addAll(objects);
+                putIntoCacheIfFullyLoaded();
+                //first row of adapter is header
+                adapter.notifyItemRangeInserted(positionStart + 1, objects.size());
+            }
+
+            @Override
+            public void onFailure() {
+                loadingNextPage = false;
+                if (getView() != null) {
+                    Snackbar.make(getView(), R.string.fragment_list_details_error_reading_items, Snackbar.LENGTH_LONG)
+                            .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
+                                @Override
+                                public void onClick(View v) {
+                                    //page may be already loading again after scroll
+                                    if (!loadingNextPage) {
+                                        loadNextItemsPage();
+                                    }
+                                }
+                            }).show();
+                }
+            }
+        };
+        contentProviderAccess.getItemsForShoppingListPage(currentShoppingList,
+                items.isEmpty() ? null : items.get(items.size() - 1), PAGE_SIZE, callback);
+    }
+
     private void setUpAndShowList(boolean isArchived, String title, ArrayList<Item> items, boolean animate) {
         Logger.v(LOG_TAG, "setUpAndShowList()");
         adapter = new ListDetailsActivityFragmentListAdapter(ListDetailsActivityFragment.this.getContext(),
@@ -217,103 +347,304 @@ public class ListDetailsActivityFragment extends Fragment implements
         showViewList(animate, null);
     }
 
+    /**
+     * Shows added item immediately and creates it in database in background. Item is removed
+     * again if creating fails.
+     *
+     * @param item added item
+     */
     @Override
     public void onItemAdded(final Item item) {
-        Logger.v(LOG_TAG, "onItemAdded(" + item + ")");
-        queryRunning = true;
+        Logger.v(LOG_TAG, "onItemAdded({})", item);
+        currentShoppingList.addItemAtBeginning(item);
+        //first row of adapter is header
+        adapter.notifyItemInserted(1);
+        itemsBeingCreated.add(item);
+        //item is found by its key if this fragment is recreated before it is written
+        item.setClientKey(UUID.randomUUID().toString());
+        //shown item can be edited while it is written, so copy is written instead
+        final Item savedItem = new Item(-1, item.getContent(), item.isChecked());
+        savedItem.setClientKey(item.getClientKey());
         CreateCallback<Item> callback = new CreateCallback<Item>() {
             @Override
             public void onSuccess(Item object) {
-                currentShoppingList.addItemAtBeginning(object);
-                adapter.notifyDataSetChanged();
-                queryRunning = false;
+                onItemCreated(item, object);
             }
 
             @Override
             public void onFailure() {
-                if (getView() != null) {
-                    Snackbar.make(getView(), R.string.fragment_list_details_error_create_item, Snackbar.LENGTH_LONG)
-                            .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
-                                @Override
-                                public void onClick(View v) {
-                                    onItemAdded(item);
-                                }
-                            }).show();
-                    queryRunning = false;
+                onItemNotCreated(item);
+            }
+        };
+        contentProviderAccess.createItem(savedItem, currentShoppingList.getId(), callback);
+    }
+
+    /**
+     * Sets id of created item and writes changes made to it before id was known.
+     *
+     * @param item          shown item
+     * @param createdItem   item as it was written
+     */
+    private void onItemCreated(Item item, Item createdItem) {
+        removeInstance(itemsBeingCreated, item);
+        item.setId(createdItem.getId());
+        item.setTimestamp(createdItem.getTimestamp());
+        if (removeInstance(itemsRemovedWhileCreated, item)) {
+            deleteItem(item, 0);
+        } else if (item.isChecked() != createdItem.isChecked() || !item.getContent().equals(createdItem.getContent())) {
+            //item was edited before its id was known
+            updateItem(item, createdItem);
+        }
+    }
+
+    /**
+     * Removes item which couldn't be created from list and offers retry.
+     *
+     * @param item shown item
+     */
+    private void onItemNotCreated(final Item item) {
+        removeInstance(itemsBeingCreated, item);
+        if (removeInstance(itemsRemovedWhileCreated, item)) {
+            return;
+        }
+        int index = indexOfItem(item);
+        if (index != -1) {
+            currentShoppingList.getItems().remove(index);
+            adapter.notifyItemRemoved(index + 1);
+        }
+        if (getView() != null) {
+            Snackbar.make(getView(), R.string.fragment_list_details_error_create_item, Snackbar.LENGTH_LONG)
+                    .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
+                        @Override
+                        public void onClick(View v) {
+                            onItemAdded(item);
+                        }
+                    }).show();
+        }
+    }
+
+    /**
+     * Finds ids of restored items, which were being created when state was saved. Their creation
+     * callbacks were dropped together with previous view, so they are found by their client keys.
+     * Until then they are edited and removed like items being created.
+     *
+     * @param removedClientKeys client keys of items removed while they were being created, which
+     *                          are deleted once found
+     */
+    private void resolveItemsBeingCreated(@Nullable ArrayList<String> removedClientKeys) {
+        final ArrayList<Item> restoredItems = new ArrayList<>();
+        ArrayList<String> clientKeys = new ArrayList<>();
+        for (Item item : currentShoppingList.getItems()) {
+            if (item.getId() == -1 && item.getClientKey() != null) {
+                restoredItems.add(item);
+                clientKeys.add(item.getClientKey());
+            }
+        }
+        if (removedClientKeys != null) {
+            for (String clientKey : removedClientKeys) {
+                Item item = new Item();
+                item.setClientKey(clientKey);
+                restoredItems.add(item);
+                itemsRemovedWhileCreated.add(item);
+                clientKeys.add(clientKey);
+            }
+        }
+        if (restoredItems.isEmpty()) {
+            return;
+        }
+        itemsBeingCreated.addAll(restoredItems);
+        SelectCallback<Item> callback = new SelectCallback<Item>() {
+            @Override
+            public void onSuccess(ArrayList<Item> objects) {
+                for (Item item : restoredItems) {
+                    Item createdItem = null;
+                    for (Item object : objects) {
+                        if (object.getClientKey().equals(item.getClientKey())) {
+                            createdItem = object;
+                            break;
+                        }
+                    }
+                    if (createdItem != null) {
+                        onItemCreated(item, createdItem);
+                    } else {
+                        onItemNotCreated(item);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure() {
+                for (Item item : restoredItems) {
+                    onItemNotCreated(item);
                 }
             }
         };
-        contentProviderAccess.createItem(item, currentShoppingList.getId(), callback);
+        contentProviderAccess.findCreatedItems(clientKeys, callback);
     }
 
+    /**
+     * Item is already changed in place by adapter, so only writes it to database. Item is changed
+     * back if writing fails.
+     *
+     * @param item         edited item
+     * @param previousItem state of item before edit
+     */
     @Override
-    public void onItemEdited(final Item item) {
-        Logger.v(LOG_TAG, "onItemEdited(" + item + ")");
-        queryRunning = true;
+    public void onItemEdited(final Item item, final Item previousItem) {
+        Logger.v(LOG_TAG, "onItemEdited({})", item);
+        if (containsInstance(itemsBeingCreated, item)) {
+            //written once item is created and its id is known
+            return;
+        }
+        updateItem(item, previousItem);
+    }
+
+    private void updateItem(final Item item, Item previousItem) {
+        PendingEdit pendingEdit = pendingEdits.get(item.getId());
+        if (pendingEdit == null) {
+            pendingEdit = new PendingEdit(previousItem);
+            pendingEdits.put(item.getId(), pendingEdit);
+        }
+        pendingEdit.count++;
+        final Item editedItem = new Item(item.getId(), item.getContent(), item.isChecked());
         UpdateCallback<Item> callback = new UpdateCallback<Item>() {
             @Override
             public void onSuccess(Item object) {
-                currentShoppingList.updateItem(object);
-                adapter.notifyDataSetChanged();
-                queryRunning = false;
+                PendingEdit pendingEdit = pendingEdits.get(item.getId());
+                if (pendingEdit != null && --pendingEdit.count == 0) {
+                    pendingEdits.remove(item.getId());
+                }
             }
 
             @Override
             public void onFailure() {
+                //merged updates fail together, item is changed back by first of them
+                PendingEdit pendingEdit = pendingEdits.remove(item.getId());
+                if (pendingEdit == null) {
+                    return;
+                }
+                item.setContent(pendingEdit.previousItem.getContent());
+                item.setChecked(pendingEdit.previousItem.isChecked());
+                int index = indexOfItem(item);
+                if (index != -1) {
+                    adapter.notifyItemChanged(index + 1);
+                }
                 if (getView() != null) {
                     Snackbar.make(getView(), R.string.fragment_list_details_error_update_item, Snackbar.LENGTH_LONG)
                             .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
                                 @Override
                                 public void onClick(View v) {
-                                    onItemEdited(item);
+                                    Item previousItem = new Item(item.getId(), item.getContent(), item.isChecked());
+                                    item.setContent(editedItem.getContent());
+                                    item.setChecked(editedItem.isChecked());
+                                    int index = indexOfItem(item);
+                                    if (index != -1) {
+                                        adapter.notifyItemChanged(index + 1);
+                                    }
+                                    updateItem(item, previousItem);
                                 }
                             }).show();
-                    queryRunning = false;
                 }
             }
         };
-        contentProviderAccess.updateItem(item, callback);
+        //quick taps on checkbox are merged into single write
+        contentProviderAccess.updateItemDeferred(item, callback);
     }
 
+    /**
+     * Removes item from list immediately and deletes it from database in background. Item is
+     * shown again if deleting fails.
+     *
+     * @param item removed item
+     */
     @Override
     public void onItemRemoveClicked(final Item item) {
-        Logger.v(LOG_TAG, "onItemRemoveClicked(" + item + ")");
-        queryRunning = true;
+        Logger.v(LOG_TAG, "onItemRemoveClicked({})", item);
+        int index = indexOfItem(item);
+        if (index == -1) {
+            return;
+        }
+        currentShoppingList.getItems().remove(index);
+        adapter.notifyItemRemoved(index + 1);
+        if (containsInstance(itemsBeingCreated, item)) {
+            //deleted once item is created and its id is known
+            itemsRemovedWhileCreated.add(item);
+            return;
+        }
+        deleteItem(item, index);
+    }
+
+    private void deleteItem(final Item item, final int index) {
         DeleteCallback<Item> callback = new DeleteCallback<Item>() {
             @Override
             public void onSuccess(Item object) {
-                currentShoppingList.removeItem(object);
-                adapter.notifyDataSetChanged();
-                queryRunning = false;
+                //item is already removed from list
             }
 
             @Override
             public void onFailure() {
+                ArrayList<Item> items = currentShoppingList.getItems();
+                int position = Math.min(index, items.size());
+                items.add(position, item);
+                adapter.notifyItemInserted(position + 1);
                 if (getView() != null) {
                     Snackbar.make(getView(), R.string.fragment_list_details_error_delete_item, Snackbar.LENGTH_LONG)
                             .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
                                 @Override
                                 public void onClick(View v) {
-                                    onItemEdited(item);
+                                    onItemRemoveClicked(item);
                                 }
                             }).show();
-                    queryRunning = false;
                 }
             }
         };
         contentProviderAccess.deleteItem(item, callback);
     }
 
+    /**
+     * Finds position of item among items of current shopping list. Compares instances, as items
+     * not created yet have no ids.
+     *
+     * @param item item to find
+     * @return position of item, or -1 if it is not there
+     */
+    private int indexOfItem(Item item) {
+        ArrayList<Item> items = currentShoppingList.getItems();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsInstance(ArrayList<Item> items, Item item) {
+        for (Item element : items) {
+            if (element == item) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean removeInstance(ArrayList<Item> items, Item item) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == item) {
+                items.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public void onShoppingListTitleEdited(final String title) {
-        Logger.v(LOG_TAG, "onShoppingListTitleEdited(" + title + ")");
-        queryRunning = true;
+        Logger.v(LOG_TAG, "onShoppingListTitleEdited({})", title);
         UpdateCallback<ShoppingList> callback = new UpdateCallback<ShoppingList>() {
             @Override
             public void onSuccess(ShoppingList object) {
                 currentShoppingList.setTitle(title);
                 adapter.setShoppingListTitle(title);
-                queryRunning = false;
             }
 
             @Override
@@ -327,7 +658,6 @@ public class ListDetailsActivityFragment extends Fragment implements
                                 }
                             }).show();
                 }
-                queryRunning = false;
             }
         };
         contentProviderAccess.updateShoppingList(currentShoppingList, callback);
@@ -341,7 +671,7 @@ public class ListDetailsActivityFragment extends Fragment implements
      */
     @SuppressWarnings("SameParameterValue")
     private void hideAllViews(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideAllViews(" + animate + ")");
+        Logger.v(LOG_TAG, "hideAllViews({})", animate);
 
         hideViewList(animate, new AnimationFinishedCallback() {
             @Override
@@ -371,7 +701,7 @@ public class ListDetailsActivityFragment extends Fragment implements
      */
     @SuppressWarnings("SameParameterValue")
     private void showViewList(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "showViewList(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "showViewList({}, {})", animate, callback);
         if (listRV.getVisibility() == View.VISIBLE) {
             //view is already shown, just exit
             Logger.d(LOG_TAG, "view already shown");
@@ -416,7 +746,7 @@ public class ListDetailsActivityFragment extends Fragment implements
      * @param callback called when view is done hiding (optional)
      */
     public void hideViewList(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideViewList(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "hideViewList({}, {})", animate, callback);
         if (listRV.getVisibility() == View.GONE || listRV.getVisibility() == View.INVISIBLE) {
             //view is already hidden, just exit
             Logger.d(LOG_TAG, "view already hidden");
@@ -463,7 +793,7 @@ public class ListDetailsActivityFragment extends Fragment implements
      */
     @SuppressWarnings("SameParameterValue")
     public void showViewLoading(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "showViewLoading(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "showViewLoading({}, {})", animate, callback);
         if (loadingMPB.getVisibility() == View.VISIBLE) {
             //view is already shown, just exit
             Logger.d(LOG_TAG, "view already shown");
@@ -508,7 +838,7 @@ public class ListDetailsActivityFragment extends Fragment implements
      * @param callback called when view is done hiding (optional)
      */
     private void hideViewLoading(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideViewLoading(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "hideViewLoading({}, {})", animate, callback);
         if (loadingMPB.getVisibility() == View.GONE || loadingMPB.getVisibility() == View.INVISIBLE) {
             //view is already hidden, just exit
             Logger.d(LOG_TAG, "view already hidden");
@@ -557,8 +887,14 @@ public class ListDetailsActivityFragment extends Fragment implements
         return currentShoppingList;
     }
 
-    public boolean isQueryRunning() {
-        return queryRunning;
+    /**
+     * Writes buffered updates of items immediately and returns future completed once all writes
+     * started by this fragment are applied and current shopping list reflects them.
+     *
+     * @return future completed after all started writes
+     */
+    public DataFuture<Void> finishWrites() {
+        return contentProviderAccess.finishWrites();
     }
 
     /**
@@ -573,6 +909,7 @@ public class ListDetailsActivityFragment extends Fragment implements
             setUpAndShowList(currentShoppingList.isArchived(),
                     currentShoppingList.getTitle(),
                     currentShoppingList.getItems(), false);
+            resolveItemsBeingCreated(savedInstanceState.getStringArrayList(STATE_REMOVED_CLIENT_KEYS));
         }
     }
 
@@ -584,6 +921,23 @@ public class ListDetailsActivityFragment extends Fragment implements
     public void onSaveInstanceState(@NonNull Bundle outState) {
         Logger.v(LOG_TAG, "onSaveInstanceState()");
         outState.putParcelable(STATE_CURRENT_SHOPPING_LIST, currentShoppingList);
+        ArrayList<String> removedClientKeys = new ArrayList<>();
+        for (Item item : itemsRemovedWhileCreated) {
+            removedClientKeys.add(item.getClientKey());
+        }
+        outState.putStringArrayList(STATE_REMOVED_CLIENT_KEYS, removedClientKeys);
         super.onSaveInstanceState(outState);
     }
+
+    /**
+     * Not yet written edits of single item.
+     */
+    private static class PendingEdit {
+        final Item previousItem;
+        int count = 0;
+
+        PendingEdit(Item previousItem) {
+            this.previousItem = previousItem;
+        }
+    }
 }
@@ -19,6 +19,7 @@ import java.util.ArrayList;
 
 import pl.coreorb.shoppinglist.R;
 import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.utils.Tracer;
 
 /**
  * RecyclerView for ListDetailsActivityFragment fragment.
@@ -94,13 +95,18 @@ class ListDetailsActivityFragmentListAdapter extends RecyclerView.Adapter<Recycl
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
-        if (getItemViewType(position) == ROW_TYPE_HEADER) {
-            HeaderViewHolder headerHolder = (HeaderViewHolder) holder;
-            bindHeaderViewHolder(headerHolder);
-        } else if (getItemViewType(position) == ROW_TYPE_REGULAR) {
-            final Item item = mItems.get(position-1);
-            RegularViewHolder regularHolder = (RegularViewHolder) holder;
-            bindRegularViewHolder(regularHolder, item);
+        Tracer.beginSection("ListDetailsActivityFragmentListAdapter.onBindViewHolder");
+        try {
+            if (getItemViewType(position) == ROW_TYPE_HEADER) {
+                HeaderViewHolder headerHolder = (HeaderViewHolder) holder;
+                bindHeaderViewHolder(headerHolder);
+            } else if (getItemViewType(position) == ROW_TYPE_REGULAR) {
+                final Item item = mItems.get(position-1);
+                RegularViewHolder regularHolder = (RegularViewHolder) holder;
+                bindRegularViewHolder(regularHolder, item);
+            }
+        } finally {
+            Tracer.endSection();
         }
     }
 
@@ -171,8 +177,9 @@ class ListDetailsActivityFragmentListAdapter extends RecyclerView.Adapter<Recycl
             regularHolder.checkedCB.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
+                    Item previousItem = new Item(item.getId(), item.getContent(), item.isChecked());
                     item.setChecked(((CheckBox) v).isChecked());
-                    mEditedListener.onItemEdited(item);
+                    mEditedListener.onItemEdited(item, previousItem);
                     if (item.isChecked()) {
                         regularHolder.contentET.setPaintFlags(regularHolder.contentET.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG);
                     } else {
@@ -184,8 +191,9 @@ class ListDetailsActivityFragmentListAdapter extends RecyclerView.Adapter<Recycl
                 @Override
                 public void onFocusChange(View v, boolean hasFocus) {
                     if (!hasFocus && !((EditText) v).getText().toString().equals(item.getContent())) {
+                        Item previousItem = new Item(item.getId(), item.getContent(), item.isChecked());
                         item.setContent(((EditText) v).getText().toString());
-                        mEditedListener.onItemEdited(item);
+                        mEditedListener.onItemEdited(item, previousItem);
                     }
                 }
             });
@@ -249,7 +257,11 @@ class ListDetailsActivityFragmentListAdapter extends RecyclerView.Adapter<Recycl
     }
 
     public interface OnItemEditedListener {
-        void onItemEdited(Item item);
+        /**
+         * @param item         item, already changed in place
+         * @param previousItem copy of item before change
+         */
+        void onItemEdited(Item item, Item previousItem);
     }
 
     public interface OnItemRemoveClickedListener {
@@ -3,6 +3,7 @@ package pl.coreorb.shoppinglist.activities;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.view.Menu;
@@ -11,11 +12,23 @@ import android.view.View;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+
 import pl.coreorb.shoppinglist.BuildConfig;
 import pl.coreorb.shoppinglist.R;
 import pl.coreorb.shoppinglist.TestData;
 import pl.coreorb.shoppinglist.contentprovideraccess.CreateCallback;
+import pl.coreorb.shoppinglist.contentprovideraccess.DataTask;
+import pl.coreorb.shoppinglist.contentprovideraccess.PendingWriteJournal;
+import pl.coreorb.shoppinglist.contentprovideraccess.ShoppingListCache;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
+import pl.coreorb.shoppinglist.utils.EventLog;
 import pl.coreorb.shoppinglist.utils.Logger;
 
 /**
@@ -40,6 +53,10 @@ public class MainActivity extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         Logger.v(LOG_TAG, "onCreate()");
         super.onCreate(savedInstanceState);
+        //writes lost when process was killed are applied before any other
+        PendingWriteJournal.init(this);
+        //start observing changes early, so cache is already valid when first list is opened
+        ShoppingListCache.getInstance(this);
         setContentView(R.layout.activity_main);
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
@@ -164,6 +181,12 @@ public class MainActivity extends AppCompatActivity {
         } else if (id == R.id.action_insert_test_data_pl) {
             createTestData("pl");
             return true;
+        } else if (id == R.id.action_latency_stats) {
+            startActivity(new Intent(this, LatencyStatsActivity.class));
+            return true;
+        } else if (id == R.id.action_export_event_log) {
+            exportEventLog();
+            return true;
         }
 
         return super.onOptionsItemSelected(item);
@@ -173,12 +196,12 @@ public class MainActivity extends AppCompatActivity {
     protected void onRestoreInstanceState(Bundle savedInstanceState) {
         super.onRestoreInstanceState(savedInstanceState);
         switchShoppingListsType(savedInstanceState.getBoolean(STATE_SHOW_ARCHIVED), false);
-        Logger.v(LOG_TAG, "onRestoreInstanceState() archived: " + showArchived);
+        Logger.v(LOG_TAG, "onRestoreInstanceState() archived: {}", showArchived);
     }
 
     @Override
     protected void onSaveInstanceState(Bundle outState) {
-        Logger.v(LOG_TAG, "onSaveInstanceState() archived: " + showArchived);
+        Logger.v(LOG_TAG, "onSaveInstanceState() archived: {}", showArchived);
         outState.putBoolean(STATE_SHOW_ARCHIVED, showArchived);
         super.onSaveInstanceState(outState);
     }
@@ -210,4 +233,70 @@ public class MainActivity extends AppCompatActivity {
         };
         (new TestData()).createTestData(getContentResolver(), lang, callback);
     }
+
+    /**
+     * Method for debugging purposes writes events recorded in EventLog into file in app's external
+     * files directory.
+     */
+    private void exportEventLog() {
+        File directory = getExternalFilesDir(null);
+        if (directory == null) {
+            //external storage is not available
+            directory = getFilesDir();
+        }
+        File file = new File(directory, "event_log_" + System.currentTimeMillis() + ".tsv");
+        //not on write thread, pending writes of items must not wait for export
+        new ExportEventLogTask(this, file).executeRead();
+    }
+
+    private void onEventLogExported(File file, int events) {
+        if (events >= 0) {
+            Snackbar.make(fab, getString(R.string.activity_main_event_log_exported, events,
+                    file.getAbsolutePath()), Snackbar.LENGTH_LONG).show();
+        } else {
+            Snackbar.make(fab, R.string.activity_main_error_export_event_log, Snackbar.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * Dumps EventLog into file, returns number of written events or -1 if writing failed.
+     */
+    private static class ExportEventLogTask extends DataTask<Integer> {
+
+        private final WeakReference<MainActivity> activity;
+        private final File file;
+
+        ExportEventLogTask(MainActivity activity, File file) {
+            this.activity = new WeakReference<>(activity);
+            this.file = file;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            Writer writer = null;
+            try {
+                writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+                return EventLog.dump(writer);
+            } catch (IOException e) {
+                Logger.e(LOG_TAG, "ExportEventLogTask: " + e.getMessage());
+                return -1;
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        Logger.e(LOG_TAG, "ExportEventLogTask: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void onPostExecute(Integer result) {
+            MainActivity mainActivity = activity.get();
+            if (mainActivity != null && !mainActivity.isFinishing()) {
+                mainActivity.onEventLogExported(file, result);
+            }
+        }
+    }
 }
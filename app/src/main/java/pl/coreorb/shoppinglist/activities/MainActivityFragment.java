@@ -1,6 +1,5 @@
 package pl.coreorb.shoppinglist.activities;
 
-import android.app.Activity;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -9,6 +8,7 @@ import android.support.design.widget.Snackbar;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.ActivityOptionsCompat;
 import android.support.v4.app.Fragment;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.DefaultItemAnimator;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -24,7 +24,11 @@ import java.util.ArrayList;
 import me.zhanghai.android.materialprogressbar.MaterialProgressBar;
 import pl.coreorb.shoppinglist.R;
 import pl.coreorb.shoppinglist.contentprovideraccess.ContentProviderAccess;
+import pl.coreorb.shoppinglist.contentprovideraccess.ItemsPrefetcher;
+import pl.coreorb.shoppinglist.contentprovideraccess.ObservableQuery;
+import pl.coreorb.shoppinglist.contentprovideraccess.QueryCallback;
 import pl.coreorb.shoppinglist.contentprovideraccess.SelectCallback;
+import pl.coreorb.shoppinglist.contentprovideraccess.ShoppingListCache;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
 import pl.coreorb.shoppinglist.utils.AnimationFinishedCallback;
 import pl.coreorb.shoppinglist.utils.Logger;
@@ -37,6 +41,13 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     private static final String LOG_TAG = MainActivityFragment.class.getSimpleName();
 
     private static final String STATE_SHOPPING_LISTS = "state_shopping_lists";
+    private static final String STATE_ALL_SHOPPING_LISTS_LOADED = "state_all_shopping_lists_loaded";
+
+    //number of shopping lists loaded at once and distance from end of list at which next page is loaded
+    private static final int PAGE_SIZE = 30;
+    private static final int LOAD_NEXT_PAGE_THRESHOLD = 10;
+    //number of shopping lists above and below visible ones whose items are prefetched
+    private static final int PREFETCH_DISTANCE = 5;
 
     private static final int REQUEST_CODE_LIST_DETAILS = 5001;
 
@@ -55,9 +66,21 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     private boolean listHidden, loadingHidden, noListsHidden = false;
 
     private ArrayList<ShoppingList> currentShoppingLists;
+    private boolean allShoppingListsLoaded = false;
+    private boolean loadingNextPage = false;
+    //incremented on every reload, so results of pages loaded for previous data are dropped
+    private int shoppingListsGeneration = 0;
 
     private boolean showingArchivedLists = false;
 
+    private ContentProviderAccess contentProviderAccess;
+    //shown shopping lists are re-read when they change
+    @Nullable
+    private ObservableQuery<ShoppingList> shoppingListsQuery;
+    @Nullable
+    private QueryCallback<ShoppingList> shoppingListsCallback;
+    private ItemsPrefetcher itemsPrefetcher;
+
     public MainActivityFragment() {
     }
 
@@ -72,6 +95,13 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
         loadingMPB = rootView.findViewById(R.id.loading_mpb);
         noListsTV = rootView.findViewById(R.id.no_lists_tv);
 
+        if (contentProviderAccess == null) {
+            assert getActivity() != null;
+            //operations are cancelled when fragment is destroyed
+            contentProviderAccess = new ContentProviderAccess(getActivity().getContentResolver(), this);
+            itemsPrefetcher = new ItemsPrefetcher(contentProviderAccess, ShoppingListCache.getInstance(getActivity()));
+        }
+
         //get animations
         fadeIn = AnimationUtils.loadAnimation(getContext(), R.anim.fade_in);
         fadeOut = AnimationUtils.loadAnimation(getContext(), R.anim.fade_out);
@@ -91,6 +121,22 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
             }
         };
         listRV.setItemAnimator(animator);
+        listRV.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadNextShoppingListsPageIfNeeded();
+            }
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                //shopping lists passed by during scrolling won't be opened, so wait until it stops
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchItemsOfVisibleShoppingLists();
+                } else {
+                    itemsPrefetcher.stop();
+                }
+            }
+        });
 
         hideAllViews(false, null, null);
 
@@ -104,6 +150,18 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
         return rootView;
     }
 
+    /**
+     * Cancels reading of shopping lists, its result would have no views to be shown in.
+     */
+    @Override
+    public void onDestroyView() {
+        Logger.v(LOG_TAG, "onDestroyView()");
+        unsubscribeFromShoppingLists();
+        itemsPrefetcher.stop();
+        contentProviderAccess.cancelAll();
+        super.onDestroyView();
+    }
+
     /**
      * Shows loading view and loads from database list of shopping lists (archived or active).
      * @param archived wherever to show archived shopping list or not
@@ -111,6 +169,8 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     public void setShownShoppingListsToArchived(final boolean archived) {
         Logger.v(LOG_TAG, "setShownShoppingListsToArchived()");
         showingArchivedLists = archived;
+        unsubscribeFromShoppingLists();
+        itemsPrefetcher.stop();
         hideAllViews(true, archived ? scale100To110FadeOut : fadeOutMoveDown,
                 new AnimationFinishedCallback() {
                     @Override
@@ -123,27 +183,74 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     }
 
     /**
-     * Loads from database shopping lists and displays them in RecyclerView.
+     * Loads from database first page of shopping lists and displays them in RecyclerView.
+     * Next pages are loaded when user scrolls near end of list. Loaded shopping lists are
+     * observed, so changes made in other screens are shown without reloading.
      * @param archived wherever to load archived shopping list or not
      * @param anim animation used to show view with result (optional)
      */
     private void loadShoppingLists(final boolean archived, @Nullable final Animation anim) {
-        Logger.v(LOG_TAG, "loadShoppingLists(" + archived + ")");
-        assert getActivity() != null;
-        ContentProviderAccess cpa = new ContentProviderAccess(getActivity().getContentResolver());
-        SelectCallback<ShoppingList> callback = new SelectCallback<ShoppingList>() {
+        Logger.v(LOG_TAG, "loadShoppingLists({})", archived);
+        subscribeToShoppingLists(archived, PAGE_SIZE, false, anim);
+    }
+
+    /**
+     * Subscribes to shopping lists (archived or active), dropping previous subscription.
+     * First result is shown after loading view is hidden, or replaces restored shopping lists.
+     * Next results only update changed shopping lists.
+     * @param archived wherever to load archived shopping list or not
+     * @param limit number of first shopping lists to observe
+     * @param restored if true restored shopping lists are already shown
+     * @param anim animation used to show view with first result (optional)
+     */
+    private void subscribeToShoppingLists(final boolean archived, int limit, final boolean restored,
+                                          @Nullable final Animation anim) {
+        final int generation = ++shoppingListsGeneration;
+        loadingNextPage = false;
+        unsubscribeFromShoppingLists();
+        final ObservableQuery<ShoppingList> query = contentProviderAccess.observeShoppingListSummaries(archived, limit);
+        shoppingListsQuery = query;
+        shoppingListsCallback = new QueryCallback<ShoppingList>() {
+            //true after first result was shown
+            private boolean shown = restored;
+            //false while restored shopping lists are shown, they may differ from previous result
+            private boolean diffable = !restored;
+            //first result waiting for loading view to hide
+            private ArrayList<ShoppingList> firstObjects;
+
             @Override
-            public void onSuccess(final ArrayList<ShoppingList> objects) {
+            public void onChanged(ArrayList<ShoppingList> objects, DiffUtil.DiffResult diff) {
+                allShoppingListsLoaded = objects.size() < query.getLimit();
+                if (shown) {
+                    showChanges(objects, diffable ? diff : null);
+                    diffable = true;
+                    return;
+                }
+                boolean hiding = firstObjects != null;
+                firstObjects = objects;
+                if (hiding) {
+                    return;
+                }
                 hideViewLoading(true, new AnimationFinishedCallback() {
                     @Override
                     public void animationFinished() {
-                        showData(true, anim, objects);
+                        if (generation != shoppingListsGeneration) {
+                            return;
+                        }
+                        shown = true;
+                        showData(true, anim, firstObjects);
                     }
                 });
             }
 
             @Override
             public void onFailure() {
+                if (shown) {
+                    //shown shopping lists stay, they will be re-read on next change
+                    Logger.w(LOG_TAG, "subscribeToShoppingLists(): failed to re-read shopping lists");
+                    return;
+                }
+                unsubscribeFromShoppingLists();
                 hideViewLoading(true, new AnimationFinishedCallback() {
                     @Override
                     public void animationFinished() {
@@ -161,7 +268,84 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
                 }
             }
         };
-        cpa.getShoppingListsAndUncheckedItems(archived, callback);
+        query.subscribe(shoppingListsCallback);
+    }
+
+    /**
+     * Stops observing shown shopping lists.
+     */
+    private void unsubscribeFromShoppingLists() {
+        if (shoppingListsQuery != null && shoppingListsCallback != null) {
+            shoppingListsQuery.unsubscribe(shoppingListsCallback);
+        }
+        shoppingListsQuery = null;
+        shoppingListsCallback = null;
+    }
+
+    /**
+     * Loads next page of shopping lists if user scrolled near end of already loaded ones.
+     */
+    private void loadNextShoppingListsPageIfNeeded() {
+        if (loadingNextPage || allShoppingListsLoaded || shoppingListsQuery == null
+                || currentShoppingLists == null || currentShoppingLists.isEmpty()) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) listRV.getLayoutManager();
+        if (layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - LOAD_NEXT_PAGE_THRESHOLD) {
+            loadNextShoppingListsPage();
+        }
+    }
+
+    /**
+     * Loads from database page of shopping lists following already loaded ones and appends it
+     * to RecyclerView and to observed shopping lists.
+     */
+    private void loadNextShoppingListsPage() {
+        Logger.v(LOG_TAG, "loadNextShoppingListsPage()");
+        final int generation = shoppingListsGeneration;
+        final ShoppingList after = currentShoppingLists.get(currentShoppingLists.size() - 1);
+        loadingNextPage = true;
+        SelectCallback<ShoppingList> callback = new SelectCallback<ShoppingList>() {
+            @Override
+            public void onSuccess(ArrayList<ShoppingList> objects) {
+                if (generation != shoppingListsGeneration || shoppingListsQuery == null) {
+                    return;
+                }
+                loadingNextPage = false;
+                if (currentShoppingLists.isEmpty()
+                        || !after.equals(currentShoppingLists.get(currentShoppingLists.size() - 1))) {
+                    //shown shopping lists changed meanwhile, so page doesn't follow them
+                    loadNextShoppingListsPageIfNeeded();
+                    return;
+                }
+                allShoppingListsLoaded = objects.size() < PAGE_SIZE;
+                shoppingListsQuery.appendPage(objects);
+                //result of query must not be modified
+                int positionStart = currentShoppingLists.size();
+                currentShoppingLists = new ArrayList<>(currentShoppingLists);
+                currentShoppingLists.addAll(objects);
+                adapter.setShoppingLists(currentShoppingLists);
+                adapter.notifyItemRangeInserted(positionStart, objects.size());
+            }
+
+            @Override
+            public void onFailure() {
+                if (generation != shoppingListsGeneration) {
+                    return;
+                }
+                if (getView() != null) {
+                    Snackbar.make(getView(), R.string.fragment_main_error_message_reading_shopping_lists, Snackbar.LENGTH_LONG)
+                            .setAction(R.string.snackbar_action_retry, new View.OnClickListener() {
+                                @Override
+                                public void onClick(View v) {
+                                    loadingNextPage = false;
+                                    loadNextShoppingListsPageIfNeeded();
+                                }
+                            }).show();
+                }
+            }
+        };
+        contentProviderAccess.getShoppingListSummariesPage(showingArchivedLists, after, PAGE_SIZE, callback);
     }
 
     /**
@@ -186,7 +370,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      */
     @Override
     public void onShoppingListClicked(ShoppingList shoppingList, View view) {
-        Logger.v(LOG_TAG, "onShoppingListClicked(" + shoppingList + ")");
+        Logger.v(LOG_TAG, "onShoppingListClicked({})", shoppingList);
         Intent intent = new Intent(MainActivityFragment.this.getContext(), ListDetailsActivity.class);
         intent.putExtra(ListDetailsActivity.ARG_SHOPPING_LIST, shoppingList);
         ActivityOptionsCompat options = ActivityOptionsCompat.makeScaleUpAnimation(
@@ -198,52 +382,38 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     }
 
     /**
-     * Handles result of ListDetailsActivity and updates shown shopping lists RecyclerView to
-     * reflect changes made during creating/editing shopping list.
-     * @param requestCode request code
-     * @param resultCode result code
-     * @param data returned data
+     * Shows changes of shown shopping lists and switches between list and "No lists" message
+     * if needed.
+     * @param objects current shopping lists
+     * @param diff changes since shown shopping lists, or null if they are unknown
      */
-    @Override
-    public void onActivityResult(int requestCode, int resultCode, Intent data) {
-        Logger.v(LOG_TAG, "onActivityResult()");
-        if (requestCode == REQUEST_CODE_LIST_DETAILS && resultCode == Activity.RESULT_OK) {
-            ShoppingList shoppingList = data.getParcelableExtra(ListDetailsActivity.RESULT_SHOPPING_LIST);
-            int operation = data.getIntExtra(ListDetailsActivity.RESULT_OPERATION, -1);
-            switch (operation) {
-                case ListDetailsActivity.OPERATION_ADD:
-                    currentShoppingLists.add(0, shoppingList);
-                    adapter.notifyDataSetChanged();
-                    if (adapter.getItemCount() == 1) {
-                        hideViewNoListsMessage(true, showingArchivedLists ? fadeOutMoveDown : scale100To110FadeOut,
-                                new AnimationFinishedCallback() {
-                                    @Override
-                                    public void animationFinished() {
-                                        showViewList(true, showingArchivedLists ? fadeInMoveUp : scale110To100FadeIn, null);
-                                    }
-                                });
-                    }
-                    break;
-                case ListDetailsActivity.OPERATION_UPDATE:
-                    currentShoppingLists.set(currentShoppingLists.indexOf(shoppingList), shoppingList);
-                    adapter.notifyDataSetChanged();
-                    break;
-                case ListDetailsActivity.OPERATION_REMOVE:
-                    currentShoppingLists.remove(shoppingList);
-                    adapter.notifyDataSetChanged();
-                    if (currentShoppingLists.size() == 0) {
-                        hideViewList(true, showingArchivedLists ? fadeOutMoveDown : scale100To110FadeOut,
-                                new AnimationFinishedCallback() {
-                                    @Override
-                                    public void animationFinished() {
-                                        showViewNoListsMessage(true, showingArchivedLists ? fadeInMoveUp : scale110To100FadeIn, null);
-                                    }
-                                });
-                    }
-                    break;
-            }
+    private void showChanges(ArrayList<ShoppingList> objects, @Nullable DiffUtil.DiffResult diff) {
+        Logger.v(LOG_TAG, "showChanges({})", objects.size());
+        boolean wasEmpty = currentShoppingLists == null || currentShoppingLists.isEmpty();
+        currentShoppingLists = objects;
+        adapter.setShoppingLists(objects);
+        if (diff == null) {
+            adapter.notifyDataSetChanged();
+        } else {
+            diff.dispatchUpdatesTo(adapter);
+        }
+        if (wasEmpty && !objects.isEmpty()) {
+            hideViewNoListsMessage(true, showingArchivedLists ? fadeOutMoveDown : scale100To110FadeOut,
+                    new AnimationFinishedCallback() {
+                        @Override
+                        public void animationFinished() {
+                            showViewList(true, showingArchivedLists ? fadeInMoveUp : scale110To100FadeIn, null);
+                        }
+                    });
+        } else if (!wasEmpty && objects.isEmpty()) {
+            hideViewList(true, showingArchivedLists ? fadeOutMoveDown : scale100To110FadeOut,
+                    new AnimationFinishedCallback() {
+                        @Override
+                        public void animationFinished() {
+                            showViewNoListsMessage(true, showingArchivedLists ? fadeInMoveUp : scale110To100FadeIn, null);
+                        }
+                    });
         }
-        super.onActivityResult(requestCode, resultCode, data);
     }
 
     /**
@@ -254,7 +424,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      * @param objects list of shopping lists to show
      */
     private void showData(final boolean animate, Animation anim, final ArrayList<ShoppingList> objects) {
-        Logger.v(LOG_TAG, "showData(" + animate + ", " + objects + ")");
+        Logger.v(LOG_TAG, "showData({}, {})", animate, objects);
         currentShoppingLists = objects;
 
         if (objects == null || objects.size() == 0) {
@@ -264,9 +434,44 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
             adapter.setShoppingLists(objects);
             adapter.notifyDataSetChanged();
             showViewList(animate, anim, null);
+            //visible positions are known after layout
+            listRV.post(new Runnable() {
+                @Override
+                public void run() {
+                    prefetchItemsOfVisibleShoppingLists();
+                }
+            });
         }
     }
 
+    /**
+     * Prefetches items of visible shopping lists and shopping lists near them, so opening any of
+     * them doesn't need loading.
+     */
+    private void prefetchItemsOfVisibleShoppingLists() {
+        if (currentShoppingLists == null || currentShoppingLists.isEmpty() || getView() == null) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) listRV.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        //visible first, then below them as lists are usually scrolled down, then above them
+        ArrayList<ShoppingList> shoppingLists = new ArrayList<>();
+        for (int i = first; i <= last && i < currentShoppingLists.size(); i++) {
+            shoppingLists.add(currentShoppingLists.get(i));
+        }
+        for (int i = last + 1; i <= last + PREFETCH_DISTANCE && i < currentShoppingLists.size(); i++) {
+            shoppingLists.add(currentShoppingLists.get(i));
+        }
+        for (int i = first - 1; i >= first - PREFETCH_DISTANCE && i >= 0; i--) {
+            shoppingLists.add(currentShoppingLists.get(i));
+        }
+        itemsPrefetcher.prefetch(shoppingLists);
+    }
+
     /**
      * Hides all views (list, loading and "No lists" message).
      * @param animate if true hiding will be animated, otherwise views will hide instantly
@@ -274,7 +479,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      * @param callback called when all views are done hiding (optional)
      */
     private void hideAllViews(boolean animate, @Nullable Animation anim, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideAllViews(" + animate + ")");
+        Logger.v(LOG_TAG, "hideAllViews({})", animate);
 
         hideViewList(animate, anim, new AnimationFinishedCallback() {
             @Override
@@ -315,7 +520,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     @SuppressWarnings("SameParameterValue")
     private void showViewList(boolean animate, @Nullable Animation anim,
                               @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "showViewList(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "showViewList({}, {})", animate, callback);
         if (listRV.getVisibility() == View.VISIBLE) {
             //view is already shown, just exit
             Logger.d(LOG_TAG, "view already shown");
@@ -370,7 +575,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      */
     private void hideViewList(boolean animate, @Nullable Animation anim,
                               @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideViewList(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "hideViewList({}, {})", animate, callback);
         if (listRV.getVisibility() == View.GONE || listRV.getVisibility() == View.INVISIBLE) {
             //view is already hidden, just exit
             Logger.d(LOG_TAG, "view already hidden");
@@ -425,7 +630,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      */
     @SuppressWarnings("SameParameterValue")
     private void showViewLoading(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "showViewLoading(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "showViewLoading({}, {})", animate, callback);
         if (loadingMPB.getVisibility() == View.VISIBLE) {
             //view is already shown, just exit
             Logger.d(LOG_TAG, "view already shown");
@@ -470,7 +675,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      * @param callback called when view is done hiding (optional)
      */
     private void hideViewLoading(boolean animate, @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideViewLoading(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "hideViewLoading({}, {})", animate, callback);
         if (loadingMPB.getVisibility() == View.GONE || loadingMPB.getVisibility() == View.INVISIBLE) {
             //view is already hidden, just exit
             Logger.d(LOG_TAG, "view already hidden");
@@ -519,7 +724,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     @SuppressWarnings("SameParameterValue")
     private void showViewNoListsMessage(boolean animate, @Nullable Animation anim,
                                         @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "showViewNoListsMessage(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "showViewNoListsMessage({}, {})", animate, callback);
         if (noListsTV.getVisibility() == View.VISIBLE) {
             //view is already shown, just exit
             Logger.d(LOG_TAG, "view already shown");
@@ -574,7 +779,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
      */
     private void hideViewNoListsMessage(boolean animate, @Nullable Animation anim,
                                         @Nullable final AnimationFinishedCallback callback) {
-        Logger.v(LOG_TAG, "hideViewNoListsMessage(" + animate + ", " + callback + ")");
+        Logger.v(LOG_TAG, "hideViewNoListsMessage({}, {})", animate, callback);
         if (noListsTV.getVisibility() == View.GONE || noListsTV.getVisibility() == View.INVISIBLE) {
             //view is already hidden, just exit
             Logger.d(LOG_TAG, "view already hidden");
@@ -629,7 +834,16 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     private void restoreInstanceState(Bundle savedInstanceState) {
         Logger.v(LOG_TAG, "restoreInstanceState()");
         currentShoppingLists = savedInstanceState.getParcelableArrayList(STATE_SHOPPING_LISTS);
+        allShoppingListsLoaded = savedInstanceState.getBoolean(STATE_ALL_SHOPPING_LISTS_LOADED);
+        if (currentShoppingLists == null) {
+            //loading was cancelled before it finished, so start it again
+            showViewLoading(false, null);
+            loadShoppingLists(showingArchivedLists, null);
+            return;
+        }
         showData(false, null, currentShoppingLists);
+        //shopping lists could change while they weren't observed
+        subscribeToShoppingLists(showingArchivedLists, Math.max(currentShoppingLists.size(), PAGE_SIZE), true, null);
     }
 
     /**
@@ -640,6 +854,7 @@ public class MainActivityFragment extends Fragment implements MainActivityFragme
     public void onSaveInstanceState(@NonNull Bundle outState) {
         Logger.v(LOG_TAG, "onSaveInstanceState()");
         outState.putParcelableArrayList(STATE_SHOPPING_LISTS, currentShoppingLists);
+        outState.putBoolean(STATE_ALL_SHOPPING_LISTS_LOADED, allShoppingListsLoaded);
         super.onSaveInstanceState(outState);
     }
 }
@@ -14,6 +14,7 @@ import java.util.ArrayList;
 
 import pl.coreorb.shoppinglist.R;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
+import pl.coreorb.shoppinglist.utils.Tracer;
 
 /**
  * RecyclerView for MainActivityFragment fragment.
@@ -43,7 +44,15 @@ public class MainActivityFragmentListAdapter extends RecyclerView.Adapter<MainAc
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        final ShoppingList item = mShoppingLists.get(position);
+        Tracer.beginSection("MainActivityFragmentListAdapter.onBindViewHolder");
+        try {
+            bindViewHolder(holder, mShoppingLists.get(position));
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    private void bindViewHolder(ViewHolder holder, final ShoppingList item) {
 
         holder.mainCV.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -59,12 +68,36 @@ public class MainActivityFragmentListAdapter extends RecyclerView.Adapter<MainAc
             holder.titleTV.setText(item.getTitle());
         }
 
-        if (item.getUncheckedItemsAsString(", ").equals("")) {
+        //summary from database is used until shopping list is fully loaded in ListDetailsActivity
+        String uncheckedItems = item.isFullyLoaded() ? item.getUncheckedItemsAsString(", ")
+                : item.getUncheckedItemsSummary();
+        if (uncheckedItems.equals("")) {
             holder.contentTV.setTextColor(ContextCompat.getColor(mContext, R.color.divider));
             holder.contentTV.setText(R.string.fragment_main_list_item_empty_list);
         } else {
             holder.contentTV.setTextColor(ContextCompat.getColor(mContext, R.color.secondaryText));
-            holder.contentTV.setText(item.getUncheckedItemsAsString(", "));
+            holder.contentTV.setText(uncheckedItems);
+        }
+
+        int itemsCount, uncheckedItemsCount;
+        if (item.isFullyLoaded()) {
+            itemsCount = item.getItems().size();
+            uncheckedItemsCount = 0;
+            for (int i = 0; i < itemsCount; i++) {
+                if (!item.getItems().get(i).isChecked()) {
+                    uncheckedItemsCount++;
+                }
+            }
+        } else {
+            itemsCount = item.getItemsCount();
+            uncheckedItemsCount = item.getUncheckedItemsCount();
+        }
+        if (itemsCount == 0) {
+            holder.countsTV.setVisibility(View.GONE);
+        } else {
+            holder.countsTV.setVisibility(View.VISIBLE);
+            holder.countsTV.setText(mContext.getString(R.string.fragment_main_list_item_counts,
+                    itemsCount - uncheckedItemsCount, itemsCount));
         }
     }
 
@@ -78,13 +111,14 @@ public class MainActivityFragmentListAdapter extends RecyclerView.Adapter<MainAc
         final CardView mainCV;
         final TextView titleTV;
         final TextView contentTV;
-
+        final TextView countsTV;
 
         ViewHolder(View itemView) {
             super(itemView);
             this.mainCV = itemView.findViewById(R.id.main_cv);
             this.titleTV = itemView.findViewById(R.id.title_tv);
             this.contentTV = itemView.findViewById(R.id.content_tv);
+            this.countsTV = itemView.findViewById(R.id.counts_tv);
         }
     }
 
@@ -14,6 +14,11 @@ public class ItemsTable {
     public static final String COLUMN_CONTENT = "content";
     public static final String COLUMN_CHECKED = "checked";
     public static final String COLUMN_TIMESTAMP = "timestamp";
+    /**
+     * Unique key generated by application when creating item, so creation replayed from
+     * PendingWriteJournal after it was already applied is detected. Null for older items.
+     */
+    public static final String COLUMN_CLIENT_KEY = "client_key";
 
     static final String[] COLUMNS_ALL = {
             COLUMN_ID,
@@ -21,24 +26,175 @@ public class ItemsTable {
             COLUMN_CONTENT,
             COLUMN_CHECKED,
             COLUMN_TIMESTAMP,
+            COLUMN_CLIENT_KEY,
             TABLE_ITEMS + "." + COLUMN_ID
     };
 
-    private static final String CREATE_TABLE_ITEMS = "CREATE TABLE " + TABLE_ITEMS + "("
-            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + COLUMN_SHOPPING_LIST_ID + " INTEGER,"
-            + COLUMN_CONTENT + " TEXT,"
-            + COLUMN_CHECKED + " INTEGER DEFAULT 0,"
-            + COLUMN_TIMESTAMP + " DATETIME"
+    /**
+     * Selection of items without shopping list. Foreign key doesn't allow to create them,
+     * but they could be left by versions of application without it, upgrade deletes them.
+     */
+    private static final String SELECTION_ORPHANED = COLUMN_SHOPPING_LIST_ID + " IS NULL OR "
+            + COLUMN_SHOPPING_LIST_ID + " NOT IN (SELECT " + ShoppingListsTable.COLUMN_ID
+            + " FROM " + ShoppingListsTable.TABLE_SHOPPING_LISTS + ")";
+
+    private static final String CREATE_TABLE_ITEMS = createTable(TABLE_ITEMS);
+
+    /**
+     * Index used when reading items of shopping list (also only unchecked ones) sorted by timestamp
+     * and when joining items to shopping lists.
+     */
+    static final String INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP = "items_shopping_list_id_checked_timestamp_idx";
+
+    private static final String CREATE_INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP = "CREATE INDEX IF NOT EXISTS "
+            + INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP + " ON " + TABLE_ITEMS + "("
+            + COLUMN_SHOPPING_LIST_ID + ","
+            + COLUMN_CHECKED + ","
+            + COLUMN_TIMESTAMP
+            + ")";
+
+    /**
+     * Index used when reading pages of items of shopping list sorted by timestamp and id.
+     */
+    static final String INDEX_SHOPPING_LIST_ID_TIMESTAMP = "items_shopping_list_id_timestamp_idx";
+
+    private static final String CREATE_INDEX_SHOPPING_LIST_ID_TIMESTAMP = "CREATE INDEX IF NOT EXISTS "
+            + INDEX_SHOPPING_LIST_ID_TIMESTAMP + " ON " + TABLE_ITEMS + "("
+            + COLUMN_SHOPPING_LIST_ID + ","
+            + COLUMN_TIMESTAMP
             + ")";
 
+    //added to table after it is created, so rebuilding table in version 6 keeps its columns
+    private static final String ADD_COLUMN_CLIENT_KEY = "ALTER TABLE " + TABLE_ITEMS
+            + " ADD COLUMN " + COLUMN_CLIENT_KEY + " TEXT";
+
+    /**
+     * Index used when checking if item with client key was already created (null keys of older
+     * items don't collide).
+     */
+    static final String INDEX_CLIENT_KEY = "items_client_key_idx";
+
+    private static final String CREATE_INDEX_CLIENT_KEY = "CREATE UNIQUE INDEX IF NOT EXISTS "
+            + INDEX_CLIENT_KEY + " ON " + TABLE_ITEMS + "(" + COLUMN_CLIENT_KEY + ")";
+
+    /**
+     * Current time in milliseconds in SQL.
+     */
+    private static final String NOW = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    /**
+     * Triggers keeping counters and time of last modification in shopping_lists table up to date.
+     * Item is counted as unchecked if checked column is 0.
+     */
+    private static final String[] CREATE_TRIGGERS_SHOPPING_LIST_COUNTERS = {
+            "CREATE TRIGGER " + TABLE_ITEMS + "_counters_insert AFTER INSERT ON " + TABLE_ITEMS
+                    + " BEGIN " + changeCounters("new", "+") + " END",
+            "CREATE TRIGGER " + TABLE_ITEMS + "_counters_delete AFTER DELETE ON " + TABLE_ITEMS
+                    + " BEGIN " + changeCounters("old", "-") + " END",
+            "CREATE TRIGGER " + TABLE_ITEMS + "_counters_update AFTER UPDATE OF "
+                    + COLUMN_CONTENT + ", " + COLUMN_CHECKED + " ON " + TABLE_ITEMS
+                    + " WHEN old." + COLUMN_SHOPPING_LIST_ID + " IS new." + COLUMN_SHOPPING_LIST_ID
+                    + " BEGIN UPDATE " + ShoppingListsTable.TABLE_SHOPPING_LISTS + " SET "
+                    + ShoppingListsTable.COLUMN_UNCHECKED_COUNT + " = " + ShoppingListsTable.COLUMN_UNCHECKED_COUNT
+                    + " + (new." + COLUMN_CHECKED + " IS 0) - (old." + COLUMN_CHECKED + " IS 0), "
+                    + ShoppingListsTable.COLUMN_LAST_MODIFIED + " = " + NOW
+                    + " WHERE " + ShoppingListsTable.COLUMN_ID + " = new." + COLUMN_SHOPPING_LIST_ID + "; END",
+            "CREATE TRIGGER " + TABLE_ITEMS + "_counters_move AFTER UPDATE OF "
+                    + COLUMN_SHOPPING_LIST_ID + " ON " + TABLE_ITEMS
+                    + " WHEN old." + COLUMN_SHOPPING_LIST_ID + " IS NOT new." + COLUMN_SHOPPING_LIST_ID
+                    + " BEGIN " + changeCounters("old", "-") + " " + changeCounters("new", "+") + " END"
+    };
+
     static void onCreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL(CREATE_TABLE_ITEMS);
+        sqLiteDatabase.execSQL(ADD_COLUMN_CLIENT_KEY);
+        sqLiteDatabase.execSQL(CREATE_INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP);
+        sqLiteDatabase.execSQL(CREATE_INDEX_SHOPPING_LIST_ID_TIMESTAMP);
+        sqLiteDatabase.execSQL(CREATE_INDEX_CLIENT_KEY);
+        for (String trigger : CREATE_TRIGGERS_SHOPPING_LIST_COUNTERS) {
+            sqLiteDatabase.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Creates statement creating items table. Items are deleted together with their shopping list
+     * (index on shopping_list_id used by foreign key exists).
+     *
+     * @param table name of table
+     * @return SQL statement
+     */
+    private static String createTable(String table) {
+        return "CREATE TABLE " + table + "("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + COLUMN_SHOPPING_LIST_ID + " INTEGER REFERENCES " + ShoppingListsTable.TABLE_SHOPPING_LISTS
+                + "(" + ShoppingListsTable.COLUMN_ID + ") ON DELETE CASCADE,"
+                + COLUMN_CONTENT + " TEXT,"
+                + COLUMN_CHECKED + " INTEGER DEFAULT 0,"
+                + COLUMN_TIMESTAMP + " DATETIME"
+                + ")";
+    }
+
+    /**
+     * Upgrades table to provided version of database. Called once for every version between old
+     * and new one, so changes are applied step by step without losing data.
+     *
+     * @param sqLiteDatabase database
+     * @param version        version to upgrade to
+     */
+    static void onUpgrade(SQLiteDatabase sqLiteDatabase, int version) {
+        switch (version) {
+            case 2:
+                sqLiteDatabase.execSQL(CREATE_INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP);
+                break;
+            case 3:
+                sqLiteDatabase.execSQL(CREATE_INDEX_SHOPPING_LIST_ID_TIMESTAMP);
+                break;
+            case 5:
+                for (String trigger : CREATE_TRIGGERS_SHOPPING_LIST_COUNTERS) {
+                    sqLiteDatabase.execSQL(trigger);
+                }
+                break;
+            case 6:
+                //SQLite can't add foreign key to existing table, so table is rebuilt
+                //(dropping old table drops also its indexes and triggers)
+                String columns = COLUMN_ID + ", " + COLUMN_SHOPPING_LIST_ID + ", " + COLUMN_CONTENT + ", "
+                        + COLUMN_CHECKED + ", " + COLUMN_TIMESTAMP;
+                sqLiteDatabase.delete(TABLE_ITEMS, SELECTION_ORPHANED, null);
+                sqLiteDatabase.execSQL(createTable(TABLE_ITEMS + "_new"));
+                sqLiteDatabase.execSQL("INSERT INTO " + TABLE_ITEMS + "_new(" + columns + ")"
+                        + " SELECT " + columns + " FROM " + TABLE_ITEMS);
+                //keep sequence of ids, so ids of deleted items are not reused
+                sqLiteDatabase.execSQL("UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence"
+                        + " WHERE name = '" + TABLE_ITEMS + "') WHERE name = '" + TABLE_ITEMS + "_new'");
+                sqLiteDatabase.execSQL("DROP TABLE " + TABLE_ITEMS);
+                sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_ITEMS + "_new RENAME TO " + TABLE_ITEMS);
+                sqLiteDatabase.execSQL(CREATE_INDEX_SHOPPING_LIST_ID_CHECKED_TIMESTAMP);
+                sqLiteDatabase.execSQL(CREATE_INDEX_SHOPPING_LIST_ID_TIMESTAMP);
+                for (String trigger : CREATE_TRIGGERS_SHOPPING_LIST_COUNTERS) {
+                    sqLiteDatabase.execSQL(trigger);
+                }
+                break;
+            case 7:
+                sqLiteDatabase.execSQL(ADD_COLUMN_CLIENT_KEY);
+                sqLiteDatabase.execSQL(CREATE_INDEX_CLIENT_KEY);
+                break;
+        }
     }
 
-    @SuppressWarnings("unused")
-    static void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i2) {
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + TABLE_ITEMS);
-        onCreate(sqLiteDatabase);
+    /**
+     * Creates statement adding item to counters of its shopping list or removing it from them.
+     *
+     * @param row      "new" or "old" row of trigger
+     * @param operator "+" to add item, "-" to remove it
+     * @return SQL statement
+     */
+    private static String changeCounters(String row, String operator) {
+        return "UPDATE " + ShoppingListsTable.TABLE_SHOPPING_LISTS + " SET "
+                + ShoppingListsTable.COLUMN_TOTAL_COUNT + " = " + ShoppingListsTable.COLUMN_TOTAL_COUNT
+                + " " + operator + " 1, "
+                + ShoppingListsTable.COLUMN_UNCHECKED_COUNT + " = " + ShoppingListsTable.COLUMN_UNCHECKED_COUNT
+                + " " + operator + " (" + row + "." + COLUMN_CHECKED + " IS 0), "
+                + ShoppingListsTable.COLUMN_LAST_MODIFIED + " = " + NOW
+                + " WHERE " + ShoppingListsTable.COLUMN_ID + " = " + row + "." + COLUMN_SHOPPING_LIST_ID + ";";
     }
 }
@@ -0,0 +1,318 @@
+package pl.coreorb.shoppinglist.contentprovider;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Class describing full-text search tables in SQLite database. Content of items and titles of
+ * shopping lists are copied by triggers into FTS4 tables (docid is id of source row), with
+ * Polish letters replaced by their base letters, so "recznik" finds "ręcznik".
+ */
+public class SearchTable {
+
+    public static final String TABLE_ITEMS_SEARCH = "items_search";
+    public static final String TABLE_SHOPPING_LISTS_SEARCH = "shopping_lists_search";
+    private static final String COLUMN_DOCID = "docid";
+
+    //columns of rows returned by search uri
+    public static final String COLUMN_TYPE = "type";
+    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_SHOPPING_LIST_ID = "shopping_list_id";
+    public static final String COLUMN_TEXT = "text";
+    //matchinfo() of matched row, used to rank it
+    private static final String COLUMN_MATCH_INFO = "match_info";
+    private static final String MATCH_INFO_FORMAT = "pcnalx";
+
+    //parameters of BM25 ranking: saturation of term frequency and normalization by length
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    //values of type column
+    public static final int TYPE_SHOPPING_LIST = 1;
+    public static final int TYPE_ITEM = 2;
+
+    /**
+     * Letters folded to their base letters. Tokenizer unicode61 removes most of diacritics by
+     * itself, but not from "ł", and it is not available on older devices at all.
+     */
+    private static final String FOLDED_LETTERS = "ąćęłńóśźżĄĆĘŁŃÓŚŹŻ";
+    private static final String BASE_LETTERS = "acelnoszzACELNOSZZ";
+
+    private static final String TOKENIZER_UNICODE = "unicode61 \"remove_diacritics=1\"";
+    private static final String TOKENIZER_SIMPLE = "simple";
+
+    /**
+     * Query returning shopping lists whose title and items whose content match expression,
+     * with matchinfo() to rank them with rankMatches(). Arguments are match expression (twice).
+     */
+    static final String SEARCH_QUERY = "SELECT " + TYPE_SHOPPING_LIST + " AS " + COLUMN_TYPE + ", "
+            + ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID + " AS " + COLUMN_ID + ", "
+            + ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID + " AS " + COLUMN_SHOPPING_LIST_ID + ", "
+            + ShoppingListsTable.COLUMN_TITLE + " AS " + COLUMN_TEXT + ", "
+            + "matchinfo(" + TABLE_SHOPPING_LISTS_SEARCH + ", '" + MATCH_INFO_FORMAT + "') AS " + COLUMN_MATCH_INFO
+            + " FROM " + TABLE_SHOPPING_LISTS_SEARCH + " JOIN " + ShoppingListsTable.TABLE_SHOPPING_LISTS
+            + " ON " + ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID
+            + " = " + TABLE_SHOPPING_LISTS_SEARCH + "." + COLUMN_DOCID
+            + " WHERE " + TABLE_SHOPPING_LISTS_SEARCH + " MATCH ?"
+            + " UNION ALL "
+            + "SELECT " + TYPE_ITEM + " AS " + COLUMN_TYPE + ", "
+            + ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_ID + " AS " + COLUMN_ID + ", "
+            + ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_SHOPPING_LIST_ID + " AS " + COLUMN_SHOPPING_LIST_ID + ", "
+            + ItemsTable.COLUMN_CONTENT + " AS " + COLUMN_TEXT + ", "
+            + "matchinfo(" + TABLE_ITEMS_SEARCH + ", '" + MATCH_INFO_FORMAT + "') AS " + COLUMN_MATCH_INFO
+            + " FROM " + TABLE_ITEMS_SEARCH + " JOIN " + ItemsTable.TABLE_ITEMS
+            + " ON " + ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_ID
+            + " = " + TABLE_ITEMS_SEARCH + "." + COLUMN_DOCID
+            + " WHERE " + TABLE_ITEMS_SEARCH + " MATCH ?";
+
+    /**
+     * Orders rows returned by SEARCH_QUERY by relevance. FTS4 has no built-in ranking, so BM25
+     * score is computed from matchinfo() of every row. Shopping lists come first (scores of two
+     * tables are not comparable), then more relevant matches, then shorter and newer ones.
+     *
+     * @param matches cursor of SEARCH_QUERY
+     * @param limit   maximum number of returned rows
+     * @return cursor with columns COLUMN_TYPE, COLUMN_ID, COLUMN_SHOPPING_LIST_ID and COLUMN_TEXT
+     */
+    static MatrixCursor rankMatches(Cursor matches, int limit) {
+        int typeColumn = matches.getColumnIndexOrThrow(COLUMN_TYPE);
+        int idColumn = matches.getColumnIndexOrThrow(COLUMN_ID);
+        int shoppingListIdColumn = matches.getColumnIndexOrThrow(COLUMN_SHOPPING_LIST_ID);
+        int textColumn = matches.getColumnIndexOrThrow(COLUMN_TEXT);
+        int matchInfoColumn = matches.getColumnIndexOrThrow(COLUMN_MATCH_INFO);
+        ArrayList<RankedMatch> rankedMatches = new ArrayList<>(matches.getCount());
+        while (matches.moveToNext()) {
+            rankedMatches.add(new RankedMatch(matches.getInt(typeColumn), matches.getLong(idColumn),
+                    matches.getLong(shoppingListIdColumn), matches.getString(textColumn),
+                    bm25(matches.getBlob(matchInfoColumn))));
+        }
+        Collections.sort(rankedMatches, RankedMatch.ORDER);
+
+        MatrixCursor cursor = new MatrixCursor(new String[]{COLUMN_TYPE, COLUMN_ID, COLUMN_SHOPPING_LIST_ID,
+                COLUMN_TEXT}, Math.min(limit, rankedMatches.size()));
+        for (int i = 0; i < rankedMatches.size() && i < limit; i++) {
+            RankedMatch match = rankedMatches.get(i);
+            cursor.addRow(new Object[]{match.type, match.id, match.shoppingListId, match.text});
+        }
+        return cursor;
+    }
+
+    /**
+     * Computes BM25 score of row from its matchinfo() in MATCH_INFO_FORMAT: number of phrases
+     * and columns, number of rows, average and row lengths of columns (in tokens), then for every
+     * phrase and column hits in row, hits in all rows and number of rows with hits.
+     *
+     * @param matchInfo result of matchinfo(), array of 32-bit integers in native byte order
+     * @return score, higher for more relevant row
+     */
+    static double bm25(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+        int rows = buffer.getInt(8);
+        int averageLengthOffset = 3;
+        int lengthOffset = averageLengthOffset + columns;
+        int hitsOffset = lengthOffset + columns;
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int hits = hitsOffset + 3 * (phrase * columns + column);
+                int hitsInRow = buffer.getInt(4 * hits);
+                if (hitsInRow == 0) {
+                    continue;
+                }
+                int rowsWithHits = buffer.getInt(4 * (hits + 2));
+                int averageLength = Math.max(buffer.getInt(4 * (averageLengthOffset + column)), 1);
+                int length = buffer.getInt(4 * (lengthOffset + column));
+                //always positive, also for words present in most of rows
+                double idf = Math.log(1 + (rows - rowsWithHits + 0.5) / (rowsWithHits + 0.5));
+                score += idf * hitsInRow * (BM25_K1 + 1)
+                        / (hitsInRow + BM25_K1 * (1 - BM25_B + BM25_B * length / averageLength));
+            }
+        }
+        return score;
+    }
+
+    private static class RankedMatch {
+
+        static final Comparator<RankedMatch> ORDER = new Comparator<RankedMatch>() {
+            @Override
+            public int compare(RankedMatch first, RankedMatch second) {
+                if (first.type != second.type) {
+                    return first.type < second.type ? -1 : 1;
+                }
+                int byScore = Double.compare(second.score, first.score);
+                if (byScore != 0) {
+                    return byScore;
+                }
+                int firstLength = first.text == null ? 0 : first.text.length();
+                int secondLength = second.text == null ? 0 : second.text.length();
+                if (firstLength != secondLength) {
+                    return firstLength < secondLength ? -1 : 1;
+                }
+                return first.id == second.id ? 0 : (first.id > second.id ? -1 : 1);
+            }
+        };
+
+        final int type;
+        final long id;
+        final long shoppingListId;
+        final String text;
+        final double score;
+
+        RankedMatch(int type, long id, long shoppingListId, String text, double score) {
+            this.type = type;
+            this.id = id;
+            this.shoppingListId = shoppingListId;
+            this.text = text;
+            this.score = score;
+        }
+    }
+
+    static void onCreate(SQLiteDatabase sqLiteDatabase) {
+        createSearchTables(sqLiteDatabase);
+        createTriggers(sqLiteDatabase);
+    }
+
+    /**
+     * Upgrades search tables to provided version of database. Called once for every version between
+     * old and new one, so changes are applied step by step without losing data.
+     *
+     * @param sqLiteDatabase database
+     * @param version        version to upgrade to
+     */
+    static void onUpgrade(SQLiteDatabase sqLiteDatabase, int version) {
+        switch (version) {
+            case 4:
+                createSearchTables(sqLiteDatabase);
+                createTriggers(sqLiteDatabase);
+                sqLiteDatabase.execSQL("INSERT INTO " + TABLE_ITEMS_SEARCH + "(" + COLUMN_DOCID + ", " + COLUMN_TEXT + ")"
+                        + " SELECT " + ItemsTable.COLUMN_ID + ", " + fold(ItemsTable.COLUMN_CONTENT)
+                        + " FROM " + ItemsTable.TABLE_ITEMS);
+                sqLiteDatabase.execSQL("INSERT INTO " + TABLE_SHOPPING_LISTS_SEARCH + "(" + COLUMN_DOCID + ", " + COLUMN_TEXT + ")"
+                        + " SELECT " + ShoppingListsTable.COLUMN_ID + ", " + fold(ShoppingListsTable.COLUMN_TITLE)
+                        + " FROM " + ShoppingListsTable.TABLE_SHOPPING_LISTS);
+                break;
+            case 6:
+                //items table was rebuilt with foreign key, together with its triggers
+                createItemsTriggers(sqLiteDatabase);
+                break;
+        }
+    }
+
+    /**
+     * Creates FTS tables, with unicode61 tokenizer if SQLite supports it (Android 5.0+),
+     * otherwise with simple one.
+     *
+     * @param sqLiteDatabase database
+     */
+    private static void createSearchTables(SQLiteDatabase sqLiteDatabase) {
+        String tokenizer = TOKENIZER_UNICODE;
+        try {
+            sqLiteDatabase.execSQL(createSearchTable(TABLE_ITEMS_SEARCH, tokenizer));
+        } catch (SQLiteException e) {
+            tokenizer = TOKENIZER_SIMPLE;
+            sqLiteDatabase.execSQL(createSearchTable(TABLE_ITEMS_SEARCH, tokenizer));
+        }
+        sqLiteDatabase.execSQL(createSearchTable(TABLE_SHOPPING_LISTS_SEARCH, tokenizer));
+    }
+
+    private static String createSearchTable(String table, String tokenizer) {
+        return "CREATE VIRTUAL TABLE " + table + " USING fts4("
+                + COLUMN_TEXT + ", tokenize=" + tokenizer + ")";
+    }
+
+    private static void createTriggers(SQLiteDatabase sqLiteDatabase) {
+        createItemsTriggers(sqLiteDatabase);
+        createTriggers(sqLiteDatabase, ShoppingListsTable.TABLE_SHOPPING_LISTS, ShoppingListsTable.COLUMN_ID,
+                ShoppingListsTable.COLUMN_TITLE, TABLE_SHOPPING_LISTS_SEARCH);
+    }
+
+    private static void createItemsTriggers(SQLiteDatabase sqLiteDatabase) {
+        createTriggers(sqLiteDatabase, ItemsTable.TABLE_ITEMS, ItemsTable.COLUMN_ID,
+                ItemsTable.COLUMN_CONTENT, TABLE_ITEMS_SEARCH);
+    }
+
+    /**
+     * Creates triggers copying text column of source table into search table on every change.
+     *
+     * @param sqLiteDatabase database
+     * @param table          source table
+     * @param idColumn       id column of source table
+     * @param textColumn     searchable column of source table
+     * @param searchTable    search table
+     */
+    private static void createTriggers(SQLiteDatabase sqLiteDatabase, String table, String idColumn,
+                                       String textColumn, String searchTable) {
+        sqLiteDatabase.execSQL("CREATE TRIGGER " + searchTable + "_insert AFTER INSERT ON " + table
+                + " BEGIN INSERT INTO " + searchTable + "(" + COLUMN_DOCID + ", " + COLUMN_TEXT + ")"
+                + " VALUES (new." + idColumn + ", " + fold("new." + textColumn) + "); END");
+        sqLiteDatabase.execSQL("CREATE TRIGGER " + searchTable + "_update AFTER UPDATE OF " + textColumn
+                + " ON " + table
+                + " BEGIN UPDATE " + searchTable + " SET " + COLUMN_TEXT + " = " + fold("new." + textColumn)
+                + " WHERE " + COLUMN_DOCID + " = new." + idColumn + "; END");
+        sqLiteDatabase.execSQL("CREATE TRIGGER " + searchTable + "_delete AFTER DELETE ON " + table
+                + " BEGIN DELETE FROM " + searchTable + " WHERE " + COLUMN_DOCID + " = old." + idColumn + "; END");
+    }
+
+    /**
+     * Wraps SQL expression in replace() calls folding letters same way as fold(String) does.
+     *
+     * @param expression SQL expression
+     * @return SQL expression with folded letters
+     */
+    private static String fold(String expression) {
+        for (int i = 0; i < FOLDED_LETTERS.length(); i++) {
+            expression = "replace(" + expression + ", '" + FOLDED_LETTERS.charAt(i) + "', '"
+                    + BASE_LETTERS.charAt(i) + "')";
+        }
+        return expression;
+    }
+
+    /**
+     * Replaces letters with diacritics by their base letters, same way as triggers do.
+     *
+     * @param text text to fold
+     * @return folded text
+     */
+    static String foldText(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            int index = FOLDED_LETTERS.indexOf(chars[i]);
+            if (index != -1) {
+                chars[i] = BASE_LETTERS.charAt(index);
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Converts text typed by user into FTS match expression. Every word becomes prefix query
+     * and all of them must match, characters with special meaning in FTS are dropped.
+     *
+     * @param query text typed by user
+     * @return match expression, or null if query contains no words
+     */
+    static String buildMatchExpression(String query) {
+        StringBuilder expression = new StringBuilder();
+        //lower case, so words like OR or NOT are not treated as operators
+        for (String word : foldText(query).toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 0) {
+                if (expression.length() > 0) {
+                    expression.append(' ');
+                }
+                expression.append(word).append('*');
+            }
+        }
+        return expression.length() == 0 ? null : expression.toString();
+    }
+}
@@ -1,18 +1,37 @@
 package pl.coreorb.shoppinglist.contentprovider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import pl.coreorb.shoppinglist.utils.LatencyStats;
+import pl.coreorb.shoppinglist.utils.Logger;
+import pl.coreorb.shoppinglist.utils.Tracer;
 
 /**
  * Content Provider class for shopping lists.
@@ -22,17 +41,29 @@ public class ShoppingListsContentProvider extends ContentProvider {
 
     private ShoppingListsDatabaseHelper database;
 
+    /**
+     * Change uris collected while batch is running on current thread. Not null only while
+     * applyBatch() is running, notifications are then sent after the batch is committed.
+     */
+    private final ThreadLocal<Set<Uri>> pendingNotifications = new ThreadLocal<>();
+
     private static final int SHOPPING_LISTS = 10;
     private static final int SHOPPING_LIST_ID = 20;
     private static final int ITEMS = 30;
     private static final int ITEM_ID = 40;
     private static final int SHOPPING_LISTS_AND_ITEMS = 50;
+    private static final int SHOPPING_LIST_SUMMARIES = 60;
+    private static final int SEARCH = 70;
 
-    private static final String AUTHORITY = "pl.coreorb.shoppinglist.contentprovider";
+    public static final String AUTHORITY = "pl.coreorb.shoppinglist.contentprovider";
     private static final String SHOPPING_LIST_BASE_PATH = "shopping_list";
     private static final String ITEM_BASE_PATH = "item";
     private static final String SHOPPING_LIST_AND_ITEM_BASE_PATH = SHOPPING_LIST_BASE_PATH + "_"
             + ITEM_BASE_PATH;
+    private static final String SHOPPING_LIST_SUMMARY_BASE_PATH = SHOPPING_LIST_BASE_PATH + "_summary";
+    private static final String SEARCH_BASE_PATH = "search";
+
+    public static final Uri BASE_CONTENT_URI = Uri.parse("content://" + AUTHORITY);
 
     public static final Uri SHOPPING_LIST_CONTENT_URI =
             Uri.parse("content://" + AUTHORITY + "/" + SHOPPING_LIST_BASE_PATH);
@@ -55,6 +86,79 @@ public class ShoppingListsContentProvider extends ContentProvider {
     public static final Uri SHOPPING_LIST_AND_ITEM_CONTENT_URI =
             Uri.parse("content://" + AUTHORITY + "/" + SHOPPING_LIST_AND_ITEM_BASE_PATH);
 
+    /**
+     * Uri returning one row per shopping list with its columns and summary of unchecked items
+     * (newest first like on list details screen, separated by ", "). Length of summary can be limited with query parameters
+     * PARAM_SUMMARY_MAX_ITEMS and PARAM_SUMMARY_MAX_LENGTH.
+     */
+    public static final Uri SHOPPING_LIST_SUMMARY_CONTENT_URI =
+            Uri.parse("content://" + AUTHORITY + "/" + SHOPPING_LIST_SUMMARY_BASE_PATH);
+    public static final String PARAM_SUMMARY_MAX_ITEMS = "summary_max_items";
+    public static final String PARAM_SUMMARY_MAX_LENGTH = "summary_max_length";
+    private static final int DEFAULT_SUMMARY_MAX_ITEMS = 10;
+    private static final int DEFAULT_SUMMARY_MAX_LENGTH = 200;
+
+    /**
+     * Uri returning shopping lists and items matching text from query parameter PARAM_SEARCH_QUERY
+     * (columns from SearchTable). Every word of text is matched as prefix, ignoring case and Polish
+     * diacritics. Number of results can be limited with query parameter PARAM_SEARCH_LIMIT.
+     * Projection, selection and sort order passed to query are ignored. Use buildSearchUri().
+     */
+    public static final Uri SEARCH_CONTENT_URI =
+            Uri.parse("content://" + AUTHORITY + "/" + SEARCH_BASE_PATH);
+    public static final String PARAM_SEARCH_QUERY = "q";
+    public static final String PARAM_SEARCH_LIMIT = "limit";
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+
+    /**
+     * Changes are notified on row uris (e.g. item/5) with operation in query parameter
+     * PARAM_OPERATION, so observers can reload only changed rows. Rows changed by selection
+     * are notified on collection uri (observers don't know which rows changed). Rows changed
+     * in one batch are notified together on collection uri, with their ids in query parameter
+     * PARAM_IDS (separated by ","), unless there are more than MAX_NOTIFIED_IDS of them.
+     */
+    public static final String PARAM_OPERATION = "op";
+    public static final String PARAM_IDS = "ids";
+    public static final String OPERATION_INSERT = "insert";
+    public static final String OPERATION_UPDATE = "update";
+    public static final String OPERATION_DELETE = "delete";
+    private static final int MAX_NOTIFIED_IDS = 100;
+
+    /**
+     * Methods of call() changing many rows with single statement in one transaction.
+     * METHOD_CHECK_ALL, METHOD_UNCHECK_ALL and METHOD_DELETE_CHECKED take id of shopping list as arg
+     * and return number of changed items in RESULT_COUNT.
+     * METHOD_ARCHIVE_OLDER_THAN takes time in milliseconds as arg, archives shopping lists created
+     * before it and returns their number in RESULT_COUNT.
+     * METHOD_DUPLICATE_LIST takes id of shopping list as arg and creation time of copy in EXTRA_CREATED_AT,
+     * copies shopping list with all its items (unchecked) and returns id of copy in RESULT_ID
+     * (-1 if shopping list doesn't exist) and number of copied items in RESULT_COUNT.
+     */
+    public static final String METHOD_CHECK_ALL = "check_all";
+    public static final String METHOD_UNCHECK_ALL = "uncheck_all";
+    public static final String METHOD_DELETE_CHECKED = "delete_checked";
+    public static final String METHOD_ARCHIVE_OLDER_THAN = "archive_older_than";
+    public static final String METHOD_DUPLICATE_LIST = "duplicate_list";
+    public static final String EXTRA_CREATED_AT = "created_at";
+    public static final String RESULT_COUNT = "count";
+    public static final String RESULT_ID = "id";
+
+    /**
+     * Query parameters for keyset pagination, supported by SHOPPING_LIST_SUMMARY_CONTENT_URI
+     * (rows sorted by created_at and _id, descending) and ITEM_CONTENT_URI (rows sorted by timestamp
+     * and _id, descending). If page size is set, sort order passed to query is ignored. Next page
+     * starts after row with provided key (created_at or timestamp) and id. Use buildPageUri().
+     */
+    public static final String PARAM_PAGE_SIZE = "page_size";
+    public static final String PARAM_AFTER_KEY = "after_key";
+    public static final String PARAM_AFTER_ID = "after_id";
+
+    //events recorded with matched uri code and number of rows (id of inserted row)
+    private static final int EVENT_QUERY = Logger.registerEvent("provider.query");
+    private static final int EVENT_INSERT = Logger.registerEvent("provider.insert");
+    private static final int EVENT_UPDATE = Logger.registerEvent("provider.update");
+    private static final int EVENT_DELETE = Logger.registerEvent("provider.delete");
+
     private static final UriMatcher sURIMatcher = new UriMatcher(UriMatcher.NO_MATCH);
     static {
         sURIMatcher.addURI(AUTHORITY, SHOPPING_LIST_BASE_PATH, SHOPPING_LISTS);
@@ -62,6 +166,8 @@ public class ShoppingListsContentProvider extends ContentProvider {
         sURIMatcher.addURI(AUTHORITY, ITEM_BASE_PATH, ITEMS);
         sURIMatcher.addURI(AUTHORITY, ITEM_BASE_PATH + "/#", ITEM_ID);
         sURIMatcher.addURI(AUTHORITY, SHOPPING_LIST_AND_ITEM_BASE_PATH, SHOPPING_LISTS_AND_ITEMS);
+        sURIMatcher.addURI(AUTHORITY, SHOPPING_LIST_SUMMARY_BASE_PATH, SHOPPING_LIST_SUMMARIES);
+        sURIMatcher.addURI(AUTHORITY, SEARCH_BASE_PATH, SEARCH);
     }
 
     @Override
@@ -73,6 +179,111 @@ public class ShoppingListsContentProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /**
+     * Queries database, stopping query (with OperationCanceledException) as soon as signal is
+     * cancelled, also while rows of returned cursor are being read.
+     */
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        long startNanos = System.nanoTime();
+        int match = sURIMatcher.match(uri);
+        Tracer.beginSection("ShoppingListsContentProvider.query", match);
+        try {
+            Cursor cursor;
+            if (match == SEARCH) {
+                cursor = search(uri, cancellationSignal);
+            } else {
+                cursor = queryTable(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+            }
+            //rows are read lazily, filling first window of cursor here makes recorded time include
+            //running the statement, not only compiling it
+            int count = cursor.getCount();
+            LatencyStats.recordProviderCall("query", uri, startNanos);
+            Logger.event(EVENT_QUERY, match, count, System.nanoTime() - startNanos);
+            return cursor;
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    /**
+     * Queries table (or joined tables) matching uri, with pagination parameters of uri applied.
+     */
+    private Cursor queryTable(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                              String sortOrder, CancellationSignal cancellationSignal) {
+        SQLiteQueryBuilder queryBuilder = createQueryBuilder(uri, projection);
+        String limit = null;
+        if (uri.getQueryParameter(PARAM_PAGE_SIZE) != null) {
+            limit = String.valueOf(getIntQueryParameter(uri, PARAM_PAGE_SIZE, 0));
+            sortOrder = getKeysetSortOrder(uri);
+        }
+        SQLiteDatabase db = database.getReadableDatabase();
+        Cursor cursor = queryBuilder.query(db, projection, selection, selectionArgs,
+                null, null, sortOrder, limit, cancellationSignal);
+        assert getContext() != null;
+        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+
+        return cursor;
+    }
+
+    /**
+     * Searches shopping lists and items for text provided in uri.
+     *
+     * @param uri                search uri
+     * @param cancellationSignal signal cancelling query, may be null
+     * @return cursor with matching rows
+     */
+    private Cursor search(Uri uri, CancellationSignal cancellationSignal) {
+        String query = uri.getQueryParameter(PARAM_SEARCH_QUERY);
+        String matchExpression = query == null ? null : SearchTable.buildMatchExpression(query);
+        Cursor cursor;
+        if (matchExpression == null) {
+            cursor = new MatrixCursor(new String[]{SearchTable.COLUMN_TYPE, SearchTable.COLUMN_ID,
+                    SearchTable.COLUMN_SHOPPING_LIST_ID, SearchTable.COLUMN_TEXT});
+        } else {
+            int limit = getIntQueryParameter(uri, PARAM_SEARCH_LIMIT, DEFAULT_SEARCH_LIMIT);
+            SQLiteDatabase db = database.getReadableDatabase();
+            //all matches are read, as they can be ordered by relevance only after reading
+            Cursor matches = db.rawQuery(SearchTable.SEARCH_QUERY, new String[]{matchExpression, matchExpression},
+                    cancellationSignal);
+            try {
+                cursor = SearchTable.rankMatches(matches, limit);
+            } finally {
+                matches.close();
+            }
+        }
+        assert getContext() != null;
+        //results depend on both shopping lists and items
+        cursor.setNotificationUri(getContext().getContentResolver(), BASE_CONTENT_URI);
+        return cursor;
+    }
+
+    /**
+     * Builds uri searching shopping lists and items.
+     *
+     * @param query text to search for
+     * @param limit maximum number of results
+     * @return search uri
+     */
+    public static Uri buildSearchUri(String query, int limit) {
+        return SEARCH_CONTENT_URI.buildUpon()
+                .appendQueryParameter(PARAM_SEARCH_QUERY, query)
+                .appendQueryParameter(PARAM_SEARCH_LIMIT, String.valueOf(limit))
+                .build();
+    }
+
+    /**
+     * Creates query builder with tables and conditions matching provided uri.
+     *
+     * @param uri        queried uri
+     * @param projection requested columns
+     * @return ready query builder
+     */
+    static SQLiteQueryBuilder createQueryBuilder(Uri uri, String[] projection) {
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
         switch(sURIMatcher.match(uri)) {
             case SHOPPING_LISTS:
@@ -89,6 +300,7 @@ public class ShoppingListsContentProvider extends ContentProvider {
             case ITEMS:
                 checkColumnsItem(projection);
                 queryBuilder.setTables(ItemsTable.TABLE_ITEMS);
+                appendKeysetCondition(queryBuilder, uri, ItemsTable.COLUMN_TIMESTAMP, ItemsTable.COLUMN_ID);
                 break;
 
             case ITEM_ID:
@@ -105,16 +317,152 @@ public class ShoppingListsContentProvider extends ContentProvider {
                         + " = " + ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_SHOPPING_LIST_ID + ")");
                 break;
 
+            case SHOPPING_LIST_SUMMARIES:
+                queryBuilder.setTables(ShoppingListsTable.TABLE_SHOPPING_LISTS);
+                queryBuilder.setProjectionMap(createSummaryProjectionMap(
+                        getIntQueryParameter(uri, PARAM_SUMMARY_MAX_ITEMS, DEFAULT_SUMMARY_MAX_ITEMS),
+                        getIntQueryParameter(uri, PARAM_SUMMARY_MAX_LENGTH, DEFAULT_SUMMARY_MAX_LENGTH)));
+                appendKeysetCondition(queryBuilder, uri, ShoppingListsTable.COLUMN_CREATED_AT,
+                        ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID);
+                break;
+
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        SQLiteDatabase db = database.getReadableDatabase();
-        Cursor cursor = queryBuilder.query(db, projection, selection, selectionArgs,
-                null, null, sortOrder);
-        assert getContext() != null;
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        return queryBuilder;
+    }
 
-        return cursor;
+    /**
+     * Builds uri of first page of rows.
+     *
+     * @param contentUri SHOPPING_LIST_SUMMARY_CONTENT_URI or ITEM_CONTENT_URI
+     * @param pageSize   maximum number of rows in page
+     * @return uri of page
+     */
+    public static Uri buildPageUri(Uri contentUri, int pageSize) {
+        return contentUri.buildUpon()
+                .appendQueryParameter(PARAM_PAGE_SIZE, String.valueOf(pageSize))
+                .build();
+    }
+
+    /**
+     * Builds uri of page of rows starting after provided row.
+     *
+     * @param contentUri SHOPPING_LIST_SUMMARY_CONTENT_URI or ITEM_CONTENT_URI
+     * @param pageSize   maximum number of rows in page
+     * @param afterKey   created_at of last shopping list or timestamp of last item in previous page
+     * @param afterId    id of last row in previous page
+     * @return uri of page
+     */
+    public static Uri buildPageUri(Uri contentUri, int pageSize, long afterKey, long afterId) {
+        return buildPageUri(contentUri, pageSize).buildUpon()
+                .appendQueryParameter(PARAM_AFTER_KEY, String.valueOf(afterKey))
+                .appendQueryParameter(PARAM_AFTER_ID, String.valueOf(afterId))
+                .build();
+    }
+
+    /**
+     * Appends to query condition selecting rows after row provided in uri (if any).
+     * Rows are sorted by key and id descending. Condition is written as range on key column,
+     * so SQLite seeks in index instead of skipping all previous rows.
+     *
+     * @param queryBuilder query builder
+     * @param uri          queried uri
+     * @param keyColumn    column used as first sort key
+     * @param idColumn     id column used as second sort key
+     */
+    private static void appendKeysetCondition(SQLiteQueryBuilder queryBuilder, Uri uri,
+                                              String keyColumn, String idColumn) {
+        String afterKey = uri.getQueryParameter(PARAM_AFTER_KEY);
+        String afterId = uri.getQueryParameter(PARAM_AFTER_ID);
+        if (afterKey == null || afterId == null) {
+            return;
+        }
+        long key, id;
+        try {
+            key = Long.parseLong(afterKey);
+            id = Long.parseLong(afterId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page in URI: " + uri);
+        }
+        queryBuilder.appendWhere(keyColumn + " <= " + key
+                + " AND (" + keyColumn + " < " + key + " OR " + idColumn + " < " + id + ")");
+    }
+
+    /**
+     * Gets sort order matching keyset pagination of uri.
+     *
+     * @param uri queried uri
+     * @return sort order
+     */
+    private static String getKeysetSortOrder(Uri uri) {
+        switch(sURIMatcher.match(uri)) {
+            case SHOPPING_LIST_SUMMARIES:
+                return ShoppingListsTable.COLUMN_CREATED_AT + " DESC, " + ShoppingListsTable.COLUMN_ID + " DESC";
+            case ITEMS:
+                return ItemsTable.COLUMN_TIMESTAMP + " DESC, " + ItemsTable.COLUMN_ID + " DESC";
+            default:
+                throw new IllegalArgumentException("Pagination is not supported for URI: " + uri);
+        }
+    }
+
+    /**
+     * Creates projection map for shopping list summary uri. Summary is computed in correlated
+     * subquery using index on items, so cost of query depends on number of shopping lists,
+     * not on number of items. group_concat() itself has no defined order, so items are
+     * concatenated from subquery with ORDER BY and LIMIT, which SQLite doesn't flatten into
+     * aggregate query and reads in its order. Order is the same as of items page (with _id
+     * breaking ties of equal timestamps), so summary is stable between queries.
+     *
+     * @param maxItems  maximum number of unchecked items in summary
+     * @param maxLength maximum length of summary
+     * @return projection map
+     */
+    private static HashMap<String, String> createSummaryProjectionMap(int maxItems, int maxLength) {
+        String shoppingListId = ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID;
+        String itemsOfShoppingList = " FROM " + ItemsTable.TABLE_ITEMS
+                + " WHERE " + ItemsTable.COLUMN_SHOPPING_LIST_ID + " = " + shoppingListId;
+
+        HashMap<String, String> projectionMap = new HashMap<>();
+        projectionMap.put(ShoppingListsTable.COLUMN_ID, shoppingListId + " AS " + ShoppingListsTable.COLUMN_ID);
+        projectionMap.put(ShoppingListsTable.COLUMN_TITLE, ShoppingListsTable.COLUMN_TITLE);
+        projectionMap.put(ShoppingListsTable.COLUMN_ARCHIVED, ShoppingListsTable.COLUMN_ARCHIVED);
+        projectionMap.put(ShoppingListsTable.COLUMN_CREATED_AT, ShoppingListsTable.COLUMN_CREATED_AT);
+        projectionMap.put(ShoppingListsTable.COLUMN_UNCHECKED_ITEMS_SUMMARY,
+                "(SELECT substr(group_concat(" + ItemsTable.COLUMN_CONTENT + ", ', '), 1, " + maxLength + ")"
+                        + " FROM (SELECT " + ItemsTable.COLUMN_CONTENT + itemsOfShoppingList
+                        + " AND " + ItemsTable.COLUMN_CHECKED + " = 0"
+                        + " ORDER BY " + ItemsTable.COLUMN_TIMESTAMP + " DESC, " + ItemsTable.COLUMN_ID + " DESC"
+                        + " LIMIT " + maxItems + "))"
+                        + " AS " + ShoppingListsTable.COLUMN_UNCHECKED_ITEMS_SUMMARY);
+        projectionMap.put(ShoppingListsTable.COLUMN_UNCHECKED_COUNT, ShoppingListsTable.COLUMN_UNCHECKED_COUNT);
+        projectionMap.put(ShoppingListsTable.COLUMN_TOTAL_COUNT, ShoppingListsTable.COLUMN_TOTAL_COUNT);
+        projectionMap.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, ShoppingListsTable.COLUMN_LAST_MODIFIED);
+        return projectionMap;
+    }
+
+    /**
+     * Reads positive integer query parameter from uri.
+     *
+     * @param uri          uri with parameter
+     * @param key          name of parameter
+     * @param defaultValue value returned if parameter is missing
+     * @return value of parameter
+     */
+    private static int getIntQueryParameter(Uri uri, String key, int defaultValue) {
+        String value = uri.getQueryParameter(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            //handled below
+        }
+        throw new IllegalArgumentException("Invalid value of " + key + ": " + value);
     }
 
     @Override
@@ -124,10 +472,21 @@ public class ShoppingListsContentProvider extends ContentProvider {
 
     @Override
     public Uri insert(@NonNull Uri uri, ContentValues contentValues) {
+        int match = sURIMatcher.match(uri);
+        Tracer.beginSection("ShoppingListsContentProvider.insert", match);
+        try {
+            return insert(uri, match, contentValues);
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    private Uri insert(Uri uri, int match, ContentValues contentValues) {
+        long startNanos = System.nanoTime();
         SQLiteDatabase db = database.getWritableDatabase();
         Uri _uri;
         long id;
-        switch(sURIMatcher.match(uri)) {
+        switch(match) {
             case SHOPPING_LISTS:
                 id = db.insert(ShoppingListsTable.TABLE_SHOPPING_LISTS, null, contentValues);
                 _uri = Uri.parse(SHOPPING_LIST_BASE_PATH + "/" + id);
@@ -139,17 +498,31 @@ public class ShoppingListsContentProvider extends ContentProvider {
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        assert getContext() != null;
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (id != -1) {
+            notifyChange(withOperation(ContentUris.withAppendedId(uri, id), OPERATION_INSERT));
+        }
+        LatencyStats.recordProviderCall("insert", uri, startNanos);
+        Logger.event(EVENT_INSERT, match, id, System.nanoTime() - startNanos);
         return _uri;
     }
 
     @Override
     public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        int match = sURIMatcher.match(uri);
+        Tracer.beginSection("ShoppingListsContentProvider.delete", match);
+        try {
+            return delete(uri, match, selection, selectionArgs);
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    private int delete(Uri uri, int match, String selection, String[] selectionArgs) {
+        long startNanos = System.nanoTime();
         SQLiteDatabase db = database.getWritableDatabase();
         int rowsDeleted;
         String id;
-        switch(sURIMatcher.match(uri)) {
+        switch(match) {
             case SHOPPING_LISTS:
                 rowsDeleted = db.delete(ShoppingListsTable.TABLE_SHOPPING_LISTS, selection, selectionArgs);
                 break;
@@ -180,8 +553,15 @@ public class ShoppingListsContentProvider extends ContentProvider {
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        assert getContext() != null;
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (rowsDeleted > 0) {
+            notifyChange(withOperation(uri, OPERATION_DELETE));
+            if (match == SHOPPING_LISTS || match == SHOPPING_LIST_ID) {
+                //items of deleted shopping lists were deleted by foreign key
+                notifyChange(withOperation(ITEM_CONTENT_URI, OPERATION_DELETE));
+            }
+        }
+        LatencyStats.recordProviderCall("delete", uri, startNanos);
+        Logger.event(EVENT_DELETE, match, rowsDeleted, System.nanoTime() - startNanos);
 
         return rowsDeleted;
     }
@@ -189,10 +569,22 @@ public class ShoppingListsContentProvider extends ContentProvider {
     @Override
     public int update(@NonNull Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        int match = sURIMatcher.match(uri);
+        Tracer.beginSection("ShoppingListsContentProvider.update", match);
+        try {
+            return update(uri, match, contentValues, selection, selectionArgs);
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    private int update(Uri uri, int match, ContentValues contentValues, String selection,
+                       String[] selectionArgs) {
+        long startNanos = System.nanoTime();
         SQLiteDatabase db = database.getWritableDatabase();
         int rowsUpdated;
         String id;
-        switch(sURIMatcher.match(uri)) {
+        switch(match) {
             case SHOPPING_LISTS:
                 rowsUpdated = db.update(ShoppingListsTable.TABLE_SHOPPING_LISTS, contentValues, selection,
                         selectionArgs);
@@ -225,13 +617,346 @@ public class ShoppingListsContentProvider extends ContentProvider {
             default:
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
-        assert getContext() != null;
-        getContext().getContentResolver().notifyChange(uri, null);
+        if (rowsUpdated > 0) {
+            notifyChange(withOperation(uri, OPERATION_UPDATE));
+        }
+        LatencyStats.recordProviderCall("update", uri, startNanos);
+        Logger.event(EVENT_UPDATE, match, rowsUpdated, System.nanoTime() - startNanos);
 
         return rowsUpdated;
     }
 
-    private void checkColumnsShoppingList(String[] projection) {
+    /**
+     * Inserts all rows in single transaction and sends only one change notification, with ids
+     * of inserted rows.
+     *
+     * @param uri    uri of table to insert into
+     * @param values rows to insert
+     * @return number of inserted rows
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        long startNanos = System.nanoTime();
+        String table;
+        switch(sURIMatcher.match(uri)) {
+            case SHOPPING_LISTS:
+                table = ShoppingListsTable.TABLE_SHOPPING_LISTS;
+                break;
+            case ITEMS:
+                table = ItemsTable.TABLE_ITEMS;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI: " + uri);
+        }
+        SQLiteDatabase db = database.getWritableDatabase();
+        Set<Uri> changeUris = new LinkedHashSet<>();
+        db.beginTransactionNonExclusive();
+        try {
+            for (ContentValues contentValues : values) {
+                long id = db.insert(table, null, contentValues);
+                if (id != -1) {
+                    changeUris.add(withOperation(ContentUris.withAppendedId(uri, id), OPERATION_INSERT));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanges(changeUris);
+        LatencyStats.recordProviderCall("bulkInsert", uri, startNanos);
+
+        return changeUris.size();
+    }
+
+    /**
+     * Applies all operations in single transaction. If any of them fails (throws or, in case of
+     * insert, doesn't insert row) whole batch is rolled back.
+     * Change notifications are collected and sent once per table and operation after commit.
+     *
+     * @param operations operations to apply
+     * @return results of operations
+     * @throws OperationApplicationException if any of operations fails
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase db = database.getWritableDatabase();
+        Set<Uri> changeUris = new LinkedHashSet<>();
+        ContentProviderResult[] results;
+        pendingNotifications.set(changeUris);
+        db.beginTransactionNonExclusive();
+        try {
+            results = super.applyBatch(operations);
+            for (int i = 0; i < results.length; i++) {
+                //insert() returns uri with id -1 instead of throwing
+                if (results[i].uri != null && ContentUris.parseId(results[i].uri) == -1) {
+                    throw new OperationApplicationException("Insert failed: " + operations.get(i));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            pendingNotifications.remove();
+        }
+
+        notifyChanges(changeUris);
+        return results;
+    }
+
+    /**
+     * Runs one of METHOD_* operations in single transaction.
+     *
+     * @param method name of operation
+     * @param arg    argument of operation
+     * @param extras additional arguments of operation
+     * @return result of operation
+     */
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        long startNanos = System.nanoTime();
+        SQLiteDatabase db = database.getWritableDatabase();
+        Set<Uri> changeUris = new LinkedHashSet<>();
+        Bundle result = new Bundle();
+        db.beginTransactionNonExclusive();
+        try {
+            switch (method) {
+                case METHOD_CHECK_ALL:
+                    result.putInt(RESULT_COUNT, setItemsChecked(db, parseLongArg(method, arg), true, changeUris));
+                    break;
+                case METHOD_UNCHECK_ALL:
+                    result.putInt(RESULT_COUNT, setItemsChecked(db, parseLongArg(method, arg), false, changeUris));
+                    break;
+                case METHOD_DELETE_CHECKED:
+                    result.putInt(RESULT_COUNT, deleteCheckedItems(db, parseLongArg(method, arg), changeUris));
+                    break;
+                case METHOD_ARCHIVE_OLDER_THAN:
+                    result.putInt(RESULT_COUNT, archiveShoppingListsOlderThan(db, parseLongArg(method, arg), changeUris));
+                    break;
+                case METHOD_DUPLICATE_LIST:
+                    long createdAt = extras != null && extras.containsKey(EXTRA_CREATED_AT)
+                            ? extras.getLong(EXTRA_CREATED_AT) : System.currentTimeMillis();
+                    duplicateShoppingList(db, parseLongArg(method, arg), createdAt, result, changeUris);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown method: " + method);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        notifyChanges(changeUris);
+        LatencyStats.recordProviderCall("call " + method, null, startNanos);
+
+        return result;
+    }
+
+    private static long parseLongArg(String method, String arg) {
+        try {
+            return Long.parseLong(arg);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid argument of " + method + ": " + arg);
+        }
+    }
+
+    /**
+     * Checks or unchecks all items of shopping list.
+     *
+     * @param db             database
+     * @param shoppingListId id of shopping list
+     * @param checked        new state of items
+     * @param changeUris     set to add change uris to
+     * @return number of changed items
+     */
+    private static int setItemsChecked(SQLiteDatabase db, long shoppingListId, boolean checked,
+                                       Set<Uri> changeUris) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ItemsTable.COLUMN_CHECKED, checked);
+        int rowsUpdated = db.update(ItemsTable.TABLE_ITEMS, contentValues,
+                ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ? AND " + ItemsTable.COLUMN_CHECKED + " = ?",
+                new String[]{String.valueOf(shoppingListId), checked ? "0" : "1"});
+        if (rowsUpdated > 0) {
+            changeUris.add(withOperation(ITEM_CONTENT_URI, OPERATION_UPDATE));
+            //counters of shopping list were changed by triggers
+            changeUris.add(withOperation(ContentUris.withAppendedId(SHOPPING_LIST_CONTENT_URI, shoppingListId),
+                    OPERATION_UPDATE));
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Deletes all checked items of shopping list.
+     *
+     * @param db             database
+     * @param shoppingListId id of shopping list
+     * @param changeUris     set to add change uris to
+     * @return number of deleted items
+     */
+    private static int deleteCheckedItems(SQLiteDatabase db, long shoppingListId, Set<Uri> changeUris) {
+        int rowsDeleted = db.delete(ItemsTable.TABLE_ITEMS,
+                ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ? AND " + ItemsTable.COLUMN_CHECKED + " = 1",
+                new String[]{String.valueOf(shoppingListId)});
+        if (rowsDeleted > 0) {
+            changeUris.add(withOperation(ITEM_CONTENT_URI, OPERATION_DELETE));
+            changeUris.add(withOperation(ContentUris.withAppendedId(SHOPPING_LIST_CONTENT_URI, shoppingListId),
+                    OPERATION_UPDATE));
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Archives all active shopping lists created before provided time.
+     *
+     * @param db         database
+     * @param time       time in milliseconds
+     * @param changeUris set to add change uris to
+     * @return number of archived shopping lists
+     */
+    private static int archiveShoppingListsOlderThan(SQLiteDatabase db, long time, Set<Uri> changeUris) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, true);
+        contentValues.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, System.currentTimeMillis());
+        int rowsUpdated = db.update(ShoppingListsTable.TABLE_SHOPPING_LISTS, contentValues,
+                ShoppingListsTable.COLUMN_ARCHIVED + " = 0 AND " + ShoppingListsTable.COLUMN_CREATED_AT + " < ?",
+                new String[]{String.valueOf(time)});
+        if (rowsUpdated > 0) {
+            changeUris.add(withOperation(SHOPPING_LIST_CONTENT_URI, OPERATION_UPDATE));
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Copies shopping list and all its items (as unchecked ones).
+     *
+     * @param db             database
+     * @param shoppingListId id of shopping list to copy
+     * @param createdAt      creation time of copy in milliseconds
+     * @param result         bundle to put id of copy and number of copied items into
+     * @param changeUris     set to add change uris to
+     */
+    private static void duplicateShoppingList(SQLiteDatabase db, long shoppingListId, long createdAt,
+                                              Bundle result, Set<Uri> changeUris) {
+        SQLiteStatement insertShoppingList = db.compileStatement("INSERT INTO " + ShoppingListsTable.TABLE_SHOPPING_LISTS
+                + "(" + ShoppingListsTable.COLUMN_TITLE + ", " + ShoppingListsTable.COLUMN_ARCHIVED + ", "
+                + ShoppingListsTable.COLUMN_CREATED_AT + ", " + ShoppingListsTable.COLUMN_LAST_MODIFIED + ")"
+                + " SELECT " + ShoppingListsTable.COLUMN_TITLE + ", 0, ?, ?"
+                + " FROM " + ShoppingListsTable.TABLE_SHOPPING_LISTS
+                + " WHERE " + ShoppingListsTable.COLUMN_ID + " = ?");
+        long copyId;
+        try {
+            insertShoppingList.bindLong(1, createdAt);
+            insertShoppingList.bindLong(2, createdAt);
+            insertShoppingList.bindLong(3, shoppingListId);
+            copyId = insertShoppingList.executeInsert();
+        } finally {
+            insertShoppingList.close();
+        }
+        result.putLong(RESULT_ID, copyId);
+        if (copyId == -1) {
+            result.putInt(RESULT_COUNT, 0);
+            return;
+        }
+
+        SQLiteStatement insertItems = db.compileStatement("INSERT INTO " + ItemsTable.TABLE_ITEMS
+                + "(" + ItemsTable.COLUMN_SHOPPING_LIST_ID + ", " + ItemsTable.COLUMN_CONTENT + ", "
+                + ItemsTable.COLUMN_CHECKED + ", " + ItemsTable.COLUMN_TIMESTAMP + ")"
+                + " SELECT ?, " + ItemsTable.COLUMN_CONTENT + ", 0, " + ItemsTable.COLUMN_TIMESTAMP
+                + " FROM " + ItemsTable.TABLE_ITEMS
+                + " WHERE " + ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?"
+                + " ORDER BY " + ItemsTable.COLUMN_ID);
+        int itemsCount;
+        try {
+            insertItems.bindLong(1, copyId);
+            insertItems.bindLong(2, shoppingListId);
+            itemsCount = insertItems.executeUpdateDelete();
+        } finally {
+            insertItems.close();
+        }
+        result.putInt(RESULT_COUNT, itemsCount);
+
+        changeUris.add(withOperation(ContentUris.withAppendedId(SHOPPING_LIST_CONTENT_URI, copyId), OPERATION_INSERT));
+        if (itemsCount > 0) {
+            changeUris.add(withOperation(ITEM_CONTENT_URI, OPERATION_INSERT));
+        }
+    }
+
+    /**
+     * Notifies observers about change, or postpones notification if batch is running.
+     *
+     * @param changeUri changed uri with operation
+     */
+    private void notifyChange(Uri changeUri) {
+        Set<Uri> changeUris = pendingNotifications.get();
+        if (changeUris != null) {
+            changeUris.add(changeUri);
+        } else {
+            assert getContext() != null;
+            getContext().getContentResolver().notifyChange(changeUri, null);
+        }
+    }
+
+    /**
+     * Notifies observers about many changes. Changes of single rows are merged into one
+     * notification per table and operation.
+     *
+     * @param changeUris changed uris with operations
+     */
+    private void notifyChanges(Collection<Uri> changeUris) {
+        //ids of changed rows by collection uri with operation, null if some rows are not known
+        Map<Uri, Set<String>> changes = new LinkedHashMap<>();
+        for (Uri changeUri : changeUris) {
+            Uri collectionUri;
+            String id = null;
+            switch (sURIMatcher.match(changeUri)) {
+                case SHOPPING_LIST_ID:
+                    collectionUri = SHOPPING_LIST_CONTENT_URI;
+                    id = changeUri.getLastPathSegment();
+                    break;
+                case ITEM_ID:
+                    collectionUri = ITEM_CONTENT_URI;
+                    id = changeUri.getLastPathSegment();
+                    break;
+                default:
+                    collectionUri = changeUri;
+                    break;
+            }
+            Uri key = withOperation(collectionUri, changeUri.getQueryParameter(PARAM_OPERATION));
+            Set<String> ids = changes.containsKey(key) ? changes.get(key) : new LinkedHashSet<String>();
+            if (ids != null && id != null) {
+                ids.add(id);
+                changes.put(key, ids);
+            } else {
+                changes.put(key, null);
+            }
+        }
+
+        assert getContext() != null;
+        ContentResolver contentResolver = getContext().getContentResolver();
+        for (Map.Entry<Uri, Set<String>> change : changes.entrySet()) {
+            Uri uri = change.getKey();
+            Set<String> ids = change.getValue();
+            if (ids != null && ids.size() == 1) {
+                uri = withOperation(uri.buildUpon().clearQuery().appendPath(ids.iterator().next()).build(),
+                        uri.getQueryParameter(PARAM_OPERATION));
+            } else if (ids != null && ids.size() <= MAX_NOTIFIED_IDS) {
+                uri = uri.buildUpon().appendQueryParameter(PARAM_IDS, TextUtils.join(",", ids)).build();
+            }
+            contentResolver.notifyChange(uri, null);
+        }
+    }
+
+    /**
+     * Creates uri used to notify about change.
+     *
+     * @param uri       changed uri (row or collection)
+     * @param operation type of change
+     * @return uri with operation in query parameter
+     */
+    private static Uri withOperation(Uri uri, String operation) {
+        return uri.buildUpon().clearQuery().appendQueryParameter(PARAM_OPERATION, operation).build();
+    }
+
+    private static void checkColumnsShoppingList(String[] projection) {
         if (projection != null) {
             HashSet<String> requestedColumns = new HashSet<>(Arrays.asList(projection));
             HashSet<String> availableColumns = new HashSet<>(Arrays.asList(ShoppingListsTable.COLUMNS_ALL));
@@ -241,7 +966,7 @@ public class ShoppingListsContentProvider extends ContentProvider {
         }
     }
 
-    private void checkColumnsItem(String[] projection) {
+    private static void checkColumnsItem(String[] projection) {
         if (projection != null) {
             HashSet<String> requestedColumns = new HashSet<>(Arrays.asList(projection));
             HashSet<String> availableColumns = new HashSet<>(Arrays.asList(ItemsTable.COLUMNS_ALL));
@@ -251,7 +976,7 @@ public class ShoppingListsContentProvider extends ContentProvider {
         }
     }
 
-    private void checkColumnsShoppingListAndItems(String[] projection) {
+    private static void checkColumnsShoppingListAndItems(String[] projection) {
         if (projection != null) {
             HashSet<String> requestedColumns = new HashSet<>(Arrays.asList(projection));
             HashSet<String> availableColumns = new HashSet<>(Arrays.asList(ShoppingListsTable.COLUMNS_ALL));
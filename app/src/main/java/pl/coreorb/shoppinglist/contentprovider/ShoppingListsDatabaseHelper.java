@@ -1,6 +1,7 @@
 package pl.coreorb.shoppinglist.contentprovider;
 
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
@@ -10,22 +11,70 @@ import android.database.sqlite.SQLiteOpenHelper;
  */
 class ShoppingListsDatabaseHelper extends SQLiteOpenHelper {
 
-    private static final int DATABASE_VERSION = 1;
+    /**
+     * Version history:
+     * 1 - initial schema
+     * 2 - indexes on shopping_lists(archived, created_at) and items(shopping_list_id, checked, timestamp)
+     * 3 - index on items(shopping_list_id, timestamp) for pagination of items
+     * 4 - full-text search tables for items and shopping lists
+     * 5 - counters of items and time of last modification in shopping_lists, kept by triggers
+     * 6 - foreign key from items to shopping_lists deleting items together with their list
+     * 7 - client keys of items, so creations replayed from journal are not applied twice
+     */
+    private static final int DATABASE_VERSION = 7;
     private static final String DATABASE_NAME = "shoppingList";
 
+    /**
+     * Number of pages in write-ahead log after which it is checkpointed into database file.
+     * Android lowers SQLite default (1000) to 100 pages, which checkpoints every few checkbox
+     * toggles, so default is restored here.
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
     ShoppingListsDatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Creates helper for database with custom name.
+     *
+     * @param context context
+     * @param name    name of database file, or null for in-memory database
+     */
+    ShoppingListsDatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        //readers use their own connections and are not blocked by writer (and vice versa)
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (db.isWriteAheadLoggingEnabled()) {
+            DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
+        }
     }
 
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
         ShoppingListsTable.onCreate(sqLiteDatabase);
         ItemsTable.onCreate(sqLiteDatabase);
+        SearchTable.onCreate(sqLiteDatabase);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        ShoppingListsTable.onUpgrade(sqLiteDatabase, oldVersion, newVersion);
-        ItemsTable.onUpgrade(sqLiteDatabase, oldVersion, newVersion);
+        //apply changes of every version in order, so user data is kept
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            ShoppingListsTable.onUpgrade(sqLiteDatabase, version);
+            ItemsTable.onUpgrade(sqLiteDatabase, version);
+            SearchTable.onUpgrade(sqLiteDatabase, version);
+        }
     }
 }
@@ -13,12 +13,23 @@ public class ShoppingListsTable {
     public static final String COLUMN_TITLE = "title";
     public static final String COLUMN_ARCHIVED = "archived";
     public static final String COLUMN_CREATED_AT = "created_at";
+    //counters of items and time of last change of shopping list or its items (in milliseconds),
+    //kept up to date by triggers on items table (see ItemsTable)
+    public static final String COLUMN_UNCHECKED_COUNT = "unchecked_count";
+    public static final String COLUMN_TOTAL_COUNT = "total_count";
+    public static final String COLUMN_LAST_MODIFIED = "last_modified";
+
+    //column computed from items, available only through shopping list summary uri
+    public static final String COLUMN_UNCHECKED_ITEMS_SUMMARY = "unchecked_items_summary";
 
     static final String[] COLUMNS_ALL = {
             COLUMN_ID,
             COLUMN_TITLE,
             COLUMN_ARCHIVED,
             COLUMN_CREATED_AT,
+            COLUMN_UNCHECKED_COUNT,
+            COLUMN_TOTAL_COUNT,
+            COLUMN_LAST_MODIFIED,
             TABLE_SHOPPING_LISTS + "." + COLUMN_ID
     };
 
@@ -26,17 +37,58 @@ public class ShoppingListsTable {
             + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
             + COLUMN_TITLE + " TEXT,"
             + COLUMN_ARCHIVED + " INTEGER DEFAULT 0,"
-            + COLUMN_CREATED_AT + " DATETIME"
+            + COLUMN_CREATED_AT + " DATETIME,"
+            + COLUMN_UNCHECKED_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_TOTAL_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_LAST_MODIFIED + " DATETIME"
+            + ")";
+
+    /**
+     * Index used when reading active or archived shopping lists sorted by creation date.
+     */
+    static final String INDEX_ARCHIVED_CREATED_AT = "shopping_lists_archived_created_at_idx";
+
+    private static final String CREATE_INDEX_ARCHIVED_CREATED_AT = "CREATE INDEX IF NOT EXISTS "
+            + INDEX_ARCHIVED_CREATED_AT + " ON " + TABLE_SHOPPING_LISTS + "("
+            + COLUMN_ARCHIVED + ","
+            + COLUMN_CREATED_AT
             + ")";
 
     static void onCreate(SQLiteDatabase sqLiteDatabase) {
         sqLiteDatabase.execSQL(CREATE_TABLE_SHOPPING_LISTS);
+        sqLiteDatabase.execSQL(CREATE_INDEX_ARCHIVED_CREATED_AT);
     }
 
-    @SuppressWarnings("unused")
-    static void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i2) {
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + TABLE_SHOPPING_LISTS);
-        onCreate(sqLiteDatabase);
+    /**
+     * Upgrades table to provided version of database. Called once for every version between old
+     * and new one, so changes are applied step by step without losing data.
+     *
+     * @param sqLiteDatabase database
+     * @param version        version to upgrade to
+     */
+    static void onUpgrade(SQLiteDatabase sqLiteDatabase, int version) {
+        switch (version) {
+            case 2:
+                sqLiteDatabase.execSQL(CREATE_INDEX_ARCHIVED_CREATED_AT);
+                break;
+            case 5:
+                sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_SHOPPING_LISTS + " ADD COLUMN "
+                        + COLUMN_UNCHECKED_COUNT + " INTEGER NOT NULL DEFAULT 0");
+                sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_SHOPPING_LISTS + " ADD COLUMN "
+                        + COLUMN_TOTAL_COUNT + " INTEGER NOT NULL DEFAULT 0");
+                sqLiteDatabase.execSQL("ALTER TABLE " + TABLE_SHOPPING_LISTS + " ADD COLUMN "
+                        + COLUMN_LAST_MODIFIED + " DATETIME");
+                String itemsOfShoppingList = " FROM " + ItemsTable.TABLE_ITEMS + " WHERE "
+                        + ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_SHOPPING_LIST_ID + " = "
+                        + TABLE_SHOPPING_LISTS + "." + COLUMN_ID;
+                sqLiteDatabase.execSQL("UPDATE " + TABLE_SHOPPING_LISTS + " SET "
+                        + COLUMN_UNCHECKED_COUNT + " = (SELECT count(*)" + itemsOfShoppingList
+                        + " AND " + ItemsTable.COLUMN_CHECKED + " = 0), "
+                        + COLUMN_TOTAL_COUNT + " = (SELECT count(*)" + itemsOfShoppingList + "), "
+                        + COLUMN_LAST_MODIFIED + " = max(" + COLUMN_CREATED_AT + ", ifnull((SELECT max("
+                        + ItemsTable.COLUMN_TIMESTAMP + ")" + itemsOfShoppingList + "), 0))");
+                break;
+        }
     }
 
 }
@@ -0,0 +1,22 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Callback executed on main thread when objects are changed in DB.
+ */
+public interface ChangeCallback {
+
+    int OPERATION_UNKNOWN = 0;
+    int OPERATION_INSERT = 1;
+    int OPERATION_UPDATE = 2;
+    int OPERATION_DELETE = 3;
+
+    /**
+     * @param operation type of change, one of OPERATION_* constants
+     * @param ids       ids of changed objects, or null if they are not known and all objects
+     *                  should be reloaded
+     */
+    void onChange(int operation, @Nullable long[] ids);
+
+}
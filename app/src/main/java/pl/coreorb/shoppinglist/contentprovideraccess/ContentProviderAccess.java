@@ -1,34 +1,180 @@
 package pl.coreorb.shoppinglist.contentprovideraccess;
 
+import android.arch.lifecycle.LifecycleOwner;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.SQLException;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.support.annotation.Nullable;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
 
 import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
 import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
 import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
 import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.SearchResult;
 import pl.coreorb.shoppinglist.pojos.ShoppingList;
+import pl.coreorb.shoppinglist.utils.EventLog;
 import pl.coreorb.shoppinglist.utils.Logger;
 
 /**
  * Class provides methods for easy access to Content Provider with shopping lists and items.
+ * Reads are executed in parallel on bounded thread pool of DataExecutor, so they never wait for
+ * writes, which are executed one by one in order of calls on its single write thread.
+ * Callbacks are always called on main thread.
  * Created by ZaYeR on 2016-05-12.
  */
 public class ContentProviderAccess {
 
     private static final String LOG_TAG = ContentProviderAccess.class.getSimpleName();
 
+    //events of items, recorded with id of item and id of shopping list or number of changed rows
+    private static final int EVENT_ITEM_CREATE = Logger.registerEvent("item.create");
+    private static final int EVENT_ITEM_UPDATE = Logger.registerEvent("item.update");
+    private static final int EVENT_ITEM_DELETE = Logger.registerEvent("item.delete");
+
+    //orders of shopping lists returned by getShoppingLists(), all of them descending
+    public static final int ORDER_BY_CREATED_AT = 0;
+    public static final int ORDER_BY_LAST_MODIFIED = 1;
+    public static final int ORDER_BY_UNCHECKED_COUNT = 2;
+
     private final ContentResolver mContentResolver;
+    private final HashMap<ChangeCallback, ContentObserver> mObservers = new HashMap<>();
+    @Nullable
+    private final OperationGroup mOperations;
 
     public ContentProviderAccess(ContentResolver contentResolver) {
         mContentResolver = contentResolver;
+        mOperations = null;
+    }
+
+    /**
+     * Creates object bound to lifecycle of owner: all operations started by it are cancelled
+     * when owner is destroyed, so callbacks are never called on destroyed activity or fragment.
+     * Must be created on main thread.
+     *
+     * @param contentResolver content resolver
+     * @param owner           activity or fragment
+     */
+    public ContentProviderAccess(ContentResolver contentResolver, LifecycleOwner owner) {
+        mContentResolver = contentResolver;
+        mOperations = new OperationGroup(owner);
+    }
+
+    /**
+     * Cancels all operations started by this object, if it was bound to lifecycle owner.
+     * Reads are stopped, writes are completed, but their callbacks are not called.
+     */
+    public void cancelAll() {
+        Logger.v(LOG_TAG, "cancelAll()");
+        if (mOperations != null) {
+            mOperations.cancelAll();
+        }
+    }
+
+    private OperationHandle track(OperationHandle handle) {
+        if (mOperations != null) {
+            mOperations.add(handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Binds future to lifecycle owner of this object like operations started by it, so callbacks
+     * of future are not called after owner is destroyed and cancelAll() drops them. Future should
+     * be the last one of composition, the one callbacks are added to. Must be called on main
+     * thread.
+     *
+     * @param future future to bind
+     * @return the same future
+     */
+    public <T> DataFuture<T> bind(DataFuture<T> future) {
+        track(future);
+        return future;
+    }
+
+    /**
+     * Evicts shopping list whose items were just changed. Must be called on write thread after
+     * write is applied, before its callback is posted, so neither reads after the write nor reads
+     * started before it (which can't put shopping list into cache afterwards) see old items.
+     * Notifications from content provider come later and don't say which shopping list inserted
+     * items belong to.
+     */
+    private static void evictFromCache(long shoppingListId) {
+        ShoppingListCache cache = ShoppingListCache.peek();
+        if (cache != null) {
+            cache.remove(shoppingListId);
+        }
+    }
+
+    /**
+     * Evicts shopping lists of items which were just updated or deleted, like evictFromCache().
+     */
+    private static void evictShoppingListsOfItems(long... itemIds) {
+        ShoppingListCache cache = ShoppingListCache.peek();
+        if (cache != null) {
+            cache.removeShoppingListsOfItems(itemIds);
+        }
+    }
+
+    /**
+     * Registers callback notified about every change of shopping lists (WITHOUT items), with ids
+     * of changed shopping lists. Callback must be unregistered with unregisterChangeCallback().
+     *
+     * @param callback callback to notify
+     */
+    public void registerShoppingListsChangeCallback(final ChangeCallback callback) {
+        Logger.v(LOG_TAG, "registerShoppingListsChangeCallback()");
+        registerChangeCallback(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, callback);
+    }
+
+    /**
+     * Registers callback notified about every change of items, with ids of changed items.
+     * Callback must be unregistered with unregisterChangeCallback().
+     *
+     * @param callback callback to notify
+     */
+    public void registerItemsChangeCallback(final ChangeCallback callback) {
+        Logger.v(LOG_TAG, "registerItemsChangeCallback()");
+        registerChangeCallback(ShoppingListsContentProvider.ITEM_CONTENT_URI, callback);
+    }
+
+    /**
+     * Unregisters callback registered by this object.
+     *
+     * @param callback callback to unregister
+     */
+    public void unregisterChangeCallback(final ChangeCallback callback) {
+        Logger.v(LOG_TAG, "unregisterChangeCallback()");
+        ContentObserver observer = mObservers.remove(callback);
+        if (observer != null) {
+            mContentResolver.unregisterContentObserver(observer);
+        }
+    }
+
+    private void registerChangeCallback(Uri uri, ChangeCallback callback) {
+        unregisterChangeCallback(callback);
+        ContentObserver observer = new ChangeObserver(callback);
+        mObservers.put(callback, observer);
+        mContentResolver.registerContentObserver(uri, true, observer);
     }
 
     /**
@@ -36,11 +182,46 @@ public class ContentProviderAccess {
      * If operation completes without errors callback will return data in onSuccess method,
      * otherwise onFailure will be called.
      * @param callback callback to return data to
+     * @return handle of operation
      */
     @SuppressWarnings("unused")
-    public void getShoppingLists(final SelectCallback<ShoppingList> callback) {
+    public OperationHandle getShoppingLists(final SelectCallback<ShoppingList> callback) {
         Logger.v(LOG_TAG, "getShoppingLists()");
-        new GetShoppingListsTask(mContentResolver, callback).execute();
+        return track(new GetShoppingListsTask(mContentResolver, null, null,
+                ShoppingListsTable.COLUMN_CREATED_AT + " DESC", callback)
+                .executeRead());
+    }
+
+    /**
+     * Fetches selected type of shopping lists (WITHOUT items, but with items counters) in chosen order.
+     * Counters are stored in shopping lists table, so items are not read at all.
+     * If operation completes without errors callback will return data in onSuccess method,
+     * otherwise onFailure will be called.
+     *
+     * @param archived if true archived shopping lists will be fetched, otherwise not archived
+     * @param order    one of ORDER_BY_* constants
+     * @param callback callback to return data to
+     * @return handle of operation
+     */
+    @SuppressWarnings("unused")
+    public OperationHandle getShoppingLists(final boolean archived, final int order, final SelectCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "getShoppingLists({}, {})", archived, order);
+        String sortOrder;
+        switch (order) {
+            case ORDER_BY_LAST_MODIFIED:
+                sortOrder = ShoppingListsTable.COLUMN_LAST_MODIFIED + " DESC";
+                break;
+            case ORDER_BY_UNCHECKED_COUNT:
+                sortOrder = ShoppingListsTable.COLUMN_UNCHECKED_COUNT + " DESC, "
+                        + ShoppingListsTable.COLUMN_CREATED_AT + " DESC";
+                break;
+            default:
+                sortOrder = ShoppingListsTable.COLUMN_CREATED_AT + " DESC";
+                break;
+        }
+        return track(new GetShoppingListsTask(mContentResolver, ShoppingListsTable.COLUMN_ARCHIVED + " = ?",
+                new String[]{archived ? "1" : "0"}, sortOrder, callback)
+                .executeRead());
     }
 
     /**
@@ -50,10 +231,60 @@ public class ContentProviderAccess {
      *
      * @param archived if true archived shopping lists will be fetched, otherwise not archived
      * @param callback callback to return data to
+     * @return handle of operation
      */
-    public void getShoppingListsAndUncheckedItems(final boolean archived, final SelectCallback<ShoppingList> callback) {
+    public OperationHandle getShoppingListsAndUncheckedItems(final boolean archived, final SelectCallback<ShoppingList> callback) {
         Logger.v(LOG_TAG, "getShoppingListsAndUncheckedItems()");
-        new GetShoppingListsAndUncheckedItemsTask(mContentResolver, archived, callback).execute();
+        return track(new GetShoppingListsAndUncheckedItemsTask(mContentResolver, archived, callback).executeRead());
+    }
+
+    /**
+     * Fetches selected type of shopping lists (WITHOUT items, but with summary of unchecked items
+     * and items counters) and sort them by creation date (descending). Summary is computed by
+     * database, so cost of this operation doesn't depend on number of items.
+     * If operation completes without errors callback will return data in onSuccess method,
+     * otherwise onFailure will be called.
+     *
+     * @param archived if true archived shopping lists will be fetched, otherwise not archived
+     * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle getShoppingListSummaries(final boolean archived, final SelectCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "getShoppingListSummaries({})", archived);
+        return track(new GetShoppingListSummariesTask(mContentResolver,
+                ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI,
+                ShoppingListsTable.COLUMN_ARCHIVED + " = ?", new String[]{archived ? "1" : "0"}, callback)
+                .executeRead());
+    }
+
+    /**
+     * Fetches one page of selected type of shopping lists (same as getShoppingListSummaries()).
+     * Page starts after provided shopping list, so pages stay correct when lists are added
+     * or removed between calls. If returned page has less than pageSize elements, there are
+     * no more pages. If operation completes without errors callback will return data in onSuccess
+     * method, otherwise onFailure will be called.
+     *
+     * @param archived if true archived shopping lists will be fetched, otherwise not archived
+     * @param after    last shopping list of previous page, or null to fetch first page
+     * @param pageSize maximum number of shopping lists to fetch
+     * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle getShoppingListSummariesPage(final boolean archived, @Nullable final ShoppingList after,
+                                             final int pageSize, final SelectCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "getShoppingListSummariesPage({}, {}, {})", archived, after, pageSize);
+        Uri uri;
+        if (after == null) {
+            uri = ShoppingListsContentProvider.buildPageUri(
+                    ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI, pageSize);
+        } else {
+            uri = ShoppingListsContentProvider.buildPageUri(
+                    ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI, pageSize,
+                    after.getCreatedAt().getTimeInMillis(), after.getId());
+        }
+        return track(new GetShoppingListSummariesTask(mContentResolver, uri,
+                ShoppingListsTable.COLUMN_ARCHIVED + " = ?", new String[]{archived ? "1" : "0"}, callback)
+                .executeRead());
     }
 
     /**
@@ -62,10 +293,25 @@ public class ContentProviderAccess {
      *
      * @param shoppingList object to create
      * @param callback     callback to return data to
+     * @return handle of operation
      */
-    public void createShoppingList(final ShoppingList shoppingList, final CreateCallback<ShoppingList> callback) {
-        Logger.v(LOG_TAG, "createShoppingList(" + shoppingList + ")");
-        new CreateShoppingListTask(mContentResolver, shoppingList, callback).execute();
+    public OperationHandle createShoppingList(final ShoppingList shoppingList, final CreateCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "createShoppingList({})", shoppingList);
+        return track(new CreateShoppingListTask(mContentResolver, shoppingList, callback).executeWrite());
+    }
+
+    /**
+     * Creates new shopping list together with all its items in single transaction. If operation
+     * completes without errors callback will return created object with filled ids (also in items)
+     * in onSuccess method, otherwise onFailure will be called and nothing will be saved.
+     *
+     * @param shoppingList object to create
+     * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle createShoppingListWithItems(final ShoppingList shoppingList, final CreateCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "createShoppingListWithItems({})", shoppingList);
+        return track(new CreateShoppingListWithItemsTask(mContentResolver, shoppingList, callback).executeWrite());
     }
 
     /**
@@ -74,23 +320,153 @@ public class ContentProviderAccess {
      *
      * @param shoppingList object to update
      * @param callback     callback to return data to
+     * @return handle of operation
      */
-    public void updateShoppingList(final ShoppingList shoppingList, final UpdateCallback<ShoppingList> callback) {
-        Logger.v(LOG_TAG, "updateShoppingList(" + shoppingList + ")");
-        new UpdateShoppingListTask(mContentResolver, shoppingList, callback).execute();
+    public OperationHandle updateShoppingList(final ShoppingList shoppingList, final UpdateCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "updateShoppingList({})", shoppingList);
+        long lastModified = System.currentTimeMillis();
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        long sequence = journal == null ? -1 : journal.appendUpdateShoppingList(shoppingList, lastModified);
+        OperationHandle handle = track(new UpdateShoppingListTask(mContentResolver, shoppingList, lastModified,
+                callback).executeWrite());
+        if (journal != null) {
+            journal.markDone(sequence);
+        }
+        return handle;
     }
 
     /**
-     * Deletes provided shopping list and all items in database assigned to it. If operation
-     * completes without errors callback will return deleted object in onSuccess method, otherwise
-     * onFailure will be called.
+     * Deletes provided shopping list and all items in database assigned to it (in single statement,
+     * items are deleted by foreign key). If operation completes without errors callback will return
+     * deleted object in onSuccess method, otherwise onFailure will be called.
      *
      * @param shoppingList object to delete
      * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle deleteShoppingList(final ShoppingList shoppingList, final DeleteCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "deleteShoppingList({})", shoppingList);
+        ItemWriteBuffer.getInstance().flush();
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        long sequence = journal == null ? -1 : journal.appendDeleteShoppingList(shoppingList.getId());
+        OperationHandle handle = track(new DeleteShoppingListTask(mContentResolver, shoppingList, callback)
+                .executeWrite());
+        if (journal != null) {
+            journal.markDone(sequence);
+        }
+        return handle;
+    }
+
+    /**
+     * Checks all items of shopping list in database with single statement. If operation completes
+     * without errors callback will return number of changed items in onSuccess method, otherwise
+     * onFailure will be called.
+     *
+     * @param shoppingList shopping list, which items will be checked
+     * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle checkAllItems(final ShoppingList shoppingList, final UpdateCallback<Integer> callback) {
+        Logger.v(LOG_TAG, "checkAllItems({})", shoppingList.getId());
+        ItemWriteBuffer.getInstance().flush();
+        return track(new CountCallTask(mContentResolver, ShoppingListsContentProvider.METHOD_CHECK_ALL,
+                String.valueOf(shoppingList.getId()), shoppingList.getId(), callback).executeWrite());
+    }
+
+    /**
+     * Unchecks all items of shopping list in database with single statement. If operation completes
+     * without errors callback will return number of changed items in onSuccess method, otherwise
+     * onFailure will be called.
+     *
+     * @param shoppingList shopping list, which items will be unchecked
+     * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle uncheckAllItems(final ShoppingList shoppingList, final UpdateCallback<Integer> callback) {
+        Logger.v(LOG_TAG, "uncheckAllItems({})", shoppingList.getId());
+        ItemWriteBuffer.getInstance().flush();
+        return track(new CountCallTask(mContentResolver, ShoppingListsContentProvider.METHOD_UNCHECK_ALL,
+                String.valueOf(shoppingList.getId()), shoppingList.getId(), callback).executeWrite());
+    }
+
+    /**
+     * Deletes all checked items of shopping list in database with single statement. If operation
+     * completes without errors callback will return number of deleted items in onSuccess method,
+     * otherwise onFailure will be called.
+     *
+     * @param shoppingList shopping list, which checked items will be deleted
+     * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle deleteCheckedItems(final ShoppingList shoppingList, final DeleteCallback<Integer> callback) {
+        Logger.v(LOG_TAG, "deleteCheckedItems({})", shoppingList.getId());
+        ItemWriteBuffer.getInstance().flush();
+        return track(new CallTask(mContentResolver, ShoppingListsContentProvider.METHOD_DELETE_CHECKED,
+                String.valueOf(shoppingList.getId()), null, shoppingList.getId()) {
+            @Override
+            void onSuccess(Bundle result) {
+                callback.onSuccess(result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+            }
+
+            @Override
+            void onFailure() {
+                callback.onFailure();
+            }
+        }.executeWrite());
+    }
+
+    /**
+     * Archives all active shopping lists created before provided date with single statement.
+     * If operation completes without errors callback will return number of archived shopping lists
+     * in onSuccess method, otherwise onFailure will be called.
+     *
+     * @param date     date before which shopping lists were created
+     * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle archiveShoppingListsOlderThan(final Calendar date, final UpdateCallback<Integer> callback) {
+        Logger.v(LOG_TAG, "archiveShoppingListsOlderThan({})", date.getTimeInMillis());
+        return track(new CountCallTask(mContentResolver, ShoppingListsContentProvider.METHOD_ARCHIVE_OLDER_THAN,
+                String.valueOf(date.getTimeInMillis()), -1, callback).executeWrite());
+    }
+
+    /**
+     * Creates copy of shopping list with all its items (unchecked) in database, without loading them.
+     * If operation completes without errors callback will return created shopping list (WITHOUT items,
+     * but with counters) in onSuccess method, otherwise onFailure will be called.
+     *
+     * @param shoppingList shopping list to copy
+     * @param callback     callback to return data to
+     * @return handle of operation
      */
-    public void deleteShoppingList(final ShoppingList shoppingList, final DeleteCallback<ShoppingList> callback) {
-        Logger.v(LOG_TAG, "deleteShoppingList(" + shoppingList + ")");
-        new DeleteShoppingListTask(mContentResolver, shoppingList, callback).execute();
+    public OperationHandle duplicateShoppingList(final ShoppingList shoppingList, final CreateCallback<ShoppingList> callback) {
+        Logger.v(LOG_TAG, "duplicateShoppingList({})", shoppingList.getId());
+        ItemWriteBuffer.getInstance().flush();
+        final ShoppingList copy = new ShoppingList();
+        copy.setTitle(shoppingList.getTitle());
+        copy.setLastModified(copy.getCreatedAt().getTimeInMillis());
+        Bundle extras = new Bundle();
+        extras.putLong(ShoppingListsContentProvider.EXTRA_CREATED_AT, copy.getCreatedAt().getTimeInMillis());
+        return track(new CallTask(mContentResolver, ShoppingListsContentProvider.METHOD_DUPLICATE_LIST,
+                String.valueOf(shoppingList.getId()), extras, -1) {
+            @Override
+            void onSuccess(Bundle result) {
+                long id = result.getLong(ShoppingListsContentProvider.RESULT_ID, -1);
+                if (id == -1) {
+                    callback.onFailure();
+                    return;
+                }
+                copy.setId(id);
+                copy.setItemsCount(result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+                copy.setUncheckedItemsCount(copy.getItemsCount());
+                callback.onSuccess(copy);
+            }
+
+            @Override
+            void onFailure() {
+                callback.onFailure();
+            }
+        }.executeWrite());
     }
 
     /**
@@ -99,10 +475,54 @@ public class ContentProviderAccess {
      *
      * @param shoppingList shopping list, for which data will be fetched
      * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle getItemsForShoppingList(final ShoppingList shoppingList, final SelectCallback<Item> callback) {
+        Logger.v(LOG_TAG, "getItemsForShoppingList({})", shoppingList);
+        return track(new GetItemsForShoppingList(mContentResolver, ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                shoppingList, callback).executeRead());
+    }
+
+    /**
+     * Loads all items of chosen shopping list into provided cache on low priority prefetch thread,
+     * like getItemsForShoppingList().
+     *
+     * @param shoppingList shopping list, for which data will be fetched
+     * @param cache        cache to put items into
+     * @param callback     callback to return data to
+     * @return handle of operation
      */
-    public void getItemsForShoppingList(final ShoppingList shoppingList, final SelectCallback<Item> callback) {
-        Logger.v(LOG_TAG, "getItemsForShoppingList(" + shoppingList + ")");
-        new GetItemsForShoppingList(mContentResolver, shoppingList, callback).execute();
+    OperationHandle prefetchItemsForShoppingList(final ShoppingList shoppingList, final ShoppingListCache cache,
+                                                 final SelectCallback<Item> callback) {
+        Logger.v(LOG_TAG, "prefetchItemsForShoppingList({})", shoppingList.getId());
+        return track(new GetItemsForShoppingList(mContentResolver, ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                shoppingList, cache, callback).executePrefetch());
+    }
+
+    /**
+     * Fetches one page of items for chosen shopping list (newest first). Page starts after provided
+     * item, so pages stay correct when items are added or removed between calls. If returned page
+     * has less than pageSize elements, there are no more pages. If operation completes without errors
+     * callback will return data in onSuccess method, otherwise onFailure will be called.
+     *
+     * @param shoppingList shopping list, for which data will be fetched
+     * @param after        last item of previous page, or null to fetch first page
+     * @param pageSize     maximum number of items to fetch
+     * @param callback     callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle getItemsForShoppingListPage(final ShoppingList shoppingList, @Nullable final Item after,
+                                            final int pageSize, final SelectCallback<Item> callback) {
+        Logger.v(LOG_TAG, "getItemsForShoppingListPage({}, {}, {})", shoppingList.getId(), after, pageSize);
+        Uri uri;
+        if (after == null) {
+            uri = ShoppingListsContentProvider.buildPageUri(ShoppingListsContentProvider.ITEM_CONTENT_URI, pageSize);
+        } else {
+            uri = ShoppingListsContentProvider.buildPageUri(ShoppingListsContentProvider.ITEM_CONTENT_URI, pageSize,
+                    after.getTimestamp(), after.getId());
+        }
+        return track(new GetItemsForShoppingList(mContentResolver, uri, shoppingList, callback)
+                .executeRead());
     }
 
     /**
@@ -112,10 +532,95 @@ public class ContentProviderAccess {
      * @param item                 object to create
      * @param parentShoppingListId id of shopping list, for which item will be created
      * @param callback             callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle createItem(final Item item, final long parentShoppingListId, final CreateCallback<Item> callback) {
+        Logger.v(LOG_TAG, "createItem({}, {})", item, parentShoppingListId);
+        String[] clientKeys = createClientKeys(Collections.singletonList(item));
+        long timestamp = System.currentTimeMillis();
+        long[] sequences = journalCreates(Collections.singletonList(item), clientKeys, parentShoppingListId, timestamp);
+        OperationHandle handle = track(new CreateItemTask(mContentResolver, item, parentShoppingListId,
+                clientKeys[0], timestamp, callback).executeWrite());
+        markJournalDone(sequences);
+        return handle;
+    }
+
+    /**
+     * Creates new items of shopping list in single transaction. If operation completes without errors
+     * callback will return created objects with filled ids in onSuccess method, otherwise onFailure
+     * will be called and none of items will be saved.
+     *
+     * @param items                objects to create
+     * @param parentShoppingListId id of shopping list, for which items will be created
+     * @param callback             callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle createItems(final ArrayList<Item> items, final long parentShoppingListId,
+                            final CreateCallback<ArrayList<Item>> callback) {
+        Logger.v(LOG_TAG, "createItems({}, {})", items, parentShoppingListId);
+        String[] clientKeys = createClientKeys(items);
+        long timestamp = System.currentTimeMillis();
+        long[] sequences = journalCreates(items, clientKeys, parentShoppingListId, timestamp);
+        OperationHandle handle = track(new CreateItemsTask(mContentResolver, items, parentShoppingListId,
+                clientKeys, timestamp, callback).executeWrite());
+        markJournalDone(sequences);
+        return handle;
+    }
+
+    /**
+     * @return client keys of created items, new ones for items which don't have them
      */
-    public void createItem(final Item item, final long parentShoppingListId, final CreateCallback<Item> callback) {
-        Logger.v(LOG_TAG, "createItem(" + item + ", " + parentShoppingListId + ")");
-        new CreateItemTask(mContentResolver, item, parentShoppingListId, callback).execute();
+    private static String[] createClientKeys(List<Item> items) {
+        String[] clientKeys = new String[items.size()];
+        for (int i = 0; i < clientKeys.length; i++) {
+            String clientKey = items.get(i).getClientKey();
+            clientKeys[i] = clientKey != null ? clientKey : UUID.randomUUID().toString();
+        }
+        return clientKeys;
+    }
+
+    /**
+     * Finds items created with provided client keys (see Item.getClientKey()), to learn ids of
+     * items whose creation callbacks were dropped, e.g. because activity was recreated. Query is
+     * run on write thread, so items created before this call are already written. If operation
+     * completes without errors callback will return found items (with client keys) in onSuccess
+     * method, otherwise onFailure will be called. Items not found were not created.
+     *
+     * @param clientKeys client keys of created items
+     * @param callback   callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle findCreatedItems(final List<String> clientKeys, final SelectCallback<Item> callback) {
+        Logger.v(LOG_TAG, "findCreatedItems({})", clientKeys);
+        return track(new FindCreatedItemsTask(mContentResolver, clientKeys, callback).executeWrite());
+    }
+
+    /**
+     * Appends creation of items to journal, so it is applied even if process is killed before
+     * write thread gets to it.
+     *
+     * @return sequence numbers to pass to markJournalDone() after write is submitted, or null if
+     * there is no journal
+     */
+    @Nullable
+    private static long[] journalCreates(List<Item> items, String[] clientKeys, long parentShoppingListId,
+                                         long timestamp) {
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        if (journal == null) {
+            return null;
+        }
+        long[] sequences = new long[items.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = journal.appendCreate(clientKeys[i], items.get(i), parentShoppingListId, timestamp);
+        }
+        return sequences;
+    }
+
+    private static void markJournalDone(@Nullable long[] sequences) {
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        if (journal != null && sequences != null) {
+            journal.markDone(sequences);
+        }
     }
 
     /**
@@ -125,10 +630,120 @@ public class ContentProviderAccess {
      *
      * @param item     object to update
      * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle updateItem(final Item item, final UpdateCallback<Item> callback) {
+        Logger.v(LOG_TAG, "updateItem({})", item);
+        ItemWriteBuffer.getInstance().flush();
+        return track(new UpdateItemTask(mContentResolver, item, callback).executeWrite());
+    }
+
+    /**
+     * Updates provided item of shopping list like updateItem(), but write is delayed for short
+     * time, so repeated updates of the same item (e.g. quick taps on checkbox) are merged into one
+     * and written together with updates of other items in single transaction. Callback is called
+     * after write. Pending updates are written before other changes of items made by this class
+     * and by flushItemUpdates(), which should be called when user leaves the screen.
+     * Cancelling returned handle (also by cancelAll()) drops only callback of this call, buffered
+     * update is still written, together with updates of other callers.
+     *
+     * @param item     object to update
+     * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle updateItemDeferred(final Item item, final UpdateCallback<Item> callback) {
+        Logger.v(LOG_TAG, "updateItemDeferred({})", item);
+        return track(ItemWriteBuffer.getInstance().update(this, item, callback));
+    }
+
+    /**
+     * Immediately writes all updates of items buffered by updateItemDeferred().
+     */
+    public void flushItemUpdates() {
+        Logger.v(LOG_TAG, "flushItemUpdates()");
+        ItemWriteBuffer.getInstance().flush();
+    }
+
+    /**
+     * Writes all buffered updates of items and returns future completed when all writes started
+     * so far are applied and their callbacks are called. Future is empty write used as barrier:
+     * it does nothing on write thread, which runs writes one by one in order of submitting.
+     * Future is not cancelled by cancelAll(), unless it is bound with bind().
+     *
+     * @return future completed after all started writes
+     */
+    public DataFuture<Void> finishWrites() {
+        Logger.v(LOG_TAG, "finishWrites()");
+        ItemWriteBuffer.getInstance().flush();
+        //write thread runs writes in order and their results are posted to main thread in order,
+        //so callbacks of this future are called after all of them
+        return DataFuture.write(new DataFuture.Operation<Void>() {
+            @Override
+            public Void perform() {
+                return null;
+            }
+        });
+    }
+
+    /*
+     * Operation below returns future instead of taking callback, so it can be composed with
+     * DataFuture.then(), combine() and allOf() (e.g. after finishWrites()). Dependent operations
+     * are started on background thread, so only result of whole composition is returned to main
+     * thread. Futures are not cancelled by cancelAll(), as they may be started on background
+     * thread, future whose callbacks are called should be bound with bind().
+     */
+
+    /**
+     * Updates provided shopping list (WITHOUT items) like updateShoppingList().
+     *
+     * @param shoppingList object to update
+     * @return future of updated object
+     */
+    public DataFuture<ShoppingList> updateShoppingList(final ShoppingList shoppingList) {
+        Logger.v(LOG_TAG, "updateShoppingList({})", shoppingList);
+        final long lastModified = System.currentTimeMillis();
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        long sequence = journal == null ? -1 : journal.appendUpdateShoppingList(shoppingList, lastModified);
+        DataFuture<ShoppingList> future = DataFuture.write(new DataFuture.Operation<ShoppingList>() {
+            @Override
+            public ShoppingList perform() {
+                if (updateShoppingListRow(mContentResolver, shoppingList, lastModified) != 1) {
+                    throw new IllegalStateException("Shopping list not updated");
+                }
+                return shoppingList;
+            }
+        });
+        if (journal != null) {
+            journal.markDone(sequence);
+        }
+        return future;
+    }
+
+    /**
+     * Updates provided items of shopping lists in single transaction. If operation completes without
+     * errors callback will return updated data in onSuccess method, otherwise onFailure will be called
+     * and none of items will be updated.
+     *
+     * @param items    objects to update
+     * @param callback callback to return data to
+     * @return handle of operation
      */
-    public void updateItem(final Item item, final UpdateCallback<Item> callback) {
-        Logger.v(LOG_TAG, "updateItem(" + item + ")");
-        new UpdateItemTask(mContentResolver, item, callback).execute();
+    public OperationHandle updateItems(final ArrayList<Item> items, final UpdateCallback<ArrayList<Item>> callback) {
+        Logger.v(LOG_TAG, "updateItems({})", items);
+        ItemWriteBuffer.getInstance().flush();
+        return track(new UpdateItemsTask(mContentResolver, items, callback).executeWrite());
+    }
+
+    /**
+     * Writes updates of items merged by ItemWriteBuffer. Unlike updateItems(), write is not tracked
+     * by lifecycle owner of this object, as callback delivers results of updates of other callers
+     * too, which cancel their own updates.
+     *
+     * @param items    objects to update
+     * @param callback callback to return data to
+     */
+    void writeBufferedItemUpdates(final ArrayList<Item> items, final UpdateCallback<ArrayList<Item>> callback) {
+        new UpdateItemsTask(mContentResolver, items, callback).executeWrite();
     }
 
     /**
@@ -137,51 +752,97 @@ public class ContentProviderAccess {
      *
      * @param item     object to delete
      * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle deleteItem(final Item item, final DeleteCallback<Item> callback) {
+        Logger.v(LOG_TAG, "deleteItem({})", item);
+        ItemWriteBuffer.getInstance().flush();
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        long sequence = journal == null ? -1 : journal.appendDelete(item.getId());
+        OperationHandle handle = track(new DeleteItemTask(mContentResolver, item, callback).executeWrite());
+        if (journal != null) {
+            journal.markDone(sequence);
+        }
+        return handle;
+    }
+
+    /**
+     * Searches shopping lists by title and items by content. Every word of query is matched
+     * as beginning of word, ignoring case and Polish diacritics. Shopping lists are returned first,
+     * then items, each ordered by relevance. If operation completes without errors callback will return
+     * data in onSuccess method, otherwise onFailure will be called.
+     *
+     * @param query    text to search for
+     * @param limit    maximum number of results
+     * @param callback callback to return data to
+     * @return handle of operation
+     */
+    public OperationHandle search(final String query, final int limit, final SelectCallback<SearchResult> callback) {
+        Logger.v(LOG_TAG, "search({}, {})", query, limit);
+        return track(new SearchTask(mContentResolver, ShoppingListsContentProvider.buildSearchUri(query, limit), callback)
+                .executeRead());
+    }
+
+    /**
+     * Creates query of selected type of shopping lists (WITHOUT items, but with summary of unchecked
+     * items and items counters) sorted by creation date (descending), which is run again every time
+     * shopping lists or items change. Subscribers receive every new result with changes since
+     * previous one. Query reads first page of shopping lists, next pages can be fetched with
+     * getShoppingListSummariesPage() and appended to it.
+     *
+     * @param archived if true archived shopping lists will be observed, otherwise not archived
+     * @param pageSize number of shopping lists in first page, 0 to observe all shopping lists
+     * @return query to subscribe to
      */
-    public void deleteItem(final Item item, final DeleteCallback<Item> callback) {
-        Logger.v(LOG_TAG, "deleteItem(" + item + ")");
-        new DeleteItemTask(mContentResolver, item, callback).execute();
+    public ObservableQuery<ShoppingList> observeShoppingListSummaries(final boolean archived, final int pageSize) {
+        Logger.v(LOG_TAG, "observeShoppingListSummaries({}, {})", archived, pageSize);
+        //summaries and counters depend on items too
+        return new ObservableQuery<>(mContentResolver, ShoppingListsContentProvider.BASE_CONTENT_URI,
+                ShoppingListsContentProvider.SHOPPING_LIST_SUMMARY_CONTENT_URI,
+                ShoppingListsTable.COLUMN_ARCHIVED + " = ?", new String[]{archived ? "1" : "0"},
+                ShoppingListsTable.COLUMN_CREATED_AT + " DESC",
+                RowMappers.SHOPPING_LIST_SUMMARY, RowMappers.SHOPPING_LIST_COMPARATOR, pageSize);
     }
 
-    private static class GetShoppingListsTask extends AsyncTask<Void, Void, ArrayList<ShoppingList>> {
+    private static class GetShoppingListsTask extends DataTask<ArrayList<ShoppingList>> {
 
         private final WeakReference<ContentResolver> cr;
         private final SelectCallback<ShoppingList> callback;
+        private final String selection;
+        private final String[] selectionArgs;
+        private final String sortOrder;
 
-        GetShoppingListsTask(ContentResolver contentResolver, SelectCallback<ShoppingList> callback) {
+        GetShoppingListsTask(ContentResolver contentResolver, String selection, String[] selectionArgs,
+                             String sortOrder, SelectCallback<ShoppingList> callback) {
             cr = new WeakReference<>(contentResolver);
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.sortOrder = sortOrder;
             this.callback = callback;
         }
 
         @Override
-        protected ArrayList<ShoppingList> doInBackground(Void[] params) {
+        protected ArrayList<ShoppingList> doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
             Cursor cursor = mContentResolver.query(
                     ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
-                    new String[]{ShoppingListsTable.COLUMN_ID, ShoppingListsTable.COLUMN_TITLE,
-                            ShoppingListsTable.COLUMN_ARCHIVED,
-                            ShoppingListsTable.COLUMN_CREATED_AT},
-                    null,
-                    null,
-                    ShoppingListsTable.COLUMN_CREATED_AT + " DESC"
+                    RowMappers.SHOPPING_LIST.getProjection(),
+                    selection,
+                    selectionArgs,
+                    sortOrder,
+                    getCancellationSignal()
             );
 
             if (cursor == null) {
                 return null;
             }
 
-            ArrayList<ShoppingList> result;
-            if (cursor.getCount() == 0) {
-                result = new ArrayList<>();
-            } else {
-                result = new ArrayList<>();
-                while (cursor.moveToNext()) {
-                    result.add(cursorToShoppingList(cursor));
-                }
+            try {
+                return RowMappers.SHOPPING_LIST.mapAll(cursor);
+            } finally {
+                cursor.close();
             }
-            cursor.close();
-            return result;
         }
 
         protected void onPostExecute(ArrayList<ShoppingList> result) {
@@ -191,26 +852,9 @@ public class ContentProviderAccess {
                 callback.onSuccess(result);
             }
         }
-
-        /**
-         * Converts Cursor object to ShoppingList object.
-         *
-         * @param cursor cursor with active row
-         * @return ready ShoppingList object
-         */
-        private ShoppingList cursorToShoppingList(Cursor cursor) {
-            ShoppingList item = new ShoppingList();
-            item.setId(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_ID)));
-            item.setTitle(cursor.getString(cursor.getColumnIndex(ShoppingListsTable.COLUMN_TITLE)));
-            item.setArchived(cursor.getShort(cursor.getColumnIndex(ShoppingListsTable.COLUMN_ARCHIVED)) == 1);
-            GregorianCalendar cal = new GregorianCalendar();
-            cal.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_CREATED_AT)));
-            item.setCreatedAt(cal);
-            return item;
-        }
     }
 
-    private static class GetShoppingListsAndUncheckedItemsTask extends AsyncTask<Void, Void, ArrayList<ShoppingList>> {
+    private static class GetShoppingListsAndUncheckedItemsTask extends DataTask<ArrayList<ShoppingList>> {
 
         private final WeakReference<ContentResolver> cr;
         private final SelectCallback<ShoppingList> callback;
@@ -223,70 +867,81 @@ public class ContentProviderAccess {
         }
 
         @Override
-        protected ArrayList<ShoppingList> doInBackground(Void[] params) {
+        protected ArrayList<ShoppingList> doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
             Cursor cursor = mContentResolver.query(
                     ShoppingListsContentProvider.SHOPPING_LIST_AND_ITEM_CONTENT_URI,
-                    new String[]{
-                            ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID,
-                            ShoppingListsTable.COLUMN_TITLE,
-                            ShoppingListsTable.COLUMN_CREATED_AT,
-                            ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_ID,
-                            ItemsTable.COLUMN_CONTENT},
+                    RowMappers.SHOPPING_LIST_AND_ITEM.getProjection(),
                     ShoppingListsTable.COLUMN_ARCHIVED + " = ? AND ("
                             + ItemsTable.COLUMN_CHECKED + " IS null OR " + ItemsTable.COLUMN_CHECKED + " != ?)",
                     new String[]{archived ? "1" : "0", "1"},
-                    ShoppingListsTable.COLUMN_CREATED_AT + " DESC, " + ItemsTable.COLUMN_TIMESTAMP + " DESC"
+                    //id keeps rows of shopping lists created at the same time apart
+                    ShoppingListsTable.COLUMN_CREATED_AT + " DESC, "
+                            + ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID + " DESC, "
+                            + ItemsTable.COLUMN_TIMESTAMP + " DESC",
+                    getCancellationSignal()
             );
 
             if (cursor == null) {
                 return null;
             }
 
-            ArrayList<ShoppingList> result;
+            try {
+                return RowMappers.groupShoppingListsWithItems(cursor, archived);
+            } finally {
+                cursor.close();
+            }
+        }
 
-            if (cursor.getCount() == 0) {
-                result = new ArrayList<>();
+        protected void onPostExecute(ArrayList<ShoppingList> result) {
+            if (result == null) {
+                callback.onFailure();
             } else {
-                result = new ArrayList<>();
-                ShoppingList tempShoppingList;
-                Item tempItem;
-
-                while (cursor.moveToNext()) {
-                    //create temporary shopping list object
-                    tempShoppingList = new ShoppingList();
-                    tempShoppingList.setId(cursor.getLong(0));
-                    tempShoppingList.setTitle(cursor.getString(cursor.getColumnIndex(ShoppingListsTable.COLUMN_TITLE)));
-                    GregorianCalendar cal = new GregorianCalendar();
-                    cal.setTimeInMillis(cursor.getLong(cursor.getColumnIndex(ShoppingListsTable.COLUMN_CREATED_AT)));
-                    tempShoppingList.setCreatedAt(cal);
-                    tempShoppingList.setArchived(archived);
-
-                    //create temporary item object
-                    if (cursor.getString(cursor.getColumnIndex(ItemsTable.COLUMN_CONTENT)) == null
-                            && cursor.getString(3) == null) {
-                        tempItem = null;
-                    } else {
-                        tempItem = new Item();
-                        tempItem.setId(cursor.getLong(3));
-                        tempItem.setContent(cursor.getString(cursor.getColumnIndex(ItemsTable.COLUMN_CONTENT)));
-                        tempItem.setChecked(false);
-                    }
+                callback.onSuccess(result);
+            }
+        }
+    }
 
-                    //add objects to result
-                    if (result.contains(tempShoppingList) && tempItem != null) {
-                        result.get(result.indexOf(tempShoppingList)).addItem(tempItem);
-                    } else {
-                        if (tempItem != null) {
-                            tempShoppingList.addItem(tempItem);
-                        }
-                        result.add(tempShoppingList);
-                    }
-                }
+    private static class GetShoppingListSummariesTask extends DataTask<ArrayList<ShoppingList>> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final SelectCallback<ShoppingList> callback;
+        private final Uri uri;
+        private final String selection;
+        private final String[] selectionArgs;
+
+        GetShoppingListSummariesTask(ContentResolver contentResolver, Uri uri, String selection,
+                                     String[] selectionArgs, SelectCallback<ShoppingList> callback) {
+            cr = new WeakReference<>(contentResolver);
+            this.uri = uri;
+            this.selection = selection;
+            this.selectionArgs = selectionArgs;
+            this.callback = callback;
+        }
+
+        @Override
+        protected ArrayList<ShoppingList> doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            Cursor cursor = mContentResolver.query(
+                    uri,
+                    RowMappers.SHOPPING_LIST_SUMMARY.getProjection(),
+                    selection,
+                    selectionArgs,
+                    ShoppingListsTable.COLUMN_CREATED_AT + " DESC",
+                    getCancellationSignal()
+            );
+
+            if (cursor == null) {
+                return null;
+            }
+
+            try {
+                return RowMappers.SHOPPING_LIST_SUMMARY.mapAll(cursor);
+            } finally {
+                cursor.close();
             }
-            cursor.close();
-            return result;
         }
 
         protected void onPostExecute(ArrayList<ShoppingList> result) {
@@ -298,7 +953,7 @@ public class ContentProviderAccess {
         }
     }
 
-    private static class CreateShoppingListTask extends AsyncTask<Void, Void, Long> {
+    private static class CreateShoppingListTask extends DataTask<Long> {
 
         private final WeakReference<ContentResolver> cr;
         private final CreateCallback<ShoppingList> callback;
@@ -311,12 +966,13 @@ public class ContentProviderAccess {
         }
 
         @Override
-        protected Long doInBackground(Void[] params) {
+        protected Long doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
             ContentValues contentValues = new ContentValues();
             contentValues.put(ShoppingListsTable.COLUMN_TITLE, shoppingList.getTitle());
             contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, shoppingList.getCreatedAt().getTimeInMillis());
+            contentValues.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, shoppingList.getCreatedAt().getTimeInMillis());
             contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, shoppingList.isArchived());
 
             long id = -1;
@@ -337,36 +993,116 @@ public class ContentProviderAccess {
         }
     }
 
-    private static class UpdateShoppingListTask extends AsyncTask<Void, Void, Integer> {
+    private static class CreateShoppingListWithItemsTask extends DataTask<ContentProviderResult[]> {
 
         private final WeakReference<ContentResolver> cr;
-        private final UpdateCallback<ShoppingList> callback;
+        private final CreateCallback<ShoppingList> callback;
         private final ShoppingList shoppingList;
 
-        UpdateShoppingListTask(ContentResolver contentResolver, ShoppingList shoppingList, UpdateCallback<ShoppingList> callback) {
+        CreateShoppingListWithItemsTask(ContentResolver contentResolver, ShoppingList shoppingList, CreateCallback<ShoppingList> callback) {
             cr = new WeakReference<>(contentResolver);
             this.shoppingList = shoppingList;
             this.callback = callback;
         }
 
         @Override
-        protected Integer doInBackground(Void[] params) {
+        protected ContentProviderResult[] doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
             ContentValues contentValues = new ContentValues();
             contentValues.put(ShoppingListsTable.COLUMN_TITLE, shoppingList.getTitle());
+            contentValues.put(ShoppingListsTable.COLUMN_CREATED_AT, shoppingList.getCreatedAt().getTimeInMillis());
+            contentValues.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, shoppingList.getCreatedAt().getTimeInMillis());
             contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, shoppingList.isArchived());
+            operations.add(ContentProviderOperation
+                    .newInsert(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI)
+                    .withValues(contentValues)
+                    .build());
+
+            long timestamp = (new GregorianCalendar()).getTimeInMillis();
+            for (Item item : shoppingList.getItems()) {
+                contentValues = new ContentValues();
+                contentValues.put(ItemsTable.COLUMN_CONTENT, item.getContent());
+                contentValues.put(ItemsTable.COLUMN_CHECKED, item.isChecked());
+                contentValues.put(ItemsTable.COLUMN_TIMESTAMP, timestamp);
+                item.setTimestamp(timestamp);
+                operations.add(ContentProviderOperation
+                        .newInsert(ShoppingListsContentProvider.ITEM_CONTENT_URI)
+                        .withValues(contentValues)
+                        .withValueBackReference(ItemsTable.COLUMN_SHOPPING_LIST_ID, 0)
+                        .build());
+            }
 
-            return mContentResolver.update(
-                    ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
-                    contentValues,
-                    ShoppingListsTable.COLUMN_ID + " = ?",
-                    new String[]{shoppingList.getId() + ""}
-            );
+            try {
+                return mContentResolver.applyBatch(ShoppingListsContentProvider.AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Logger.e(LOG_TAG, "Failed to create shopping list with items: " + e);
+                return null;
+            }
+        }
+
+        protected void onPostExecute(ContentProviderResult[] result) {
+            if (result == null) {
+                callback.onFailure();
+            } else {
+                shoppingList.setId(ContentUris.parseId(result[0].uri));
+                for (int i = 0; i < shoppingList.getItems().size(); i++) {
+                    shoppingList.getItems().get(i).setId(ContentUris.parseId(result[i + 1].uri));
+                }
+                callback.onSuccess(shoppingList);
+            }
+        }
+    }
+
+    /**
+     * Updates row of shopping list (WITHOUT items), must be called on write thread.
+     *
+     * @param contentResolver content resolver
+     * @param shoppingList    object to update
+     * @param lastModified    time of modification
+     * @return number of updated rows
+     */
+    private static int updateShoppingListRow(ContentResolver contentResolver, ShoppingList shoppingList,
+                                             long lastModified) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(ShoppingListsTable.COLUMN_TITLE, shoppingList.getTitle());
+        contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, shoppingList.isArchived());
+        contentValues.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, lastModified);
+
+        return contentResolver.update(
+                ContentUris.withAppendedId(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                        shoppingList.getId()),
+                contentValues,
+                null,
+                null
+        );
+    }
+
+    private static class UpdateShoppingListTask extends DataTask<Integer> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final UpdateCallback<ShoppingList> callback;
+        private final ShoppingList shoppingList;
+        private final long lastModified;
+
+        UpdateShoppingListTask(ContentResolver contentResolver, ShoppingList shoppingList, long lastModified,
+                               UpdateCallback<ShoppingList> callback) {
+            cr = new WeakReference<>(contentResolver);
+            this.shoppingList = shoppingList;
+            this.lastModified = lastModified;
+            this.callback = callback;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            return updateShoppingListRow(mContentResolver, shoppingList, lastModified);
         }
 
         protected void onPostExecute(Integer result) {
-            if (result == 1) {
+            if (result != null && result == 1) {
                 callback.onSuccess(shoppingList);
             } else {
                 callback.onFailure();
@@ -374,7 +1110,7 @@ public class ContentProviderAccess {
         }
     }
 
-    private static class DeleteShoppingListTask extends AsyncTask<Void, Void, Integer> {
+    private static class DeleteShoppingListTask extends DataTask<Integer> {
 
         private final WeakReference<ContentResolver> cr;
         private final DeleteCallback<ShoppingList> callback;
@@ -387,19 +1123,15 @@ public class ContentProviderAccess {
         }
 
         @Override
-        protected Integer doInBackground(Void[] params) {
+        protected Integer doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
-            mContentResolver.delete(
-                    ShoppingListsContentProvider.ITEM_CONTENT_URI,
-                    ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?",
-                    new String[]{shoppingList.getId() + ""}
-            );
 
             return mContentResolver.delete(
-                    ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
-                    ShoppingListsTable.COLUMN_ID + " = ?",
-                    new String[]{shoppingList.getId() + ""}
+                    ContentUris.withAppendedId(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI,
+                            shoppingList.getId()),
+                    null,
+                    null
             );
         }
 
@@ -412,48 +1144,67 @@ public class ContentProviderAccess {
         }
     }
 
-    private static class GetItemsForShoppingList extends AsyncTask<Void, Void, ArrayList<Item>> {
+    private static class GetItemsForShoppingList extends DataTask<ArrayList<Item>> {
 
         private final WeakReference<ContentResolver> cr;
         private final SelectCallback<Item> callback;
+        private final Uri uri;
         private ShoppingList shoppingList;
+        //cache of all items, null for pages or if there is no cache
+        @Nullable
+        private final ShoppingListCache cache;
+        private final int cacheGeneration;
+
+        GetItemsForShoppingList(ContentResolver contentResolver, Uri uri, ShoppingList shoppingList, SelectCallback<Item> callback) {
+            this(contentResolver, uri, shoppingList,
+                    ShoppingListsContentProvider.ITEM_CONTENT_URI.equals(uri) ? ShoppingListCache.peek() : null, callback);
+        }
 
-        GetItemsForShoppingList(ContentResolver contentResolver, ShoppingList shoppingList, SelectCallback<Item> callback) {
+        GetItemsForShoppingList(ContentResolver contentResolver, Uri uri, ShoppingList shoppingList,
+                                @Nullable ShoppingListCache cache, SelectCallback<Item> callback) {
             cr = new WeakReference<>(contentResolver);
+            this.uri = uri;
             this.shoppingList = shoppingList;
             this.callback = callback;
+            this.cache = cache;
+            cacheGeneration = cache == null ? 0 : cache.getGeneration();
         }
 
         @Override
-        protected ArrayList<Item> doInBackground(Void[] params) {
+        protected ArrayList<Item> doInBackground() {
+            long shoppingListId = shoppingList.getId();
+            if (cache != null) {
+                ArrayList<Item> cachedItems = cache.getItems(shoppingListId);
+                if (cachedItems != null) {
+                    return cachedItems;
+                }
+            }
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
-            long shoppingListId = shoppingList.getId();
 
             Cursor cursor = mContentResolver.query(
-                    ShoppingListsContentProvider.ITEM_CONTENT_URI,
-                    new String[]{ItemsTable.COLUMN_ID, ItemsTable.COLUMN_CONTENT,
-                            ItemsTable.COLUMN_CHECKED},
+                    uri,
+                    RowMappers.ITEM.getProjection(),
                     ItemsTable.COLUMN_SHOPPING_LIST_ID + " = ?",
                     new String[]{shoppingListId + ""},
-                    ItemsTable.COLUMN_TIMESTAMP + " DESC"
+                    ItemsTable.COLUMN_TIMESTAMP + " DESC",
+                    getCancellationSignal()
             );
 
             if (cursor == null) {
                 return null;
             }
 
-            ArrayList<Item> result;
-            if (cursor.getCount() == 0) {
-                result = new ArrayList<>();
-            } else {
-                result = new ArrayList<>();
-                while (cursor.moveToNext()) {
-                    result.add(cursorToItem(cursor));
-                }
+            ArrayList<Item> items;
+            try {
+                items = RowMappers.ITEM.mapAll(cursor);
+            } finally {
+                cursor.close();
+            }
+            if (cache != null) {
+                cache.put(shoppingListId, items, cacheGeneration);
             }
-            cursor.close();
-            return result;
+            return items;
         }
 
         protected void onPostExecute(ArrayList<Item> result) {
@@ -463,45 +1214,87 @@ public class ContentProviderAccess {
                 callback.onSuccess(result);
             }
         }
+    }
 
-        /**
-         * Converts Cursor object to Item object.
-         *
-         * @param cursor cursor with active row
-         * @return ready Item object
-         */
-        private Item cursorToItem(Cursor cursor) {
-            Item item = new Item();
-            item.setId(cursor.getLong(cursor.getColumnIndex(ItemsTable.COLUMN_ID)));
-            item.setContent(cursor.getString(cursor.getColumnIndex(ItemsTable.COLUMN_CONTENT)));
-            item.setChecked(cursor.getShort(cursor.getColumnIndex(ItemsTable.COLUMN_CHECKED)) == 1);
-            return item;
+    private static class FindCreatedItemsTask extends DataTask<ArrayList<Item>> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final SelectCallback<Item> callback;
+        private final List<String> clientKeys;
+
+        FindCreatedItemsTask(ContentResolver contentResolver, List<String> clientKeys, SelectCallback<Item> callback) {
+            cr = new WeakReference<>(contentResolver);
+            this.clientKeys = clientKeys;
+            this.callback = callback;
+        }
+
+        @Override
+        protected ArrayList<Item> doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            StringBuilder selection = new StringBuilder(ItemsTable.COLUMN_CLIENT_KEY).append(" IN (");
+            for (int i = 0; i < clientKeys.size(); i++) {
+                selection.append(i == 0 ? "?" : ", ?");
+            }
+            selection.append(")");
+            Cursor cursor = mContentResolver.query(
+                    ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                    RowMappers.CREATED_ITEM.getProjection(),
+                    selection.toString(),
+                    clientKeys.toArray(new String[clientKeys.size()]),
+                    null
+            );
+
+            if (cursor == null) {
+                return null;
+            }
+
+            try {
+                return RowMappers.CREATED_ITEM.mapAll(cursor);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        protected void onPostExecute(ArrayList<Item> result) {
+            if (result == null) {
+                callback.onFailure();
+            } else {
+                callback.onSuccess(result);
+            }
         }
     }
 
-    private static class CreateItemTask extends AsyncTask<Void, Void, Long> {
+    private static class CreateItemTask extends DataTask<Long> {
 
         private final WeakReference<ContentResolver> cr;
         private final CreateCallback<Item> callback;
         private final Item item;
         private final long parentShoppingListId;
+        private final String clientKey;
+        private final long timestamp;
 
-        CreateItemTask(ContentResolver contentResolver, Item item, long parentShoppingListId, CreateCallback<Item> callback) {
+        CreateItemTask(ContentResolver contentResolver, Item item, long parentShoppingListId, String clientKey,
+                       long timestamp, CreateCallback<Item> callback) {
             cr = new WeakReference<>(contentResolver);
             this.callback = callback;
             this.parentShoppingListId = parentShoppingListId;
             this.item = item;
+            this.clientKey = clientKey;
+            this.timestamp = timestamp;
         }
 
         @Override
-        protected Long doInBackground(Void[] params) {
+        protected Long doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
             ContentValues contentValues = new ContentValues();
             contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, parentShoppingListId);
             contentValues.put(ItemsTable.COLUMN_CONTENT, item.getContent());
             contentValues.put(ItemsTable.COLUMN_CHECKED, item.isChecked());
-            contentValues.put(ItemsTable.COLUMN_TIMESTAMP, (new GregorianCalendar()).getTimeInMillis());
+            contentValues.put(ItemsTable.COLUMN_TIMESTAMP, timestamp);
+            contentValues.put(ItemsTable.COLUMN_CLIENT_KEY, clientKey);
+            item.setTimestamp(timestamp);
 
             long id = -1;
             Uri tempUri = mContentResolver.insert(ShoppingListsContentProvider.ITEM_CONTENT_URI,
@@ -509,6 +1302,8 @@ public class ContentProviderAccess {
             if (tempUri != null) {
                 id = Long.parseLong(tempUri.getLastPathSegment());
             }
+            evictFromCache(parentShoppingListId);
+            Logger.event(EVENT_ITEM_CREATE, id, parentShoppingListId, EventLog.NONE);
             return id;
         }
 
@@ -522,7 +1317,68 @@ public class ContentProviderAccess {
         }
     }
 
-    private static class UpdateItemTask extends AsyncTask<Void, Void, Integer> {
+    private static class CreateItemsTask extends DataTask<ContentProviderResult[]> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final CreateCallback<ArrayList<Item>> callback;
+        private final ArrayList<Item> items;
+        private final long parentShoppingListId;
+        private final String[] clientKeys;
+        private final long timestamp;
+
+        CreateItemsTask(ContentResolver contentResolver, ArrayList<Item> items, long parentShoppingListId,
+                        String[] clientKeys, long timestamp, CreateCallback<ArrayList<Item>> callback) {
+            cr = new WeakReference<>(contentResolver);
+            this.callback = callback;
+            this.parentShoppingListId = parentShoppingListId;
+            this.items = items;
+            this.clientKeys = clientKeys;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        protected ContentProviderResult[] doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                Item item = items.get(i);
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, parentShoppingListId);
+                contentValues.put(ItemsTable.COLUMN_CONTENT, item.getContent());
+                contentValues.put(ItemsTable.COLUMN_CHECKED, item.isChecked());
+                contentValues.put(ItemsTable.COLUMN_TIMESTAMP, timestamp);
+                contentValues.put(ItemsTable.COLUMN_CLIENT_KEY, clientKeys[i]);
+                item.setTimestamp(timestamp);
+                operations.add(ContentProviderOperation
+                        .newInsert(ShoppingListsContentProvider.ITEM_CONTENT_URI)
+                        .withValues(contentValues)
+                        .build());
+            }
+
+            try {
+                return mContentResolver.applyBatch(ShoppingListsContentProvider.AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Logger.e(LOG_TAG, "Failed to create items: " + e);
+                return null;
+            } finally {
+                evictFromCache(parentShoppingListId);
+            }
+        }
+
+        protected void onPostExecute(ContentProviderResult[] result) {
+            if (result == null) {
+                callback.onFailure();
+            } else {
+                for (int i = 0; i < items.size(); i++) {
+                    items.get(i).setId(ContentUris.parseId(result[i].uri));
+                }
+                callback.onSuccess(items);
+            }
+        }
+    }
+
+    private static class UpdateItemTask extends DataTask<Integer> {
 
         private final WeakReference<ContentResolver> cr;
         private final UpdateCallback<Item> callback;
@@ -535,18 +1391,21 @@ public class ContentProviderAccess {
         }
 
         @Override
-        protected Integer doInBackground(Void[] params) {
+        protected Integer doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
             ContentValues contentValues = new ContentValues();
             contentValues.put(ItemsTable.COLUMN_CONTENT, item.getContent());
             contentValues.put(ItemsTable.COLUMN_CHECKED, item.isChecked());
 
-            return mContentResolver.update(
-                    ShoppingListsContentProvider.ITEM_CONTENT_URI,
+            int rowsUpdated = mContentResolver.update(
+                    ContentUris.withAppendedId(ShoppingListsContentProvider.ITEM_CONTENT_URI, item.getId()),
                     contentValues,
-                    ItemsTable.COLUMN_ID + " = ?",
-                    new String[]{item.getId() + ""});
+                    null,
+                    null);
+            evictShoppingListsOfItems(item.getId());
+            Logger.event(EVENT_ITEM_UPDATE, item.getId(), rowsUpdated, EventLog.NONE);
+            return rowsUpdated;
         }
 
         protected void onPostExecute(Integer result) {
@@ -558,7 +1417,62 @@ public class ContentProviderAccess {
         }
     }
 
-    private static class DeleteItemTask extends AsyncTask<Void, Void, Integer> {
+    private static class UpdateItemsTask extends DataTask<ContentProviderResult[]> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final UpdateCallback<ArrayList<Item>> callback;
+        private final ArrayList<Item> items;
+
+        UpdateItemsTask(ContentResolver contentResolver, ArrayList<Item> items, UpdateCallback<ArrayList<Item>> callback) {
+            cr = new WeakReference<>(contentResolver);
+            this.callback = callback;
+            this.items = items;
+        }
+
+        @Override
+        protected ContentProviderResult[] doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(items.size());
+            for (Item item : items) {
+                operations.add(ContentProviderOperation
+                        .newUpdate(ContentUris.withAppendedId(ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                                item.getId()))
+                        .withValue(ItemsTable.COLUMN_CONTENT, item.getContent())
+                        .withValue(ItemsTable.COLUMN_CHECKED, item.isChecked())
+                        .withExpectedCount(1)
+                        .build());
+            }
+
+            ContentProviderResult[] results;
+            try {
+                results = mContentResolver.applyBatch(ShoppingListsContentProvider.AUTHORITY, operations);
+            } catch (RemoteException | OperationApplicationException e) {
+                Logger.e(LOG_TAG, "Failed to update items: " + e);
+                return null;
+            }
+            long[] itemIds = new long[items.size()];
+            for (int i = 0; i < itemIds.length; i++) {
+                itemIds[i] = items.get(i).getId();
+            }
+            evictShoppingListsOfItems(itemIds);
+            for (Item item : items) {
+                //batch is applied whole or not at all, every item was updated
+                Logger.event(EVENT_ITEM_UPDATE, item.getId(), 1, EventLog.NONE);
+            }
+            return results;
+        }
+
+        protected void onPostExecute(ContentProviderResult[] result) {
+            if (result == null) {
+                callback.onFailure();
+            } else {
+                callback.onSuccess(items);
+            }
+        }
+    }
+
+    private static class DeleteItemTask extends DataTask<Integer> {
 
         private final WeakReference<ContentResolver> cr;
         private final DeleteCallback<Item> callback;
@@ -571,15 +1485,18 @@ public class ContentProviderAccess {
         }
 
         @Override
-        protected Integer doInBackground(Void[] params) {
+        protected Integer doInBackground() {
             ContentResolver mContentResolver = cr.get();
             if (mContentResolver == null) return null;
 
-            return mContentResolver.delete(
-                    ShoppingListsContentProvider.ITEM_CONTENT_URI,
-                    ItemsTable.COLUMN_ID + " = ?",
-                    new String[]{item.getId() + ""}
+            int rowsDeleted = mContentResolver.delete(
+                    ContentUris.withAppendedId(ShoppingListsContentProvider.ITEM_CONTENT_URI, item.getId()),
+                    null,
+                    null
             );
+            evictShoppingListsOfItems(item.getId());
+            Logger.event(EVENT_ITEM_DELETE, item.getId(), rowsDeleted, EventLog.NONE);
+            return rowsDeleted;
         }
 
         protected void onPostExecute(Integer result) {
@@ -590,4 +1507,182 @@ public class ContentProviderAccess {
             }
         }
     }
+
+    private static class SearchTask extends DataTask<ArrayList<SearchResult>> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final SelectCallback<SearchResult> callback;
+        private final Uri uri;
+
+        SearchTask(ContentResolver contentResolver, Uri uri, SelectCallback<SearchResult> callback) {
+            cr = new WeakReference<>(contentResolver);
+            this.uri = uri;
+            this.callback = callback;
+        }
+
+        @Override
+        protected ArrayList<SearchResult> doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            Cursor cursor = mContentResolver.query(uri, RowMappers.SEARCH_RESULT.getProjection(),
+                    null, null, null, getCancellationSignal());
+
+            if (cursor == null) {
+                return null;
+            }
+
+            try {
+                return RowMappers.SEARCH_RESULT.mapAll(cursor);
+            } finally {
+                cursor.close();
+            }
+        }
+
+        protected void onPostExecute(ArrayList<SearchResult> result) {
+            if (result == null) {
+                callback.onFailure();
+            } else {
+                callback.onSuccess(result);
+            }
+        }
+    }
+
+    /**
+     * Observer translating change uris sent by content provider into calls of ChangeCallback.
+     */
+    private static class ChangeObserver extends ContentObserver {
+
+        private final ChangeCallback callback;
+
+        ChangeObserver(ChangeCallback callback) {
+            super(new Handler(Looper.getMainLooper()));
+            this.callback = callback;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            onChange(selfChange, null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            if (uri == null) {
+                callback.onChange(ChangeCallback.OPERATION_UNKNOWN, null);
+                return;
+            }
+            callback.onChange(parseOperation(uri.getQueryParameter(ShoppingListsContentProvider.PARAM_OPERATION)),
+                    parseIds(uri));
+        }
+
+        private static int parseOperation(String operation) {
+            if (ShoppingListsContentProvider.OPERATION_INSERT.equals(operation)) {
+                return ChangeCallback.OPERATION_INSERT;
+            } else if (ShoppingListsContentProvider.OPERATION_UPDATE.equals(operation)) {
+                return ChangeCallback.OPERATION_UPDATE;
+            } else if (ShoppingListsContentProvider.OPERATION_DELETE.equals(operation)) {
+                return ChangeCallback.OPERATION_DELETE;
+            }
+            return ChangeCallback.OPERATION_UNKNOWN;
+        }
+
+        /**
+         * Reads ids of changed rows from row uri or from ids query parameter.
+         *
+         * @param uri change uri
+         * @return ids, or null if uri doesn't contain them
+         */
+        private static long[] parseIds(Uri uri) {
+            try {
+                String ids = uri.getQueryParameter(ShoppingListsContentProvider.PARAM_IDS);
+                if (ids != null) {
+                    String[] parts = ids.split(",");
+                    long[] result = new long[parts.length];
+                    for (int i = 0; i < parts.length; i++) {
+                        result[i] = Long.parseLong(parts[i]);
+                    }
+                    return result;
+                }
+                if (uri.getPathSegments().size() == 2) {
+                    return new long[]{ContentUris.parseId(uri)};
+                }
+            } catch (NumberFormatException e) {
+                Logger.e(LOG_TAG, "Invalid change uri: " + uri);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Task running one of methods of content provider call().
+     */
+    private abstract static class CallTask extends DataTask<Bundle> {
+
+        private final WeakReference<ContentResolver> cr;
+        private final String method;
+        private final String arg;
+        private final Bundle extras;
+        //shopping list whose items are changed by method, -1 if items of none are
+        private final long changedShoppingListId;
+
+        CallTask(ContentResolver contentResolver, String method, String arg, Bundle extras,
+                 long changedShoppingListId) {
+            cr = new WeakReference<>(contentResolver);
+            this.method = method;
+            this.arg = arg;
+            this.extras = extras;
+            this.changedShoppingListId = changedShoppingListId;
+        }
+
+        @Override
+        protected Bundle doInBackground() {
+            ContentResolver mContentResolver = cr.get();
+            if (mContentResolver == null) return null;
+            try {
+                return mContentResolver.call(ShoppingListsContentProvider.BASE_CONTENT_URI, method, arg, extras);
+            } catch (SQLException | IllegalArgumentException e) {
+                Logger.e(LOG_TAG, "Failed to call " + method + "(" + arg + "): " + e);
+                return null;
+            } finally {
+                if (changedShoppingListId != -1) {
+                    evictFromCache(changedShoppingListId);
+                }
+            }
+        }
+
+        protected void onPostExecute(Bundle result) {
+            if (result == null) {
+                onFailure();
+            } else {
+                onSuccess(result);
+            }
+        }
+
+        abstract void onSuccess(Bundle result);
+
+        abstract void onFailure();
+    }
+
+    /**
+     * Task running method of content provider call(), which returns number of changed rows.
+     */
+    private static class CountCallTask extends CallTask {
+
+        private final UpdateCallback<Integer> callback;
+
+        CountCallTask(ContentResolver contentResolver, String method, String arg, long changedShoppingListId,
+                      UpdateCallback<Integer> callback) {
+            super(contentResolver, method, arg, null, changedShoppingListId);
+            this.callback = callback;
+        }
+
+        @Override
+        void onSuccess(Bundle result) {
+            callback.onSuccess(result.getInt(ShoppingListsContentProvider.RESULT_COUNT));
+        }
+
+        @Override
+        void onFailure() {
+            callback.onFailure();
+        }
+    }
 }
@@ -0,0 +1,228 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Executes operations on database: reads in parallel on bounded thread pool, writes one by one
+ * in order of submitting on single thread, so slow reads never delay writes and vice versa.
+ * Results are delivered on main thread. Measures how many tasks wait in queues and how long.
+ * Separate thread appends to PendingWriteJournal, so journaling is not delayed by writes.
+ * Prefetching runs one task at a time on its own lowest priority thread, so it never takes read
+ * threads nor CPU from operations user waits for.
+ */
+public class DataExecutor {
+
+    private static final String LOG_TAG = DataExecutor.class.getSimpleName();
+
+    private static final int READ_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Tasks waiting in queue longer than this are logged.
+     */
+    private static final long SLOW_WAIT_MILLIS = 100;
+
+    private static DataExecutor sInstance;
+
+    private final ThreadPoolExecutor readExecutor;
+    private final ThreadPoolExecutor writeExecutor;
+    private final ThreadPoolExecutor journalExecutor;
+    private final ThreadPoolExecutor prefetchExecutor;
+    private final Handler mainHandler;
+    private final Metrics readMetrics = new Metrics();
+    private final Metrics writeMetrics = new Metrics();
+    private final Metrics prefetchMetrics = new Metrics();
+
+    public static synchronized DataExecutor getInstance() {
+        if (sInstance == null) {
+            sInstance = new DataExecutor();
+        }
+        return sInstance;
+    }
+
+    private DataExecutor() {
+        readExecutor = new ThreadPoolExecutor(READ_THREADS, READ_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DataThreadFactory("data-read-", Process.THREAD_PRIORITY_BACKGROUND));
+        readExecutor.allowCoreThreadTimeOut(true);
+        writeExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DataThreadFactory("data-write-", Process.THREAD_PRIORITY_BACKGROUND));
+        writeExecutor.allowCoreThreadTimeOut(true);
+        journalExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DataThreadFactory("data-journal-", Process.THREAD_PRIORITY_BACKGROUND));
+        journalExecutor.allowCoreThreadTimeOut(true);
+        prefetchExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DataThreadFactory("data-prefetch-", Process.THREAD_PRIORITY_LOWEST));
+        prefetchExecutor.allowCoreThreadTimeOut(true);
+        mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Runs reading operation on one of read threads.
+     *
+     * @param runnable operation
+     */
+    void executeRead(Runnable runnable) {
+        readExecutor.execute(new MeasuredRunnable(runnable, readMetrics, "read"));
+    }
+
+    /**
+     * Runs writing operation on write thread, after all previously submitted writes.
+     *
+     * @param runnable operation
+     */
+    void executeWrite(Runnable runnable) {
+        writeExecutor.execute(new MeasuredRunnable(runnable, writeMetrics, "write"));
+    }
+
+    /**
+     * Runs reading operation which no one waits for on prefetch thread, after all previously
+     * submitted prefetches.
+     *
+     * @param runnable operation
+     */
+    void executePrefetch(Runnable runnable) {
+        prefetchExecutor.execute(new MeasuredRunnable(runnable, prefetchMetrics, "prefetch"));
+    }
+
+    /**
+     * Runs operation on journal thread, after all previously submitted journal operations.
+     *
+     * @param runnable operation
+     */
+    void executeJournal(Runnable runnable) {
+        journalExecutor.execute(runnable);
+    }
+
+    /**
+     * Runs operation on main thread.
+     *
+     * @param runnable operation
+     */
+    void postToMainThread(Runnable runnable) {
+        mainHandler.post(runnable);
+    }
+
+    public int getReadQueueDepth() {
+        return readExecutor.getQueue().size();
+    }
+
+    public int getWriteQueueDepth() {
+        return writeExecutor.getQueue().size();
+    }
+
+    public Metrics getReadMetrics() {
+        return readMetrics;
+    }
+
+    public Metrics getWriteMetrics() {
+        return writeMetrics;
+    }
+
+    public Metrics getPrefetchMetrics() {
+        return prefetchMetrics;
+    }
+
+    /**
+     * Statistics of time spent by tasks in queue before being started.
+     */
+    public static class Metrics {
+
+        private final AtomicLong tasks = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private void record(long waitNanos) {
+            tasks.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            long max;
+            do {
+                max = maxWaitNanos.get();
+            } while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+        }
+
+        public long getTasksCount() {
+            return tasks.get();
+        }
+
+        public long getAverageWaitMillis() {
+            long count = tasks.get();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count);
+        }
+
+        public long getMaxWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "tasks=" + getTasksCount() +
+                    ", averageWait=" + getAverageWaitMillis() + "ms" +
+                    ", maxWait=" + getMaxWaitMillis() + "ms" +
+                    '}';
+        }
+    }
+
+    /**
+     * Runnable recording time between submitting and starting it.
+     */
+    private static class MeasuredRunnable implements Runnable {
+
+        private final Runnable runnable;
+        private final Metrics metrics;
+        private final String queueName;
+        private final long submittedAt;
+
+        MeasuredRunnable(Runnable runnable, Metrics metrics, String queueName) {
+            this.runnable = runnable;
+            this.metrics = metrics;
+            this.queueName = queueName;
+            this.submittedAt = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            long waitNanos = System.nanoTime() - submittedAt;
+            metrics.record(waitNanos);
+            if (waitNanos > TimeUnit.MILLISECONDS.toNanos(SLOW_WAIT_MILLIS)) {
+                Logger.w(LOG_TAG, "Task waited " + TimeUnit.NANOSECONDS.toMillis(waitNanos)
+                        + "ms in " + queueName + " queue");
+            }
+            runnable.run();
+        }
+    }
+
+    private static class DataThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final int priority;
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        DataThreadFactory(String namePrefix, int priority) {
+            this.namePrefix = namePrefix;
+            this.priority = priority;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(priority);
+                    runnable.run();
+                }
+            }, namePrefix + count.getAndIncrement());
+        }
+    }
+}
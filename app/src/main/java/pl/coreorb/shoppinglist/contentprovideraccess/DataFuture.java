@@ -0,0 +1,395 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import pl.coreorb.shoppinglist.utils.LatencyStats;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Result of operation on database which will be available in future. Futures can be composed:
+ * dependent steps run on background thread right after the step they depend on, so multi-step
+ * operation returns to main thread only once, with its final result. Callbacks are called on main
+ * thread once operation completes, callback added on main thread after that is called immediately.
+ * Future is its own handle: cancelled future never calls its callbacks, but dependent steps still
+ * run, so cancelling future of multi-step write doesn't stop the write, only drops its result.
+ * Futures used by activity or fragment should be bound to it with ContentProviderAccess.bind().
+ *
+ * @param <T> type of result
+ */
+public class DataFuture<T> implements OperationHandle {
+
+    private static final String LOG_TAG = DataFuture.class.getSimpleName();
+
+    /**
+     * Callback receiving result of future on main thread.
+     *
+     * @param <T> type of result
+     */
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure();
+    }
+
+    /**
+     * Step of operation started with result of previous step. Step should only start next
+     * operation (e.g. by method of ContentProviderAccess returning future) and return its future,
+     * it is usually called on background thread, but not always. Step fails by throwing
+     * RuntimeException.
+     *
+     * @param <T> type of result of previous step
+     * @param <R> type of result of this step
+     */
+    public interface Step<T, R> {
+        DataFuture<R> apply(T result);
+    }
+
+    /**
+     * Combines results of two futures, on background thread.
+     *
+     * @param <A> type of result of first future
+     * @param <B> type of result of second future
+     * @param <R> type of combined result
+     */
+    public interface Combiner<A, B, R> {
+        R combine(A first, B second);
+    }
+
+    /**
+     * Operation performed on background thread. Operation fails by throwing RuntimeException.
+     *
+     * @param <T> type of result
+     */
+    interface Operation<T> {
+        T perform();
+    }
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCEEDED = 1;
+    private static final int STATE_FAILED = 2;
+
+    private volatile int state = STATE_PENDING;
+    private volatile boolean cancelled = false;
+    //deliveries of callbacks posted to main thread, which haven't run yet
+    private int pendingDeliveries = 0;
+    private T result;
+    //called on thread completing this future, before callbacks
+    private final ArrayList<Runnable> continuations = new ArrayList<>(1);
+    private final ArrayList<Callback<T>> callbacks = new ArrayList<>(1);
+
+    DataFuture() {
+    }
+
+    /**
+     * @param result result
+     * @return future already completed with provided result
+     */
+    public static <T> DataFuture<T> completed(T result) {
+        DataFuture<T> future = new DataFuture<>();
+        future.succeed(result);
+        return future;
+    }
+
+    /**
+     * Performs operation on read thread pool.
+     *
+     * @param operation reading operation
+     * @return future of result of operation
+     */
+    static <T> DataFuture<T> read(Operation<T> operation) {
+        DataFuture<T> future = new DataFuture<>();
+        DataExecutor.getInstance().executeRead(future.performing(operation, true));
+        return future;
+    }
+
+    /**
+     * Performs operation on write thread, after all previously started writes.
+     *
+     * @param operation writing operation
+     * @return future of result of operation
+     */
+    static <T> DataFuture<T> write(Operation<T> operation) {
+        DataFuture<T> future = new DataFuture<>();
+        DataExecutor.getInstance().executeWrite(future.performing(operation, false));
+        return future;
+    }
+
+    private Runnable performing(final Operation<T> operation, final boolean skipIfCancelled) {
+        final String operationName = LatencyStats.getOperationName(operation.getClass());
+        final long submittedAt = System.nanoTime();
+        return new Runnable() {
+            @Override
+            public void run() {
+                //cancelled read which hasn't started yet is skipped, write must be completed
+                if (skipIfCancelled && cancelled) {
+                    fail();
+                    return;
+                }
+                LatencyStats.recordPhase(operationName, LatencyStats.PHASE_QUEUE, submittedAt);
+                T operationResult;
+                LatencyStats.beginOperation(operationName);
+                try {
+                    operationResult = operation.perform();
+                } catch (RuntimeException e) {
+                    Logger.e(LOG_TAG, "Operation failed: " + e);
+                    fail();
+                    return;
+                } finally {
+                    LatencyStats.endOperation();
+                }
+                succeed(operationResult);
+            }
+        };
+    }
+
+    /**
+     * @return true if operation completed, successfully or not
+     */
+    public synchronized boolean isDone() {
+        return state != STATE_PENDING;
+    }
+
+    /**
+     * Drops all callbacks of this future, also ones already posted to main thread. Operation
+     * itself is completed if it is write or has already started.
+     */
+    @Override
+    public synchronized void cancel() {
+        cancelled = true;
+        callbacks.clear();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true after operation completed and its callbacks were called, or dropped if future
+     * was cancelled
+     */
+    @Override
+    public synchronized boolean isFinished() {
+        return state != STATE_PENDING && (cancelled || pendingDeliveries == 0);
+    }
+
+    /**
+     * Adds callback called on main thread when operation completes.
+     *
+     * @param callback callback to return result to
+     * @return this future
+     */
+    public DataFuture<T> addCallback(final Callback<T> callback) {
+        synchronized (this) {
+            if (cancelled) {
+                return this;
+            }
+            if (state == STATE_PENDING) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            deliver(callback);
+        } else {
+            ArrayList<Callback<T>> toDeliver = new ArrayList<>(1);
+            toDeliver.add(callback);
+            postDelivery(toDeliver);
+        }
+        return this;
+    }
+
+    /**
+     * Starts next step with result of this future, on thread which completed it (or on calling
+     * thread if it has already completed). If this future fails, next step is skipped and returned
+     * future fails too.
+     *
+     * @param step next step
+     * @return future of result of next step
+     */
+    public <R> DataFuture<R> then(final Step<? super T, R> step) {
+        final DataFuture<R> next = new DataFuture<>();
+        addContinuation(new Runnable() {
+            @Override
+            public void run() {
+                if (state == STATE_FAILED) {
+                    next.fail();
+                    return;
+                }
+                DataFuture<R> stepFuture;
+                try {
+                    stepFuture = step.apply(result);
+                } catch (RuntimeException e) {
+                    Logger.e(LOG_TAG, "Step failed: " + e);
+                    next.fail();
+                    return;
+                }
+                stepFuture.forwardTo(next);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Combines results of two futures once both of them succeed, on thread which completed the
+     * later one. Fails as soon as any of them fails.
+     *
+     * @param first    first future
+     * @param second   second future
+     * @param combiner combiner of results
+     * @return future of combined result
+     */
+    public static <A, B, R> DataFuture<R> combine(final DataFuture<A> first, final DataFuture<B> second,
+                                                  final Combiner<? super A, ? super B, R> combiner) {
+        final DataFuture<R> combined = new DataFuture<>();
+        final AtomicInteger remaining = new AtomicInteger(2);
+        Runnable onCompleted = new Runnable() {
+            @Override
+            public void run() {
+                if (first.state == STATE_FAILED || second.state == STATE_FAILED) {
+                    combined.fail();
+                } else if (remaining.decrementAndGet() == 0) {
+                    try {
+                        combined.succeed(combiner.combine(first.result, second.result));
+                    } catch (RuntimeException e) {
+                        Logger.e(LOG_TAG, "Combining failed: " + e);
+                        combined.fail();
+                    }
+                }
+            }
+        };
+        first.addContinuation(onCompleted);
+        second.addContinuation(onCompleted);
+        return combined;
+    }
+
+    /**
+     * Collects results of all futures once all of them succeed, in order of provided futures.
+     * Fails as soon as any of them fails.
+     *
+     * @param futures futures to wait for
+     * @return future of all results
+     */
+    public static <T> DataFuture<ArrayList<T>> allOf(final List<DataFuture<T>> futures) {
+        final DataFuture<ArrayList<T>> all = new DataFuture<>();
+        if (futures.isEmpty()) {
+            all.succeed(new ArrayList<T>());
+            return all;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        for (final DataFuture<T> future : futures) {
+            future.addContinuation(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.state == STATE_FAILED) {
+                        all.fail();
+                    } else if (remaining.decrementAndGet() == 0) {
+                        ArrayList<T> results = new ArrayList<>(futures.size());
+                        for (DataFuture<T> completed : futures) {
+                            results.add(completed.result);
+                        }
+                        all.succeed(results);
+                    }
+                }
+            });
+        }
+        return all;
+    }
+
+    private void forwardTo(final DataFuture<T> target) {
+        addContinuation(new Runnable() {
+            @Override
+            public void run() {
+                if (state == STATE_SUCCEEDED) {
+                    target.succeed(result);
+                } else {
+                    target.fail();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs continuation when this future completes, or right away if it already has.
+     */
+    private void addContinuation(Runnable continuation) {
+        synchronized (this) {
+            if (state == STATE_PENDING) {
+                continuations.add(continuation);
+                return;
+            }
+        }
+        continuation.run();
+    }
+
+    void succeed(T result) {
+        synchronized (this) {
+            if (state != STATE_PENDING) {
+                return;
+            }
+            this.result = result;
+            state = STATE_SUCCEEDED;
+        }
+        complete();
+    }
+
+    void fail() {
+        synchronized (this) {
+            if (state != STATE_PENDING) {
+                return;
+            }
+            state = STATE_FAILED;
+        }
+        complete();
+    }
+
+    private void complete() {
+        //state is not changed anymore, so lists can be read without lock
+        for (Runnable continuation : continuations) {
+            continuation.run();
+        }
+        continuations.clear();
+        ArrayList<Callback<T>> completedCallbacks;
+        //callbacks may be cleared by cancel() meanwhile
+        synchronized (this) {
+            if (callbacks.isEmpty()) {
+                return;
+            }
+            completedCallbacks = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        postDelivery(completedCallbacks);
+    }
+
+    private void postDelivery(final ArrayList<Callback<T>> toDeliver) {
+        synchronized (this) {
+            pendingDeliveries++;
+        }
+        DataExecutor.getInstance().postToMainThread(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback<T> callback : toDeliver) {
+                    deliver(callback);
+                }
+                synchronized (DataFuture.this) {
+                    pendingDeliveries--;
+                }
+            }
+        });
+    }
+
+    private void deliver(Callback<T> callback) {
+        if (cancelled) {
+            return;
+        }
+        if (state == STATE_SUCCEEDED) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import java.util.concurrent.TimeUnit;
+
+import pl.coreorb.shoppinglist.utils.EventLog;
+import pl.coreorb.shoppinglist.utils.LatencyStats;
+import pl.coreorb.shoppinglist.utils.Logger;
+import pl.coreorb.shoppinglist.utils.Tracer;
+
+/**
+ * Operation on database executed by DataExecutor. Like AsyncTask, doInBackground() runs
+ * on background thread and its result is passed to onPostExecute() on main thread.
+ * Task is its own handle: cancelled read is stopped (queries should use getCancellationSignal()),
+ * cancelled write is completed, but in both cases onPostExecute() is not called.
+ *
+ * @param <Result> type of result
+ */
+public abstract class DataTask<Result> implements OperationHandle {
+
+    private static final String LOG_TAG = DataTask.class.getSimpleName();
+
+    private final CancellationSignal cancellationSignal = new CancellationSignal();
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+    private boolean write = false;
+
+    /**
+     * Runs task on read thread pool, in parallel with other reads.
+     *
+     * @return handle of this task
+     */
+    public OperationHandle executeRead() {
+        DataExecutor.getInstance().executeRead(createRunnable());
+        return this;
+    }
+
+    /**
+     * Runs reading task on low priority prefetch thread, after all previously started prefetches.
+     * Use it for reads no one waits for.
+     *
+     * @return handle of this task
+     */
+    public OperationHandle executePrefetch() {
+        DataExecutor.getInstance().executePrefetch(createRunnable());
+        return this;
+    }
+
+    /**
+     * Runs task on write thread, after all previously started writes.
+     *
+     * @return handle of this task
+     */
+    public OperationHandle executeWrite() {
+        write = true;
+        DataExecutor.getInstance().executeWrite(createRunnable());
+        return this;
+    }
+
+    @Override
+    public void cancel() {
+        if (cancelled || finished) {
+            return;
+        }
+        cancelled = true;
+        if (!write) {
+            cancellationSignal.cancel();
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true after doInBackground() returned (or cancelled read was stopped) and result was
+     * delivered or dropped
+     */
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return signal cancelled together with this task, to pass to queries
+     */
+    protected CancellationSignal getCancellationSignal() {
+        return write ? null : cancellationSignal;
+    }
+
+    /**
+     * Performs operation on background thread.
+     *
+     * @return result passed to onPostExecute()
+     */
+    protected abstract Result doInBackground();
+
+    /**
+     * Called on main thread with result of doInBackground().
+     *
+     * @param result result of operation
+     */
+    protected void onPostExecute(Result result) {
+    }
+
+    private Runnable createRunnable() {
+        final String operation = LatencyStats.getOperationName(getClass());
+        final int event = Logger.registerEvent(operation);
+        final long submittedAt = System.nanoTime();
+        return new Runnable() {
+            @Override
+            public void run() {
+                LatencyStats.recordPhase(operation, LatencyStats.PHASE_QUEUE, submittedAt);
+                //cancelled read which hasn't started yet is skipped, write must be completed
+                if (cancelled && !write) {
+                    finished = true;
+                    return;
+                }
+                final Result result;
+                final long startedAt = System.nanoTime();
+                LatencyStats.beginOperation(operation);
+                Tracer.beginSection(operation);
+                try {
+                    result = doInBackground();
+                } catch (OperationCanceledException e) {
+                    Logger.v(LOG_TAG, "Read cancelled: {}", operation);
+                    finished = true;
+                    return;
+                } finally {
+                    Tracer.endSection();
+                    LatencyStats.endOperation();
+                    //time waited in queue and time of running
+                    Logger.event(event, TimeUnit.NANOSECONDS.toMicros(startedAt - submittedAt), EventLog.NONE,
+                            System.nanoTime() - startedAt);
+                }
+                final long postedAt = System.nanoTime();
+                DataExecutor.getInstance().postToMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        finished = true;
+                        if (!cancelled) {
+                            onPostExecute(result);
+                        }
+                        //waiting for main thread and running onPostExecute()
+                        LatencyStats.recordPhase(operation, LatencyStats.PHASE_DELIVERY, postedAt);
+                    }
+                });
+            }
+        };
+    }
+}
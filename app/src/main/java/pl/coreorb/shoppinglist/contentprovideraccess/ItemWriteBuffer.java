@@ -0,0 +1,205 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.utils.EventLog;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Write-behind buffer for updates of items. Updates of the same item made within short window
+ * are merged, so only its last state is written, and all buffered items are written in one
+ * transaction. Must be used on main thread only.
+ */
+class ItemWriteBuffer {
+
+    private static final String LOG_TAG = ItemWriteBuffer.class.getSimpleName();
+
+    /**
+     * Time after first buffered update at which buffer is flushed.
+     */
+    static final long FLUSH_DELAY_MILLIS = 300;
+
+    /**
+     * Number of buffered items at which buffer is flushed immediately.
+     */
+    static final int MAX_PENDING_ITEMS = 100;
+
+    //recorded with number of written items and number of updates merged into them
+    private static final int EVENT_FLUSH = Logger.registerEvent("items.flush");
+
+    private static ItemWriteBuffer sInstance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final LinkedHashMap<Long, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+    //access of last caller, used to write buffered updates
+    private ContentProviderAccess contentProviderAccess;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    static ItemWriteBuffer getInstance() {
+        if (sInstance == null) {
+            sInstance = new ItemWriteBuffer();
+        }
+        return sInstance;
+    }
+
+    private ItemWriteBuffer() {
+    }
+
+    /**
+     * Buffers update of item. Replaces previously buffered update of the same item, callbacks of
+     * both are called when merged update is written.
+     *
+     * @param contentProviderAccess access used to write items
+     * @param item                  item to update
+     * @param callback              callback to return data to
+     * @return handle of this update, cancelling it drops its callback, but update is still written
+     */
+    OperationHandle update(ContentProviderAccess contentProviderAccess, Item item, UpdateCallback<Item> callback) {
+        this.contentProviderAccess = contentProviderAccess;
+        boolean wasEmpty = pendingUpdates.isEmpty();
+        PendingUpdate pendingUpdate = pendingUpdates.get(item.getId());
+        if (pendingUpdate == null) {
+            pendingUpdate = new PendingUpdate();
+            pendingUpdates.put(item.getId(), pendingUpdate);
+        }
+        //copy, so changes made to item after this call are not written in the middle of flush
+        pendingUpdate.state = new Item(item.getId(), item.getContent(), item.isChecked());
+        DeferredUpdate deferredUpdate = new DeferredUpdate(item, callback);
+        pendingUpdate.updates.add(deferredUpdate);
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        if (journal != null) {
+            pendingUpdate.sequences.add(journal.appendUpdate(pendingUpdate.state));
+        }
+
+        if (pendingUpdates.size() >= MAX_PENDING_ITEMS) {
+            flush();
+        } else if (wasEmpty) {
+            handler.postDelayed(flushRunnable, FLUSH_DELAY_MILLIS);
+        }
+        return deferredUpdate;
+    }
+
+    /**
+     * Writes all buffered updates in single transaction. Writes are ordered, so calling this before
+     * other write makes sure it sees buffered updates already applied.
+     */
+    void flush() {
+        handler.removeCallbacks(flushRunnable);
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+        final ArrayList<PendingUpdate> flushed = new ArrayList<>(pendingUpdates.values());
+        ArrayList<Item> items = new ArrayList<>(flushed.size());
+        ArrayList<Long> sequences = new ArrayList<>();
+        int merged = 0;
+        for (PendingUpdate pendingUpdate : flushed) {
+            items.add(pendingUpdate.state);
+            sequences.addAll(pendingUpdate.sequences);
+            merged += pendingUpdate.updates.size();
+        }
+        pendingUpdates.clear();
+        ContentProviderAccess access = contentProviderAccess;
+        contentProviderAccess = null;
+        Logger.d(LOG_TAG, "flush(): writing {} items for {} updates", items.size(), merged);
+        Logger.event(EVENT_FLUSH, items.size(), merged, EventLog.NONE);
+
+        access.writeBufferedItemUpdates(items, new UpdateCallback<ArrayList<Item>>() {
+            @Override
+            public void onSuccess(ArrayList<Item> object) {
+                for (PendingUpdate pendingUpdate : flushed) {
+                    for (DeferredUpdate deferredUpdate : pendingUpdate.updates) {
+                        deferredUpdate.deliver(true);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure() {
+                for (PendingUpdate pendingUpdate : flushed) {
+                    for (DeferredUpdate deferredUpdate : pendingUpdate.updates) {
+                        deferredUpdate.deliver(false);
+                    }
+                }
+            }
+        });
+        //failed updates are rolled back by callbacks, so they are not replayed either
+        PendingWriteJournal journal = PendingWriteJournal.peek();
+        if (journal != null && !sequences.isEmpty()) {
+            long[] done = new long[sequences.size()];
+            for (int i = 0; i < done.length; i++) {
+                done[i] = sequences.get(i);
+            }
+            journal.markDone(done);
+        }
+    }
+
+    /**
+     * Buffered update of single item.
+     */
+    private static class PendingUpdate {
+        Item state;
+        final ArrayList<DeferredUpdate> updates = new ArrayList<>(1);
+        //sequence numbers of updates in PendingWriteJournal
+        final ArrayList<Long> sequences = new ArrayList<>(1);
+    }
+
+    /**
+     * Single call of update(), its own handle. Cancelled update is written, but its callback is
+     * not called.
+     */
+    private static class DeferredUpdate implements OperationHandle {
+
+        private final Item item;
+        private final UpdateCallback<Item> callback;
+        private boolean cancelled = false;
+        private boolean finished = false;
+
+        DeferredUpdate(Item item, UpdateCallback<Item> callback) {
+            this.item = item;
+            this.callback = callback;
+        }
+
+        void deliver(boolean success) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (cancelled) {
+                return;
+            }
+            if (success) {
+                callback.onSuccess(item);
+            } else {
+                callback.onFailure();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!finished) {
+                cancelled = true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+    }
+}
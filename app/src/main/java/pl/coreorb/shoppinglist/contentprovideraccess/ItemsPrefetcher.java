@@ -0,0 +1,128 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Loads in background all items of shopping lists user is likely to open next into
+ * ShoppingListCache, so their details are shown as fully loaded without loading view.
+ * Shopping lists are loaded one by one on low priority prefetch thread, so prefetching never
+ * takes read threads from reads user waits for, and only while all cached items fit into memory
+ * budget. Must be used on main thread only.
+ */
+public class ItemsPrefetcher {
+
+    private static final String LOG_TAG = ItemsPrefetcher.class.getSimpleName();
+
+    /**
+     * Default memory budget in bytes, prefetching stops when cached items (prefetched or not)
+     * take more.
+     */
+    public static final int DEFAULT_MAX_SIZE_BYTES = 256 * 1024;
+
+    //rough memory cost of cached item, used to estimate size of shopping list from its counter
+    private static final int ESTIMATED_ITEM_BYTES = 128;
+
+    private final ContentProviderAccess contentProviderAccess;
+    private final ShoppingListCache cache;
+    private final int maxSizeBytes;
+
+    private final ArrayList<ShoppingList> queue = new ArrayList<>();
+    @Nullable
+    private OperationHandle runningHandle;
+
+    /**
+     * @param contentProviderAccess access used to load items, its cancelAll() stops prefetching
+     * @param cache                 cache to load items into
+     */
+    public ItemsPrefetcher(ContentProviderAccess contentProviderAccess, ShoppingListCache cache) {
+        this(contentProviderAccess, cache, DEFAULT_MAX_SIZE_BYTES);
+    }
+
+    /**
+     * @param contentProviderAccess access used to load items, its cancelAll() stops prefetching
+     * @param cache                 cache to load items into
+     * @param maxSizeBytes          memory budget of all cached items in bytes, above which
+     *                              prefetching stops
+     */
+    public ItemsPrefetcher(ContentProviderAccess contentProviderAccess, ShoppingListCache cache, int maxSizeBytes) {
+        this.contentProviderAccess = contentProviderAccess;
+        this.cache = cache;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Replaces shopping lists waiting for prefetching with provided ones. Shopping lists already
+     * in cache are skipped (without marking them as recently used), as well as ones which don't
+     * fit into what is left of memory budget when their turn comes.
+     *
+     * @param shoppingLists shopping lists to prefetch, most likely to be opened first
+     */
+    public void prefetch(List<ShoppingList> shoppingLists) {
+        queue.clear();
+        for (ShoppingList shoppingList : shoppingLists) {
+            if (!shoppingList.isFullyLoaded() && !cache.contains(shoppingList.getId())) {
+                queue.add(shoppingList);
+            }
+        }
+        Logger.v(LOG_TAG, "prefetch(): {} of {} shopping lists queued", queue.size(), shoppingLists.size());
+        prefetchNext();
+    }
+
+    /**
+     * Drops shopping lists waiting for prefetching. Already running load is finished.
+     */
+    public void stop() {
+        queue.clear();
+    }
+
+    /**
+     * @return true if shopping lists are waiting for prefetching or one is being prefetched
+     */
+    boolean isPrefetching() {
+        return !queue.isEmpty() || isRunning();
+    }
+
+    private boolean isRunning() {
+        //cancelled load never calls back, so next one may start
+        return runningHandle != null && !runningHandle.isFinished() && !runningHandle.isCancelled();
+    }
+
+    private void prefetchNext() {
+        if (isRunning()) {
+            return;
+        }
+        runningHandle = null;
+        ShoppingList shoppingList = null;
+        while (shoppingList == null && !queue.isEmpty()) {
+            ShoppingList next = queue.remove(0);
+            //budget covers everything in cache, also shopping lists prefetched meanwhile
+            if (cache.getSizeBytes() + next.getItemsCount() * ESTIMATED_ITEM_BYTES <= maxSizeBytes) {
+                shoppingList = next;
+            }
+        }
+        if (shoppingList == null) {
+            return;
+        }
+        //loading all items of shopping list puts them into cache
+        runningHandle = contentProviderAccess.prefetchItemsForShoppingList(shoppingList, cache, new SelectCallback<Item>() {
+            @Override
+            public void onSuccess(ArrayList<Item> objects) {
+                runningHandle = null;
+                prefetchNext();
+            }
+
+            @Override
+            public void onFailure() {
+                runningHandle = null;
+                prefetchNext();
+            }
+        });
+    }
+}
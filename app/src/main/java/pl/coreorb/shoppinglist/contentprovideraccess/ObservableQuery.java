@@ -0,0 +1,294 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Query which is run again every time data it depends on changes. New result is compared with
+ * previous one on background thread and subscribers receive it together with changes, so they
+ * can update only changed rows. Changes made in quick succession (e.g. batch of writes) cause
+ * single re-query. Query can be limited to first rows of paged uri, then next pages are read
+ * separately and appended with appendPage(), and re-queries read all rows loaded so far.
+ * Must be used on main thread only.
+ *
+ * @param <T> type of objects in result
+ */
+public class ObservableQuery<T> {
+
+    private static final String LOG_TAG = ObservableQuery.class.getSimpleName();
+
+    /**
+     * Time after last change notification at which query is run again.
+     */
+    static final long DEBOUNCE_MILLIS = 100;
+
+    private final ContentResolver contentResolver;
+    private final Uri observedUri;
+    private final Uri contentUri;
+    private final String selection;
+    private final String[] selectionArgs;
+    private final String sortOrder;
+    private final RowMapper<T> mapper;
+    private final RowComparator<T> comparator;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ArrayList<QueryCallback<T>> callbacks = new ArrayList<>();
+    private final ContentObserver observer = new ContentObserver(handler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            handler.removeCallbacks(requery);
+            handler.postDelayed(requery, DEBOUNCE_MILLIS);
+        }
+    };
+    private final Runnable requery = new Runnable() {
+        @Override
+        public void run() {
+            runQuery();
+        }
+    };
+
+    //maximum number of read rows, 0 if all rows are read
+    private int limit;
+    //last delivered result, null before first one
+    @Nullable
+    private ArrayList<T> result;
+    @Nullable
+    private QueryTask<T> runningTask;
+    //true if data changed while query was running, so its result is already out of date
+    private boolean dirty = false;
+
+    /**
+     * @param contentResolver content resolver
+     * @param observedUri     uri whose changes (including its descendants) cause re-query
+     * @param contentUri      queried uri, must support paging (buildPageUri()) if limit is set
+     * @param selection       selection of query
+     * @param selectionArgs   arguments of selection
+     * @param sortOrder       order of query
+     * @param mapper          mapper of rows, also providing projection
+     * @param comparator      comparator used to find changes between results
+     * @param limit           maximum number of read rows, 0 to read all rows
+     */
+    ObservableQuery(ContentResolver contentResolver, Uri observedUri, Uri contentUri, String selection,
+                    String[] selectionArgs, String sortOrder, RowMapper<T> mapper,
+                    RowComparator<T> comparator, int limit) {
+        this.contentResolver = contentResolver;
+        this.observedUri = observedUri;
+        this.contentUri = contentUri;
+        this.selection = selection;
+        this.selectionArgs = selectionArgs;
+        this.sortOrder = sortOrder;
+        this.mapper = mapper;
+        this.comparator = comparator;
+        this.limit = limit;
+    }
+
+    /**
+     * @return maximum number of read rows (increased by appended pages), 0 if all rows are read
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Subscribes callback to results of query. First subscriber starts observing data. If there
+     * already is result, callback receives it immediately as insertion of all rows.
+     *
+     * @param callback callback to receive results
+     */
+    public void subscribe(QueryCallback<T> callback) {
+        Logger.v(LOG_TAG, "subscribe()");
+        if (callbacks.contains(callback)) {
+            return;
+        }
+        callbacks.add(callback);
+        if (callbacks.size() == 1) {
+            contentResolver.registerContentObserver(observedUri, true, observer);
+            runQuery();
+        } else if (result != null) {
+            callback.onChanged(result, diff(new ArrayList<T>(), result, comparator));
+        }
+    }
+
+    /**
+     * Unsubscribes callback. When last one is unsubscribed, data is no longer observed and running
+     * query is cancelled.
+     *
+     * @param callback callback to unsubscribe
+     */
+    public void unsubscribe(QueryCallback<T> callback) {
+        Logger.v(LOG_TAG, "unsubscribe()");
+        if (!callbacks.remove(callback) || !callbacks.isEmpty()) {
+            return;
+        }
+        contentResolver.unregisterContentObserver(observer);
+        handler.removeCallbacks(requery);
+        if (runningTask != null) {
+            runningTask.cancel();
+            runningTask = null;
+        }
+        dirty = false;
+        //data may change while nobody is subscribed, so next subscriber gets full result
+        result = null;
+    }
+
+    /**
+     * Appends page of rows following last row of current result, which was read separately
+     * (e.g. with keyset paged query), so next re-queries include it. Subscribers aren't notified,
+     * caller shows page itself. Does nothing if there is no result yet.
+     *
+     * @param page rows following current result
+     */
+    public void appendPage(ArrayList<T> page) {
+        Logger.v(LOG_TAG, "appendPage({})", page.size());
+        if (result == null || limit == 0) {
+            return;
+        }
+        result = new ArrayList<>(result);
+        result.addAll(page);
+        limit += page.size();
+        if (runningTask != null) {
+            //its result doesn't contain page, so diff of it would be wrong
+            runningTask.cancel();
+            runningTask = null;
+            runQuery();
+        }
+    }
+
+    private Uri getUri() {
+        return limit == 0 ? contentUri : ShoppingListsContentProvider.buildPageUri(contentUri, limit);
+    }
+
+    private void runQuery() {
+        if (runningTask != null) {
+            dirty = true;
+            return;
+        }
+        runningTask = new QueryTask<>(this, result == null ? new ArrayList<T>() : result);
+        runningTask.executeRead();
+    }
+
+    private void onQueryFinished(@Nullable QueryResult<T> queryResult) {
+        runningTask = null;
+        if (queryResult == null) {
+            for (QueryCallback<T> callback : new ArrayList<>(callbacks)) {
+                callback.onFailure();
+            }
+        } else {
+            result = queryResult.objects;
+            for (QueryCallback<T> callback : new ArrayList<>(callbacks)) {
+                callback.onChanged(queryResult.objects, queryResult.diff);
+            }
+        }
+        if (dirty) {
+            dirty = false;
+            runQuery();
+        }
+    }
+
+    /**
+     * Finds changes between two results.
+     *
+     * @param oldObjects previous result
+     * @param newObjects current result
+     * @param comparator comparator of rows
+     * @return changes turning old result into new one
+     */
+    static <T> DiffUtil.DiffResult diff(final List<T> oldObjects, final List<T> newObjects,
+                                        final RowComparator<T> comparator) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldObjects.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newObjects.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return comparator.areItemsTheSame(oldObjects.get(oldItemPosition), newObjects.get(newItemPosition));
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return comparator.areContentsTheSame(oldObjects.get(oldItemPosition), newObjects.get(newItemPosition));
+            }
+        });
+    }
+
+    private static class QueryResult<T> {
+        final ArrayList<T> objects;
+        final DiffUtil.DiffResult diff;
+
+        QueryResult(ArrayList<T> objects, DiffUtil.DiffResult diff) {
+            this.objects = objects;
+            this.diff = diff;
+        }
+    }
+
+    private static class QueryTask<T> extends DataTask<QueryResult<T>> {
+
+        private final WeakReference<ObservableQuery<T>> query;
+        private final ContentResolver contentResolver;
+        private final Uri uri;
+        private final String selection;
+        private final String[] selectionArgs;
+        private final String sortOrder;
+        private final RowMapper<T> mapper;
+        private final RowComparator<T> comparator;
+        private final ArrayList<T> previous;
+
+        QueryTask(ObservableQuery<T> query, ArrayList<T> previous) {
+            this.query = new WeakReference<>(query);
+            this.contentResolver = query.contentResolver;
+            this.uri = query.getUri();
+            this.selection = query.selection;
+            this.selectionArgs = query.selectionArgs;
+            this.sortOrder = query.sortOrder;
+            this.mapper = query.mapper;
+            this.comparator = query.comparator;
+            this.previous = previous;
+        }
+
+        @Override
+        protected QueryResult<T> doInBackground() {
+            Cursor cursor = contentResolver.query(uri, mapper.getProjection(), selection, selectionArgs,
+                    sortOrder, getCancellationSignal());
+
+            if (cursor == null) {
+                return null;
+            }
+
+            ArrayList<T> objects;
+            try {
+                objects = mapper.mapAll(cursor);
+            } finally {
+                cursor.close();
+            }
+            return new QueryResult<>(objects, diff(previous, objects, comparator));
+        }
+
+        @Override
+        protected void onPostExecute(QueryResult<T> result) {
+            ObservableQuery<T> observableQuery = query.get();
+            if (observableQuery != null) {
+                observableQuery.onQueryFinished(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.arch.lifecycle.Lifecycle;
+import android.arch.lifecycle.LifecycleObserver;
+import android.arch.lifecycle.LifecycleOwner;
+import android.arch.lifecycle.OnLifecycleEvent;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * Group of operations cancelled together, automatically when owner (activity or fragment) is
+ * destroyed. Must be used on main thread only.
+ */
+class OperationGroup implements LifecycleObserver {
+
+    private final ArrayList<OperationHandle> handles = new ArrayList<>();
+    private final Lifecycle lifecycle;
+
+    OperationGroup(LifecycleOwner owner) {
+        lifecycle = owner.getLifecycle();
+        lifecycle.addObserver(this);
+    }
+
+    /**
+     * Adds operation to group. If owner is already destroyed operation is cancelled immediately.
+     *
+     * @param handle handle of operation
+     * @return the same handle
+     */
+    OperationHandle add(OperationHandle handle) {
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            handle.cancel();
+            return handle;
+        }
+        //drop finished and cancelled operations, so group doesn't grow with every call
+        Iterator<OperationHandle> iterator = handles.iterator();
+        while (iterator.hasNext()) {
+            OperationHandle next = iterator.next();
+            if (next.isFinished() || next.isCancelled()) {
+                iterator.remove();
+            }
+        }
+        handles.add(handle);
+        return handle;
+    }
+
+    /**
+     * Cancels all operations of this group.
+     */
+    void cancelAll() {
+        for (OperationHandle handle : handles) {
+            handle.cancel();
+        }
+        handles.clear();
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void onDestroy() {
+        cancelAll();
+        lifecycle.removeObserver(this);
+    }
+}
@@ -0,0 +1,21 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+/**
+ * Handle of operation started by ContentProviderAccess.
+ */
+public interface OperationHandle {
+
+    /**
+     * Cancels operation. Callback of cancelled operation is never called. Running read is stopped,
+     * write is always completed, so data is not lost, only its result is dropped.
+     */
+    void cancel();
+
+    boolean isCancelled();
+
+    /**
+     * @return true if operation completed and its callback was called (or dropped, if operation was
+     * cancelled). Cancelled operation is not finished until it stops running, see isCancelled().
+     */
+    boolean isFinished();
+}
@@ -0,0 +1,534 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+
+import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsContentProvider;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+import pl.coreorb.shoppinglist.utils.EventLog;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Append-only file journal of writes of items and shopping lists which were accepted, but not
+ * applied to database yet (e.g. waiting in ItemWriteBuffer or in queue of write thread). Write is
+ * appended when it is accepted and marked done after it is applied, so writes lost when process is
+ * killed are applied again on next start. Journaled are creation, update and delete of items and
+ * update (title, archiving) and delete of shopping lists. Updates and deletes have the same effect
+ * when applied twice, created items carry client key, so their creation is skipped if it was
+ * already applied. Creation of shopping lists isn't journaled, user waits for it before editing.
+ * Appending only queues record in memory, records are written on journal thread to single open
+ * file, which is synced once for all records written together.
+ */
+public class PendingWriteJournal {
+
+    private static final String LOG_TAG = PendingWriteJournal.class.getSimpleName();
+
+    private static final String FILE_NAME = "pending_writes.journal";
+    private static final String REPLAY_FILE_PREFIX = FILE_NAME + ".";
+
+    private static final byte RECORD_UPDATE_ITEM = 1;
+    private static final byte RECORD_DELETE_ITEM = 2;
+    private static final byte RECORD_DONE = 3;
+    private static final byte RECORD_CREATE_ITEM = 4;
+    private static final byte RECORD_UPDATE_SHOPPING_LIST = 5;
+    private static final byte RECORD_DELETE_SHOPPING_LIST = 6;
+
+    //recorded with number of replayed writes
+    private static final int EVENT_REPLAY = Logger.registerEvent("journal.replay");
+    //recorded with number of records written together and duration including sync
+    private static final int EVENT_SYNC = Logger.registerEvent("journal.sync");
+
+    private static PendingWriteJournal sInstance;
+
+    private final File file;
+    //records appended since last write to file, guarded by this
+    private ArrayList<Record> unwrittenRecords = new ArrayList<>();
+    private long nextSequence = 0;
+
+    //fields below are used only on journal thread
+    @Nullable
+    private FileOutputStream fileOut;
+    @Nullable
+    private DataOutputStream out;
+    //sequence numbers of written writes which are not marked done yet
+    private final HashSet<Long> pendingSequences = new HashSet<>();
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writeRecords();
+        }
+    };
+
+    /**
+     * Creates journal, if it wasn't created yet, and applies writes left by previous processes
+     * before any other write. Should be called when app starts.
+     *
+     * @param context any context, only application context is kept
+     */
+    public static synchronized void init(Context context) {
+        if (sInstance != null) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        File file = new File(appContext.getFilesDir(), FILE_NAME);
+        //journal of previous process is moved aside, so writes of this one can be appended
+        //to empty journal right away
+        if (file.exists() && !file.renameTo(new File(appContext.getFilesDir(),
+                REPLAY_FILE_PREFIX + System.currentTimeMillis()))) {
+            Logger.e(LOG_TAG, "init(): journal of previous process not moved");
+        }
+        sInstance = new PendingWriteJournal(file);
+        new ReplayTask(appContext.getContentResolver(), appContext.getFilesDir()).executeWrite();
+    }
+
+    /**
+     * @return journal if it was already created, null otherwise
+     */
+    @Nullable
+    static synchronized PendingWriteJournal peek() {
+        return sInstance;
+    }
+
+    private PendingWriteJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends creation of item.
+     *
+     * @param clientKey            client key of item, written into its row
+     * @param item                 item to create
+     * @param parentShoppingListId id of shopping list of item
+     * @param timestamp            timestamp of item
+     * @return sequence number of write, to pass to markDone()
+     */
+    long appendCreate(String clientKey, Item item, long parentShoppingListId, long timestamp) {
+        Record record = new Record(RECORD_CREATE_ITEM);
+        record.clientKey = clientKey;
+        record.id = parentShoppingListId;
+        record.content = item.getContent();
+        record.checked = item.isChecked();
+        record.timestamp = timestamp;
+        return append(record);
+    }
+
+    /**
+     * Appends update of item.
+     *
+     * @param item item in state to write
+     * @return sequence number of write, to pass to markDone()
+     */
+    long appendUpdate(Item item) {
+        Record record = new Record(RECORD_UPDATE_ITEM);
+        record.id = item.getId();
+        record.content = item.getContent();
+        record.checked = item.isChecked();
+        return append(record);
+    }
+
+    /**
+     * Appends delete of item.
+     *
+     * @param itemId id of item
+     * @return sequence number of write, to pass to markDone()
+     */
+    long appendDelete(long itemId) {
+        Record record = new Record(RECORD_DELETE_ITEM);
+        record.id = itemId;
+        return append(record);
+    }
+
+    /**
+     * Appends update of shopping list (WITHOUT items).
+     *
+     * @param shoppingList shopping list in state to write
+     * @param lastModified time of modification written with it
+     * @return sequence number of write, to pass to markDone()
+     */
+    long appendUpdateShoppingList(ShoppingList shoppingList, long lastModified) {
+        Record record = new Record(RECORD_UPDATE_SHOPPING_LIST);
+        record.id = shoppingList.getId();
+        record.content = shoppingList.getTitle();
+        record.checked = shoppingList.isArchived();
+        record.timestamp = lastModified;
+        return append(record);
+    }
+
+    /**
+     * Appends delete of shopping list, its items are deleted with it.
+     *
+     * @param shoppingListId id of shopping list
+     * @return sequence number of write, to pass to markDone()
+     */
+    long appendDeleteShoppingList(long shoppingListId) {
+        Record record = new Record(RECORD_DELETE_SHOPPING_LIST);
+        record.id = shoppingListId;
+        return append(record);
+    }
+
+    /**
+     * Marks writes as done, after all writes already submitted to write thread are applied.
+     * Journal is emptied when no writes are pending.
+     *
+     * @param sequences sequence numbers returned by append methods
+     */
+    void markDone(final long... sequences) {
+        DataExecutor.getInstance().executeWrite(new Runnable() {
+            @Override
+            public void run() {
+                for (long sequence : sequences) {
+                    Record record = new Record(RECORD_DONE);
+                    record.sequence = sequence;
+                    append(record);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues record and schedules writing, unless it is already scheduled, so records appended
+     * meanwhile are written and synced together.
+     */
+    private synchronized long append(Record record) {
+        if (record.type != RECORD_DONE) {
+            record.sequence = nextSequence++;
+        }
+        if (unwrittenRecords.isEmpty()) {
+            DataExecutor.getInstance().executeJournal(writeRunnable);
+        }
+        unwrittenRecords.add(record);
+        return record.sequence;
+    }
+
+    /**
+     * Writes queued records and syncs file. When all written writes are done journal is emptied
+     * instead.
+     */
+    private void writeRecords() {
+        ArrayList<Record> records;
+        synchronized (this) {
+            records = unwrittenRecords;
+            unwrittenRecords = new ArrayList<>();
+        }
+        long startNanos = System.nanoTime();
+        for (Record record : records) {
+            if (record.type == RECORD_DONE) {
+                pendingSequences.remove(record.sequence);
+            } else {
+                pendingSequences.add(record.sequence);
+            }
+        }
+        try {
+            if (pendingSequences.isEmpty()) {
+                truncate();
+            } else {
+                DataOutputStream output = getOutput();
+                for (Record record : records) {
+                    record.writeTo(output);
+                }
+                output.flush();
+            }
+            //if process is killed later, writes are replayed only if sync completed
+            if (fileOut != null) {
+                fileOut.getFD().sync();
+            }
+        } catch (IOException e) {
+            Logger.e(LOG_TAG, "writeRecords(): " + e.getMessage());
+            //file is opened again for next records
+            closeOutput();
+        }
+        Logger.event(EVENT_SYNC, records.size(), EventLog.NONE, System.nanoTime() - startNanos);
+    }
+
+    private DataOutputStream getOutput() throws IOException {
+        if (out == null) {
+            fileOut = new FileOutputStream(file, true);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        }
+        return out;
+    }
+
+    private void truncate() throws IOException {
+        if (fileOut != null) {
+            fileOut.getChannel().truncate(0);
+        } else if (file.exists() && !file.delete()) {
+            Logger.e(LOG_TAG, "truncate(): journal not deleted");
+        }
+    }
+
+    private void closeOutput() {
+        closeQuietly(out != null ? out : fileOut);
+        out = null;
+        fileOut = null;
+    }
+
+    /**
+     * Reads writes which are not marked done, in order of appending. Record cut by killing process
+     * in the middle of appending ends reading.
+     *
+     * @return pending writes by sequence number
+     */
+    private static LinkedHashMap<Long, Record> readPending(File file) {
+        LinkedHashMap<Long, Record> pending = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return pending;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            while (true) {
+                Record record = Record.readFrom(in);
+                if (record == null) {
+                    break;
+                }
+                if (record.type == RECORD_DONE) {
+                    pending.remove(record.sequence);
+                } else {
+                    pending.put(record.sequence, record);
+                }
+            }
+        } catch (EOFException e) {
+            //end of journal
+        } catch (IOException e) {
+            Logger.e(LOG_TAG, "readPending(): " + e.getMessage());
+        } finally {
+            closeQuietly(in);
+        }
+        return pending;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Logger.e(LOG_TAG, "close(): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Single record of journal. Id is id of item, or of its shopping list for creation of item.
+     * Shopping list records keep title in content, archived flag in checked and time of last
+     * modification in timestamp.
+     */
+    private static class Record {
+
+        final byte type;
+        long sequence;
+        long id;
+        String clientKey;
+        String content;
+        boolean checked;
+        long timestamp;
+
+        Record(byte type) {
+            this.type = type;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeByte(type);
+            out.writeLong(sequence);
+            switch (type) {
+                case RECORD_CREATE_ITEM:
+                    out.writeUTF(clientKey);
+                    out.writeLong(id);
+                    out.writeUTF(content);
+                    out.writeBoolean(checked);
+                    out.writeLong(timestamp);
+                    break;
+                case RECORD_UPDATE_ITEM:
+                    out.writeLong(id);
+                    out.writeUTF(content);
+                    out.writeBoolean(checked);
+                    break;
+                case RECORD_DELETE_ITEM:
+                case RECORD_DELETE_SHOPPING_LIST:
+                    out.writeLong(id);
+                    break;
+                case RECORD_UPDATE_SHOPPING_LIST:
+                    out.writeLong(id);
+                    out.writeUTF(content);
+                    out.writeBoolean(checked);
+                    out.writeLong(timestamp);
+                    break;
+            }
+        }
+
+        /**
+         * @return read record, or null if record type is unknown
+         * @throws EOFException if journal ends
+         */
+        @Nullable
+        static Record readFrom(DataInputStream in) throws IOException {
+            Record record = new Record(in.readByte());
+            record.sequence = in.readLong();
+            switch (record.type) {
+                case RECORD_CREATE_ITEM:
+                    record.clientKey = in.readUTF();
+                    record.id = in.readLong();
+                    record.content = in.readUTF();
+                    record.checked = in.readBoolean();
+                    record.timestamp = in.readLong();
+                    return record;
+                case RECORD_UPDATE_ITEM:
+                    record.id = in.readLong();
+                    record.content = in.readUTF();
+                    record.checked = in.readBoolean();
+                    return record;
+                case RECORD_DELETE_ITEM:
+                case RECORD_DELETE_SHOPPING_LIST:
+                    record.id = in.readLong();
+                    return record;
+                case RECORD_UPDATE_SHOPPING_LIST:
+                    record.id = in.readLong();
+                    record.content = in.readUTF();
+                    record.checked = in.readBoolean();
+                    record.timestamp = in.readLong();
+                    return record;
+                case RECORD_DONE:
+                    return record;
+                default:
+                    Logger.e(LOG_TAG, "readPending(): unknown record " + record.type);
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Applies writes left in journals by previous processes and deletes them. Writes which fail
+     * (e.g. update of item deleted meanwhile) are dropped.
+     */
+    private static class ReplayTask extends DataTask<Void> {
+
+        private final ContentResolver contentResolver;
+        private final File directory;
+
+        ReplayTask(ContentResolver contentResolver, File directory) {
+            this.contentResolver = contentResolver;
+            this.directory = directory;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            File[] files = directory.listFiles(new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.startsWith(REPLAY_FILE_PREFIX);
+                }
+            });
+            if (files == null) {
+                return null;
+            }
+            //names end with time of moving, so older journals are replayed first
+            Arrays.sort(files);
+            for (File file : files) {
+                ArrayList<Record> pending = new ArrayList<>(readPending(file).values());
+                Logger.i(LOG_TAG, "Replaying {} pending writes", pending.size());
+                Logger.event(EVENT_REPLAY, pending.size(), EventLog.NONE, EventLog.NONE);
+                for (Record record : pending) {
+                    try {
+                        apply(record);
+                    } catch (RuntimeException e) {
+                        Logger.e(LOG_TAG, "Replaying write failed: " + e.getMessage());
+                    }
+                }
+                if (!file.delete()) {
+                    Logger.e(LOG_TAG, "Replayed journal not deleted");
+                }
+            }
+            return null;
+        }
+
+        private void apply(Record record) {
+            ShoppingListCache cache = ShoppingListCache.peek();
+            if (record.type == RECORD_CREATE_ITEM) {
+                if (isCreated(record.clientKey)) {
+                    return;
+                }
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(ItemsTable.COLUMN_SHOPPING_LIST_ID, record.id);
+                contentValues.put(ItemsTable.COLUMN_CONTENT, record.content);
+                contentValues.put(ItemsTable.COLUMN_CHECKED, record.checked);
+                contentValues.put(ItemsTable.COLUMN_TIMESTAMP, record.timestamp);
+                contentValues.put(ItemsTable.COLUMN_CLIENT_KEY, record.clientKey);
+                contentResolver.insert(ShoppingListsContentProvider.ITEM_CONTENT_URI, contentValues);
+                //notifications about inserted items don't evict their shopping list
+                if (cache != null) {
+                    cache.remove(record.id);
+                }
+            } else if (record.type == RECORD_DELETE_ITEM) {
+                contentResolver.delete(
+                        ContentUris.withAppendedId(ShoppingListsContentProvider.ITEM_CONTENT_URI, record.id),
+                        null, null);
+                if (cache != null) {
+                    cache.removeShoppingListsOfItems(record.id);
+                }
+            } else if (record.type == RECORD_UPDATE_SHOPPING_LIST) {
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(ShoppingListsTable.COLUMN_TITLE, record.content);
+                contentValues.put(ShoppingListsTable.COLUMN_ARCHIVED, record.checked);
+                contentValues.put(ShoppingListsTable.COLUMN_LAST_MODIFIED, record.timestamp);
+                contentResolver.update(
+                        ContentUris.withAppendedId(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, record.id),
+                        contentValues, null, null);
+            } else if (record.type == RECORD_DELETE_SHOPPING_LIST) {
+                contentResolver.delete(
+                        ContentUris.withAppendedId(ShoppingListsContentProvider.SHOPPING_LIST_CONTENT_URI, record.id),
+                        null, null);
+            } else {
+                ContentValues contentValues = new ContentValues();
+                contentValues.put(ItemsTable.COLUMN_CONTENT, record.content);
+                contentValues.put(ItemsTable.COLUMN_CHECKED, record.checked);
+                contentResolver.update(
+                        ContentUris.withAppendedId(ShoppingListsContentProvider.ITEM_CONTENT_URI, record.id),
+                        contentValues, null, null);
+                if (cache != null) {
+                    cache.removeShoppingListsOfItems(record.id);
+                }
+            }
+        }
+
+        /**
+         * @return true if item with provided client key exists
+         */
+        private boolean isCreated(String clientKey) {
+            Cursor cursor = contentResolver.query(ShoppingListsContentProvider.ITEM_CONTENT_URI,
+                    new String[]{ItemsTable.COLUMN_ID}, ItemsTable.COLUMN_CLIENT_KEY + " = ?",
+                    new String[]{clientKey}, null);
+            if (cursor == null) {
+                return false;
+            }
+            try {
+                return cursor.getCount() > 0;
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.support.v7.util.DiffUtil;
+
+import java.util.ArrayList;
+
+/**
+ * Callback executed every time result of observed query changes.
+ */
+public interface QueryCallback<T> {
+
+    /**
+     * @param objects current result of query, must not be modified as next changes are computed
+     *                against it
+     * @param diff    changes since previous result, to dispatch to adapter
+     */
+    void onChanged(ArrayList<T> objects, DiffUtil.DiffResult diff);
+
+    void onFailure();
+
+}
@@ -0,0 +1,19 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+/**
+ * Compares objects mapped from rows of two results of the same query.
+ *
+ * @param <T> type of compared objects
+ */
+interface RowComparator<T> {
+
+    /**
+     * @return true if both objects are the same row
+     */
+    boolean areItemsTheSame(T oldItem, T newItem);
+
+    /**
+     * @return true if the same row wasn't changed between results
+     */
+    boolean areContentsTheSame(T oldItem, T newItem);
+}
@@ -0,0 +1,118 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+
+import pl.coreorb.shoppinglist.utils.LatencyStats;
+import pl.coreorb.shoppinglist.utils.Tracer;
+
+/**
+ * Converts rows of cursor into objects. Projection is declared once per query shape and
+ * indices of its columns are resolved once per cursor, not for every row.
+ *
+ * @param <T> type of objects created from rows
+ */
+abstract class RowMapper<T> {
+
+    private final String[] projection;
+
+    RowMapper(String... projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * @return columns to query, mapRow() receives their indices in the same order
+     */
+    String[] getProjection() {
+        return projection;
+    }
+
+    /**
+     * Finds indices of projection columns in cursor. If cursor has exactly projection columns,
+     * they are taken by position, so columns with the same name (like "_id" of joined tables)
+     * are told apart. Otherwise they are found by name, which must occur in cursor exactly once.
+     *
+     * @param cursor cursor to read
+     * @return indices of columns in order of projection
+     * @throws IllegalArgumentException if column is missing in cursor or it has more columns
+     *                                  with its name
+     */
+    int[] resolveColumns(Cursor cursor) {
+        int[] columns = new int[projection.length];
+        boolean sameAsProjection = cursor.getColumnCount() == projection.length;
+        for (int i = 0; i < projection.length && sameAsProjection; i++) {
+            sameAsProjection = columnName(projection[i]).equals(cursor.getColumnName(i));
+            columns[i] = i;
+        }
+        if (!sameAsProjection) {
+            String[] cursorColumns = cursor.getColumnNames();
+            for (int i = 0; i < projection.length; i++) {
+                columns[i] = findSingleColumn(cursorColumns, columnName(projection[i]));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * @param cursorColumns names of columns of cursor
+     * @param column        name of searched column
+     * @return index of column
+     * @throws IllegalArgumentException if there is no column or more columns with provided name,
+     *                                  as value of wrong column would be read
+     */
+    private static int findSingleColumn(String[] cursorColumns, String column) {
+        int index = -1;
+        for (int i = 0; i < cursorColumns.length; i++) {
+            if (column.equals(cursorColumns[i])) {
+                if (index != -1) {
+                    throw new IllegalArgumentException("Column '" + column + "' is ambiguous in cursor");
+                }
+                index = i;
+            }
+        }
+        if (index == -1) {
+            throw new IllegalArgumentException("Column '" + column + "' does not exist in cursor");
+        }
+        return index;
+    }
+
+    /**
+     * Creates object from current row of cursor.
+     *
+     * @param cursor  cursor with active row
+     * @param columns indices of projection columns returned by resolveColumns()
+     * @return ready object
+     */
+    abstract T mapRow(Cursor cursor, int[] columns);
+
+    /**
+     * Creates objects from all remaining rows of cursor.
+     *
+     * @param cursor cursor to read
+     * @return list of objects in order of rows
+     */
+    ArrayList<T> mapAll(Cursor cursor) {
+        long startNanos = System.nanoTime();
+        Tracer.beginSection("RowMapper.mapAll");
+        try {
+            int[] columns = resolveColumns(cursor);
+            ArrayList<T> result = new ArrayList<>(Math.max(cursor.getCount() - cursor.getPosition() - 1, 0));
+            while (cursor.moveToNext()) {
+                result.add(mapRow(cursor, columns));
+            }
+            LatencyStats.recordMapping(startNanos);
+            return result;
+        } finally {
+            Tracer.endSection();
+        }
+    }
+
+    /**
+     * @param column column of projection, optionally prefixed with table name
+     * @return name of column returned by cursor
+     */
+    private static String columnName(String column) {
+        return column.substring(column.lastIndexOf('.') + 1);
+    }
+}
@@ -0,0 +1,208 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+
+import pl.coreorb.shoppinglist.contentprovider.ItemsTable;
+import pl.coreorb.shoppinglist.contentprovider.SearchTable;
+import pl.coreorb.shoppinglist.contentprovider.ShoppingListsTable;
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.pojos.SearchResult;
+import pl.coreorb.shoppinglist.pojos.ShoppingList;
+import pl.coreorb.shoppinglist.utils.LatencyStats;
+import pl.coreorb.shoppinglist.utils.Tracer;
+
+/**
+ * Row mappers of all queries made by ContentProviderAccess.
+ */
+class RowMappers {
+
+    /**
+     * Shopping list (WITHOUT items) with items counters.
+     */
+    static final RowMapper<ShoppingList> SHOPPING_LIST = new RowMapper<ShoppingList>(
+            ShoppingListsTable.COLUMN_ID,
+            ShoppingListsTable.COLUMN_TITLE,
+            ShoppingListsTable.COLUMN_ARCHIVED,
+            ShoppingListsTable.COLUMN_CREATED_AT,
+            ShoppingListsTable.COLUMN_UNCHECKED_COUNT,
+            ShoppingListsTable.COLUMN_TOTAL_COUNT,
+            ShoppingListsTable.COLUMN_LAST_MODIFIED) {
+
+        @Override
+        ShoppingList mapRow(Cursor cursor, int[] columns) {
+            ShoppingList shoppingList = new ShoppingList();
+            shoppingList.setId(cursor.getLong(columns[0]));
+            shoppingList.setTitle(cursor.getString(columns[1]));
+            shoppingList.setArchived(cursor.getShort(columns[2]) == 1);
+            shoppingList.getCreatedAt().setTimeInMillis(cursor.getLong(columns[3]));
+            shoppingList.setUncheckedItemsCount(cursor.getInt(columns[4]));
+            shoppingList.setItemsCount(cursor.getInt(columns[5]));
+            shoppingList.setLastModified(cursor.getLong(columns[6]));
+            return shoppingList;
+        }
+    };
+
+    /**
+     * Shopping list (WITHOUT items) with items counters and summary of unchecked items.
+     */
+    static final RowMapper<ShoppingList> SHOPPING_LIST_SUMMARY = new RowMapper<ShoppingList>(
+            ShoppingListsTable.COLUMN_ID,
+            ShoppingListsTable.COLUMN_TITLE,
+            ShoppingListsTable.COLUMN_ARCHIVED,
+            ShoppingListsTable.COLUMN_CREATED_AT,
+            ShoppingListsTable.COLUMN_UNCHECKED_COUNT,
+            ShoppingListsTable.COLUMN_TOTAL_COUNT,
+            ShoppingListsTable.COLUMN_LAST_MODIFIED,
+            ShoppingListsTable.COLUMN_UNCHECKED_ITEMS_SUMMARY) {
+
+        @Override
+        ShoppingList mapRow(Cursor cursor, int[] columns) {
+            ShoppingList shoppingList = SHOPPING_LIST.mapRow(cursor, columns);
+            //summary is null if there are no unchecked items
+            shoppingList.setUncheckedItemsSummary(cursor.isNull(columns[7]) ? "" : cursor.getString(columns[7]));
+            return shoppingList;
+        }
+    };
+
+    /**
+     * Item of shopping list.
+     */
+    static final RowMapper<Item> ITEM = new RowMapper<Item>(
+            ItemsTable.COLUMN_ID,
+            ItemsTable.COLUMN_CONTENT,
+            ItemsTable.COLUMN_CHECKED,
+            ItemsTable.COLUMN_TIMESTAMP) {
+
+        @Override
+        Item mapRow(Cursor cursor, int[] columns) {
+            Item item = new Item();
+            item.setId(cursor.getLong(columns[0]));
+            item.setContent(cursor.getString(columns[1]));
+            item.setChecked(cursor.getShort(columns[2]) == 1);
+            item.setTimestamp(cursor.getLong(columns[3]));
+            return item;
+        }
+    };
+
+    /**
+     * Item of shopping list with key it was created with.
+     */
+    static final RowMapper<Item> CREATED_ITEM = new RowMapper<Item>(
+            ItemsTable.COLUMN_ID,
+            ItemsTable.COLUMN_CONTENT,
+            ItemsTable.COLUMN_CHECKED,
+            ItemsTable.COLUMN_TIMESTAMP,
+            ItemsTable.COLUMN_CLIENT_KEY) {
+
+        @Override
+        Item mapRow(Cursor cursor, int[] columns) {
+            Item item = ITEM.mapRow(cursor, columns);
+            item.setClientKey(cursor.getString(columns[4]));
+            return item;
+        }
+    };
+
+    /**
+     * Shopping list or item found by search uri.
+     */
+    static final RowMapper<SearchResult> SEARCH_RESULT = new RowMapper<SearchResult>(
+            SearchTable.COLUMN_TYPE,
+            SearchTable.COLUMN_ID,
+            SearchTable.COLUMN_SHOPPING_LIST_ID,
+            SearchTable.COLUMN_TEXT) {
+
+        @Override
+        SearchResult mapRow(Cursor cursor, int[] columns) {
+            SearchResult searchResult = new SearchResult();
+            searchResult.setShoppingList(cursor.getInt(columns[0]) == SearchTable.TYPE_SHOPPING_LIST);
+            searchResult.setId(cursor.getLong(columns[1]));
+            searchResult.setShoppingListId(cursor.getLong(columns[2]));
+            searchResult.setText(cursor.getString(columns[3]));
+            return searchResult;
+        }
+    };
+
+    /**
+     * Shopping list part of row of shopping lists joined with their items, item part is read by
+     * groupShoppingListsWithItems().
+     */
+    static final RowMapper<ShoppingList> SHOPPING_LIST_AND_ITEM = new RowMapper<ShoppingList>(
+            ShoppingListsTable.TABLE_SHOPPING_LISTS + "." + ShoppingListsTable.COLUMN_ID,
+            ShoppingListsTable.COLUMN_TITLE,
+            ShoppingListsTable.COLUMN_CREATED_AT,
+            ItemsTable.TABLE_ITEMS + "." + ItemsTable.COLUMN_ID,
+            ItemsTable.COLUMN_CONTENT) {
+
+        @Override
+        ShoppingList mapRow(Cursor cursor, int[] columns) {
+            ShoppingList shoppingList = new ShoppingList();
+            shoppingList.setId(cursor.getLong(columns[0]));
+            shoppingList.setTitle(cursor.getString(columns[1]));
+            shoppingList.getCreatedAt().setTimeInMillis(cursor.getLong(columns[2]));
+            return shoppingList;
+        }
+    };
+
+    /**
+     * Compares shopping lists mapped by SHOPPING_LIST or SHOPPING_LIST_SUMMARY.
+     */
+    static final RowComparator<ShoppingList> SHOPPING_LIST_COMPARATOR = new RowComparator<ShoppingList>() {
+        @Override
+        public boolean areItemsTheSame(ShoppingList oldItem, ShoppingList newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(ShoppingList oldItem, ShoppingList newItem) {
+            return oldItem.getTitle().equals(newItem.getTitle())
+                    && oldItem.isArchived() == newItem.isArchived()
+                    && oldItem.getUncheckedItemsCount() == newItem.getUncheckedItemsCount()
+                    && oldItem.getItemsCount() == newItem.getItemsCount()
+                    && oldItem.getLastModified() == newItem.getLastModified()
+                    && oldItem.getUncheckedItemsSummary().equals(newItem.getUncheckedItemsSummary());
+        }
+    };
+
+    private RowMappers() {
+    }
+
+    /**
+     * Groups rows of shopping lists joined with their unchecked items into shopping lists, in single
+     * pass over cursor. Rows of every shopping list must be next to each other, so cursor must be
+     * sorted by shopping list.
+     *
+     * @param cursor   cursor with SHOPPING_LIST_AND_ITEM projection
+     * @param archived archived flag of read shopping lists
+     * @return shopping lists with items, in order of cursor
+     */
+    static ArrayList<ShoppingList> groupShoppingListsWithItems(Cursor cursor, boolean archived) {
+        long startNanos = System.nanoTime();
+        Tracer.beginSection("RowMappers.groupShoppingListsWithItems");
+        try {
+            int[] columns = SHOPPING_LIST_AND_ITEM.resolveColumns(cursor);
+            ArrayList<ShoppingList> result = new ArrayList<>();
+            ShoppingList shoppingList = null;
+            while (cursor.moveToNext()) {
+                if (shoppingList == null || shoppingList.getId() != cursor.getLong(columns[0])) {
+                    shoppingList = SHOPPING_LIST_AND_ITEM.mapRow(cursor, columns);
+                    shoppingList.setArchived(archived);
+                    result.add(shoppingList);
+                }
+                //shopping list without unchecked items is joined with nulls
+                if (!cursor.isNull(columns[3])) {
+                    Item item = new Item();
+                    item.setId(cursor.getLong(columns[3]));
+                    item.setContent(cursor.getString(columns[4]));
+                    item.setChecked(false);
+                    shoppingList.addItem(item);
+                }
+            }
+            LatencyStats.recordMapping(startNanos);
+            return result;
+        } finally {
+            Tracer.endSection();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package pl.coreorb.shoppinglist.contentprovideraccess;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import pl.coreorb.shoppinglist.pojos.Item;
+import pl.coreorb.shoppinglist.utils.Logger;
+
+/**
+ * Process-wide cache of items of fully loaded shopping lists, keyed by id of shopping list, so
+ * opening already seen shopping list doesn't need database. Least recently used shopping lists
+ * are evicted when cache exceeds its memory budget, changed ones are evicted by write tasks of
+ * ContentProviderAccess right after write (so no read after write sees old items) and on
+ * notifications from content provider about other changes, and all of them when system is low
+ * on memory.
+ * Cache keeps own copies of items, so changes of returned objects never leak into it.
+ */
+public class ShoppingListCache implements ComponentCallbacks2 {
+
+    private static final String LOG_TAG = ShoppingListCache.class.getSimpleName();
+
+    /**
+     * Default memory budget of cache in bytes.
+     */
+    public static final int DEFAULT_MAX_SIZE_BYTES = 1024 * 1024;
+
+    //rough memory cost of objects, used to keep cache within its budget
+    private static final int SHOPPING_LIST_OVERHEAD_BYTES = 64;
+    private static final int ITEM_OVERHEAD_BYTES = 96;
+
+    private static ShoppingListCache sInstance;
+
+    @Nullable
+    private ContentProviderAccess contentProviderAccess;
+    private LruCache<Long, ArrayList<Item>> cache;
+    //ids of cached shopping lists, to check them without changing order of eviction
+    private final HashSet<Long> shoppingListIds = new HashSet<>();
+    //id of shopping list of every cached item, to find shopping lists changed items belong to
+    private final HashMap<Long, Long> shoppingListIdsOfItems = new HashMap<>();
+    //incremented on every invalidation, so data read before it is not put into cache after it
+    private int generation = 0;
+
+    /**
+     * Returns cache, creating it on first call. Must be called on main thread.
+     *
+     * @param context any context, only application context is kept
+     * @return process-wide cache
+     */
+    public static synchronized ShoppingListCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ShoppingListCache(DEFAULT_MAX_SIZE_BYTES);
+            sInstance.listenForChanges(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return cache if it was already created, null otherwise
+     */
+    @Nullable
+    static synchronized ShoppingListCache peek() {
+        return sInstance;
+    }
+
+    /**
+     * Creates cache, which is not the process-wide one and which doesn't listen for changes in
+     * content provider nor for low memory, e.g. for tests.
+     *
+     * @param maxSizeBytes memory budget in bytes
+     */
+    ShoppingListCache(int maxSizeBytes) {
+        cache = createLruCache(maxSizeBytes);
+    }
+
+    private void listenForChanges(Context context) {
+        context.registerComponentCallbacks(this);
+        contentProviderAccess = new ContentProviderAccess(context.getContentResolver());
+        contentProviderAccess.registerShoppingListsChangeCallback(new ChangeCallback() {
+            @Override
+            public void onChange(int operation, @Nullable long[] ids) {
+                if (operation == OPERATION_INSERT) {
+                    return;
+                }
+                if (ids == null) {
+                    clear();
+                } else {
+                    for (long id : ids) {
+                        remove(id);
+                    }
+                }
+            }
+        });
+        contentProviderAccess.registerItemsChangeCallback(new ChangeCallback() {
+            @Override
+            public void onChange(int operation, @Nullable long[] ids) {
+                //items are inserted only into new shopping lists or by createItem(s), which evicts
+                //their shopping list itself after insert
+                if (operation == OPERATION_INSERT) {
+                    return;
+                }
+                if (ids == null) {
+                    clear();
+                } else {
+                    removeShoppingListsOfItems(ids);
+                }
+            }
+        });
+    }
+
+    private LruCache<Long, ArrayList<Item>> createLruCache(int maxSizeBytes) {
+        return new LruCache<Long, ArrayList<Item>>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(Long key, ArrayList<Item> value) {
+                int size = SHOPPING_LIST_OVERHEAD_BYTES;
+                for (Item item : value) {
+                    size += ITEM_OVERHEAD_BYTES + (item.getContent() == null ? 0 : item.getContent().length() * 2);
+                }
+                return size;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, ArrayList<Item> oldValue, ArrayList<Item> newValue) {
+                if (newValue == null) {
+                    shoppingListIds.remove(key);
+                }
+                for (Item item : oldValue) {
+                    Long shoppingListId = shoppingListIdsOfItems.get(item.getId());
+                    if (key.equals(shoppingListId)) {
+                        shoppingListIdsOfItems.remove(item.getId());
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Changes memory budget of cache, evicting all shopping lists.
+     *
+     * @param maxSizeBytes new budget in bytes
+     */
+    public synchronized void setMaxSizeBytes(int maxSizeBytes) {
+        Logger.v(LOG_TAG, "setMaxSizeBytes({})", maxSizeBytes);
+        clear();
+        cache = createLruCache(maxSizeBytes);
+    }
+
+    /**
+     * Returns copy of cached items of shopping list.
+     *
+     * @param shoppingListId id of shopping list
+     * @return all items of shopping list, or null if they are not cached
+     */
+    @Nullable
+    public synchronized ArrayList<Item> getItems(long shoppingListId) {
+        ArrayList<Item> items = cache.get(shoppingListId);
+        return items == null ? null : copy(items);
+    }
+
+    /**
+     * Checks if shopping list is cached, without marking it as recently used.
+     *
+     * @param shoppingListId id of shopping list
+     * @return true if all items of shopping list are cached
+     */
+    public synchronized boolean contains(long shoppingListId) {
+        return shoppingListIds.contains(shoppingListId);
+    }
+
+    /**
+     * @return estimated memory taken by all cached items in bytes
+     */
+    public synchronized int getSizeBytes() {
+        return cache.size();
+    }
+
+    /**
+     * @return current generation, to pass to put() together with data read after this call
+     */
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Puts copy of all items of shopping list into cache, unless cache was invalidated since they
+     * were read.
+     *
+     * @param shoppingListId id of shopping list
+     * @param items          all items of shopping list
+     * @param generation     generation returned by getGeneration() before items were read
+     */
+    public synchronized void put(long shoppingListId, ArrayList<Item> items, int generation) {
+        if (shoppingListId == -1 || generation != this.generation) {
+            return;
+        }
+        ArrayList<Item> copy = copy(items);
+        shoppingListIds.add(shoppingListId);
+        cache.put(shoppingListId, copy);
+        //put may have evicted this shopping list immediately if it exceeds whole budget
+        if (shoppingListIds.contains(shoppingListId)) {
+            for (Item item : copy) {
+                shoppingListIdsOfItems.put(item.getId(), shoppingListId);
+            }
+        }
+    }
+
+    /**
+     * Evicts shopping list from cache.
+     *
+     * @param shoppingListId id of shopping list
+     */
+    public synchronized void remove(long shoppingListId) {
+        generation++;
+        cache.remove(shoppingListId);
+    }
+
+    /**
+     * Evicts all shopping lists from cache.
+     */
+    public synchronized void clear() {
+        generation++;
+        cache.evictAll();
+        shoppingListIdsOfItems.clear();
+    }
+
+    /**
+     * Evicts shopping lists which cached items belong to.
+     *
+     * @param itemIds ids of items
+     */
+    synchronized void removeShoppingListsOfItems(long... itemIds) {
+        generation++;
+        for (long itemId : itemIds) {
+            Long shoppingListId = shoppingListIdsOfItems.get(itemId);
+            if (shoppingListId != null) {
+                cache.remove(shoppingListId);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        Logger.v(LOG_TAG, "onTrimMemory({})", level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            cache.evictAll();
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private static ArrayList<Item> copy(ArrayList<Item> items) {
+        ArrayList<Item> copy = new ArrayList<>(items.size());
+        for (Item item : items) {
+            Item itemCopy = new Item(item.getId(), item.getContent(), item.isChecked());
+            itemCopy.setTimestamp(item.getTimestamp());
+            copy.add(itemCopy);
+        }
+        return copy;
+    }
+}
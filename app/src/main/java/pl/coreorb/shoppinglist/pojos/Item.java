@@ -11,17 +11,29 @@ public class Item implements Parcelable {
     private long id;
     private String content;
     private boolean checked;
+    /**
+     * Time of creation in milliseconds, used to sort items and to read next pages of them.
+     */
+    private long timestamp;
+    /**
+     * Key written together with item when it is created, so item can be found in database before
+     * its id is known (e.g. after activity was recreated while item was being written).
+     */
+    private String clientKey;
 
     public Item() {
         id = -1;
         content = "";
         checked = false;
+        timestamp = 0;
     }
 
     private Item(Parcel in) {
         id = in.readLong();
         content = in.readString();
         checked = in.readByte() != 0;
+        timestamp = in.readLong();
+        clientKey = in.readString();
     }
 
     public Item(long id, String content, boolean checked) {
@@ -54,6 +66,22 @@ public class Item implements Parcelable {
         this.checked = checked;
     }
 
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getClientKey() {
+        return clientKey;
+    }
+
+    public void setClientKey(String clientKey) {
+        this.clientKey = clientKey;
+    }
+
     @Override
     public int describeContents() {
         return 0;
@@ -64,6 +92,8 @@ public class Item implements Parcelable {
         dest.writeLong(id);
         dest.writeString(content);
         dest.writeByte((byte) (checked ? 1 : 0));
+        dest.writeLong(timestamp);
+        dest.writeString(clientKey);
     }
 
     static final Creator<Item> CREATOR = new Creator<Item>() {
@@ -100,6 +130,7 @@ public class Item implements Parcelable {
                 "id=" + id +
                 ", content='" + content + '\'' +
                 ", checked=" + checked +
+                ", timestamp=" + timestamp +
                 '}';
     }
 }
@@ -0,0 +1,74 @@
+package pl.coreorb.shoppinglist.pojos;
+
+/**
+ * POJO class for storing single result of search - shopping list with matching title
+ * or item with matching content.
+ */
+public class SearchResult {
+
+    private boolean shoppingList;
+    private long id;
+    private long shoppingListId;
+    private String text;
+
+    public SearchResult() {
+        shoppingList = false;
+        id = -1;
+        shoppingListId = -1;
+        text = "";
+    }
+
+    /**
+     * @return true if result is shopping list, false if it is item
+     */
+    public boolean isShoppingList() {
+        return shoppingList;
+    }
+
+    public void setShoppingList(boolean shoppingList) {
+        this.shoppingList = shoppingList;
+    }
+
+    /**
+     * @return id of shopping list or item
+     */
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * @return id of shopping list, or of shopping list containing item
+     */
+    public long getShoppingListId() {
+        return shoppingListId;
+    }
+
+    public void setShoppingListId(long shoppingListId) {
+        this.shoppingListId = shoppingListId;
+    }
+
+    /**
+     * @return title of shopping list or content of item
+     */
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "shoppingList=" + shoppingList +
+                ", id=" + id +
+                ", shoppingListId=" + shoppingListId +
+                ", text='" + text + '\'' +
+                '}';
+    }
+}
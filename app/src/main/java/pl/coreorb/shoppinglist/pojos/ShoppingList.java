@@ -20,6 +20,17 @@ public class ShoppingList implements Parcelable {
     private Calendar createdAt;
     private ArrayList<Item> items;
 
+    /**
+     * Summary of unchecked items and counters read from database, used when items are not loaded.
+     */
+    private String uncheckedItemsSummary;
+    private int uncheckedItemsCount;
+    private int itemsCount;
+    /**
+     * Time of last change of shopping list or its items in milliseconds.
+     */
+    private long lastModified;
+
     /**
      * Additional flag telling if ShoppingList and its Items have been fully loaded from database.
      */
@@ -31,6 +42,10 @@ public class ShoppingList implements Parcelable {
         archived = false;
         createdAt = new GregorianCalendar();
         items = new ArrayList<>();
+        uncheckedItemsSummary = "";
+        uncheckedItemsCount = 0;
+        itemsCount = 0;
+        lastModified = 0;
         fullyLoaded = false;
     }
 
@@ -41,6 +56,7 @@ public class ShoppingList implements Parcelable {
         this.archived = archived;
         this.createdAt = createdAt;
         this.items = items;
+        this.uncheckedItemsSummary = "";
         this.fullyLoaded = fullyLoaded;
     }
 
@@ -52,6 +68,10 @@ public class ShoppingList implements Parcelable {
         createdAt.setTimeInMillis(in.readLong());
         items = new ArrayList<>();
         in.readTypedList(items, Item.CREATOR);
+        uncheckedItemsSummary = in.readString();
+        uncheckedItemsCount = in.readInt();
+        itemsCount = in.readInt();
+        lastModified = in.readLong();
         fullyLoaded = in.readByte() != 0;
     }
 
@@ -118,6 +138,42 @@ public class ShoppingList implements Parcelable {
         this.items = items;
     }
 
+    /**
+     * Gets summary of unchecked items read from database (it may be shortened).
+     * @return summary of unchecked items
+     */
+    public String getUncheckedItemsSummary() {
+        return uncheckedItemsSummary;
+    }
+
+    public void setUncheckedItemsSummary(String uncheckedItemsSummary) {
+        this.uncheckedItemsSummary = uncheckedItemsSummary;
+    }
+
+    public int getUncheckedItemsCount() {
+        return uncheckedItemsCount;
+    }
+
+    public void setUncheckedItemsCount(int uncheckedItemsCount) {
+        this.uncheckedItemsCount = uncheckedItemsCount;
+    }
+
+    public int getItemsCount() {
+        return itemsCount;
+    }
+
+    public void setItemsCount(int itemsCount) {
+        this.itemsCount = itemsCount;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
     /**
      * Gets additional flag telling if ShoppingList and its Items have been fully loaded from database.
      * @return true if object is fully loaded, false otherwise
@@ -163,6 +219,10 @@ public class ShoppingList implements Parcelable {
         dest.writeByte((byte) (archived ? 1 : 0));
         dest.writeLong(createdAt.getTimeInMillis());
         dest.writeTypedList(items);
+        dest.writeString(uncheckedItemsSummary);
+        dest.writeInt(uncheckedItemsCount);
+        dest.writeInt(itemsCount);
+        dest.writeLong(lastModified);
         dest.writeByte((byte) (fullyLoaded ? 1 : 0));
     }
 
@@ -0,0 +1,154 @@
+package pl.coreorb.shoppinglist.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide, fixed-size ring buffer of structured diagnostic events, recorded also in release
+ * builds, where logcat output is off. Event is name of what happened (registered once, so it is
+ * stored as number), two values (like ids or counts) and duration. Newest events overwrite
+ * oldest ones.
+ * Recording is lock-free and doesn't allocate: writer claims slot by incrementing sequence and
+ * publishes it after writing fields, reader skips slots being written or overwritten while read.
+ */
+public class EventLog {
+
+    /**
+     * Value of event field which doesn't apply.
+     */
+    public static final long NONE = -1;
+
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+
+    private static final int FIELD_TIME = 0;
+    private static final int FIELD_NAME = 1;
+    private static final int FIELD_VALUE1 = 2;
+    private static final int FIELD_VALUE2 = 3;
+    private static final int FIELD_DURATION = 4;
+    private static final int FIELDS = 5;
+
+    //slot is being written
+    private static final long WRITING = -1;
+
+    private static final AtomicLong nextSequence = new AtomicLong();
+    //sequence number of event in every slot, WRITING or -2 if slot is empty
+    private static final AtomicLongArray sequences = createSequences();
+    private static final AtomicLongArray fields = new AtomicLongArray(CAPACITY * FIELDS);
+
+    private static final ConcurrentHashMap<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private static final ArrayList<String> names = new ArrayList<>();
+
+    private EventLog() {
+    }
+
+    private static AtomicLongArray createSequences() {
+        AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, -2);
+        }
+        return sequences;
+    }
+
+    /**
+     * Returns id of event name, registering name on first call. Later calls with the same name
+     * don't allocate, still callers recording often should keep id in constant.
+     *
+     * @param name name of event
+     * @return id to pass to record()
+     */
+    public static int registerName(String name) {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            id = nameIds.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                nameIds.put(name, id);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Records event.
+     *
+     * @param name          id returned by registerName()
+     * @param value1        first value, like id of changed row, or NONE
+     * @param value2        second value, like number of changed rows, or NONE
+     * @param durationNanos duration of operation, or NONE
+     */
+    public static void record(int name, long value1, long value2, long durationNanos) {
+        long sequence = nextSequence.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+        int offset = slot * FIELDS;
+        sequences.set(slot, WRITING);
+        //ordered writes, fields can't become visible before slot is marked as being written
+        fields.lazySet(offset + FIELD_TIME, System.currentTimeMillis());
+        fields.lazySet(offset + FIELD_NAME, name);
+        fields.lazySet(offset + FIELD_VALUE1, value1);
+        fields.lazySet(offset + FIELD_VALUE2, value2);
+        fields.lazySet(offset + FIELD_DURATION, durationNanos);
+        sequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * Writes all events currently in buffer, oldest first, one per line: time, name, values
+     * and duration in microseconds, separated with tabs. Events recorded meanwhile may be
+     * skipped.
+     *
+     * @param writer writer to write to
+     * @return number of written events
+     * @throws IOException if writing fails
+     */
+    public static int dump(Writer writer) throws IOException {
+        SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        long last = nextSequence.get() - 1;
+        long first = Math.max(0, last - MASK);
+        int written = 0;
+        writer.write("time\tevent\tvalue1\tvalue2\tduration_us\n");
+        for (long sequence = first; sequence <= last; sequence++) {
+            int slot = (int) (sequence & MASK);
+            int offset = slot * FIELDS;
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            long time = fields.get(offset + FIELD_TIME);
+            int name = (int) fields.get(offset + FIELD_NAME);
+            long value1 = fields.get(offset + FIELD_VALUE1);
+            long value2 = fields.get(offset + FIELD_VALUE2);
+            long duration = fields.get(offset + FIELD_DURATION);
+            //slot was overwritten while being read
+            if (sequences.get(slot) != sequence) {
+                continue;
+            }
+            writer.write(timeFormat.format(new Date(time)) + '\t' + getName(name) + '\t'
+                    + format(value1) + '\t' + format(value2) + '\t'
+                    + (duration == NONE ? "" : String.valueOf(TimeUnit.NANOSECONDS.toMicros(duration)))
+                    + '\n');
+            written++;
+        }
+        return written;
+    }
+
+    private static String getName(int id) {
+        synchronized (names) {
+            return id >= 0 && id < names.size() ? names.get(id) : "unknown";
+        }
+    }
+
+    private static String format(long value) {
+        return value == NONE ? "" : String.valueOf(value);
+    }
+}
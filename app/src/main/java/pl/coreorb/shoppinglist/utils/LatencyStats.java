@@ -0,0 +1,320 @@
+package pl.coreorb.shoppinglist.utils;
+
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide latency histograms of data access layer. Operations (tasks run by DataExecutor)
+ * record time of every phase: waiting in queue, querying (or writing) content provider, mapping
+ * cursors into objects and delivering result to main thread. Content provider additionally
+ * records time of every call per method and uri, whichever operation made it.
+ * Recording is lock-free, so it can stay enabled in release builds.
+ */
+public class LatencyStats {
+
+    public static final int PHASE_QUEUE = 0;
+    public static final int PHASE_QUERY = 1;
+    public static final int PHASE_MAPPING = 2;
+    public static final int PHASE_DELIVERY = 3;
+    private static final String[] PHASE_NAMES = {"queue", "query", "mapping", "delivery"};
+
+    private static final ConcurrentHashMap<String, Histogram[]> operations = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> uris = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<Class<?>, String> operationNames = new ConcurrentHashMap<>();
+
+    //name of operation running on current thread, provider calls and mapping are recorded for it
+    private static final ThreadLocal<String> currentOperation = new ThreadLocal<>();
+
+    private LatencyStats() {
+    }
+
+    /**
+     * @param operationClass class of task or operation
+     * @return name under which operation is recorded, for anonymous classes name of method
+     * creating them
+     */
+    public static String getOperationName(Class<?> operationClass) {
+        String name = operationNames.get(operationClass);
+        if (name == null) {
+            name = operationClass.getSimpleName();
+            if (name.isEmpty()) {
+                String enclosing = operationClass.getEnclosingClass() == null ? ""
+                        : operationClass.getEnclosingClass().getSimpleName();
+                name = operationClass.getEnclosingMethod() == null ? operationClass.getName()
+                        : enclosing + "." + operationClass.getEnclosingMethod().getName();
+            }
+            operationNames.put(operationClass, name);
+        }
+        return name;
+    }
+
+    /**
+     * Sets operation running on current thread, until endOperation() is called.
+     *
+     * @param operation name returned by getOperationName()
+     */
+    public static void beginOperation(String operation) {
+        currentOperation.set(operation);
+    }
+
+    public static void endOperation() {
+        currentOperation.remove();
+    }
+
+    /**
+     * Records phase of operation which started at provided time and ends now.
+     *
+     * @param operation  name returned by getOperationName()
+     * @param phase      one of PHASE_*
+     * @param startNanos result of System.nanoTime() when phase started
+     */
+    public static void recordPhase(String operation, int phase, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Histogram[] histograms = operations.get(operation);
+        if (histograms == null) {
+            histograms = new Histogram[PHASE_NAMES.length];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+            Histogram[] existing = operations.putIfAbsent(operation, histograms);
+            if (existing != null) {
+                histograms = existing;
+            }
+        }
+        histograms[phase].record(nanos);
+    }
+
+    /**
+     * Records mapping of cursor by operation running on current thread, if any.
+     *
+     * @param startNanos result of System.nanoTime() when mapping started
+     */
+    public static void recordMapping(long startNanos) {
+        String operation = currentOperation.get();
+        if (operation != null) {
+            recordPhase(operation, PHASE_MAPPING, startNanos);
+        }
+    }
+
+    /**
+     * Records call of content provider, per method and uri and as query phase of operation
+     * running on current thread, if any.
+     *
+     * @param method     name of method, like "query" or "update"
+     * @param uri        called uri, ids in its path are recorded together
+     * @param startNanos result of System.nanoTime() when call started
+     */
+    public static void recordProviderCall(String method, @Nullable Uri uri, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        String key = uri == null ? method : method + " " + getPathPattern(uri);
+        Histogram histogram = uris.get(key);
+        if (histogram == null) {
+            histogram = new Histogram();
+            Histogram existing = uris.putIfAbsent(key, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        histogram.record(nanos);
+        String operation = currentOperation.get();
+        if (operation != null) {
+            recordPhase(operation, PHASE_QUERY, startNanos);
+        }
+    }
+
+    /**
+     * @param uri uri
+     * @return path of uri with numeric segments replaced by "#", like in UriMatcher
+     */
+    private static String getPathPattern(Uri uri) {
+        StringBuilder pattern = new StringBuilder();
+        for (String segment : uri.getPathSegments()) {
+            pattern.append('/').append(TextUtils.isDigitsOnly(segment) ? "#" : segment);
+        }
+        return pattern.toString();
+    }
+
+    /**
+     * Removes all recorded latencies.
+     */
+    public static void reset() {
+        operations.clear();
+        uris.clear();
+    }
+
+    /**
+     * @return summaries of all recorded histograms, operations first, each group sorted by key
+     */
+    public static List<Summary> getSummaries() {
+        ArrayList<Summary> summaries = new ArrayList<>();
+        ArrayList<String> operationKeys = new ArrayList<>(operations.keySet());
+        Collections.sort(operationKeys);
+        for (String operation : operationKeys) {
+            Histogram[] histograms = operations.get(operation);
+            if (histograms == null) {
+                //removed by reset() meanwhile
+                continue;
+            }
+            for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+                if (histograms[phase].getCount() > 0) {
+                    summaries.add(new Summary(operation, PHASE_NAMES[phase], histograms[phase]));
+                }
+            }
+        }
+        ArrayList<String> uriKeys = new ArrayList<>(uris.keySet());
+        Collections.sort(uriKeys);
+        for (String uri : uriKeys) {
+            Histogram histogram = uris.get(uri);
+            if (histogram != null) {
+                summaries.add(new Summary(uri, "provider", histogram));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * @return all summaries as CSV with header, latencies in microseconds
+     */
+    public static String toCsv() {
+        StringBuilder csv = new StringBuilder("key,phase,count,p50_us,p90_us,p99_us,max_us\n");
+        for (Summary summary : getSummaries()) {
+            csv.append(summary.key.replace(',', ';')).append(',')
+                    .append(summary.phase).append(',')
+                    .append(summary.count).append(',')
+                    .append(summary.p50Micros).append(',')
+                    .append(summary.p90Micros).append(',')
+                    .append(summary.p99Micros).append(',')
+                    .append(summary.maxMicros).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Percentiles of one histogram, read at time of creation.
+     */
+    public static class Summary {
+
+        public final String key;
+        public final String phase;
+        public final long count;
+        public final long p50Micros;
+        public final long p90Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        private Summary(String key, String phase, Histogram histogram) {
+            this.key = key;
+            this.phase = phase;
+            long[] counts = histogram.getCounts();
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.count = total;
+            this.p50Micros = Histogram.percentile(counts, total, 0.50);
+            this.p90Micros = Histogram.percentile(counts, total, 0.90);
+            this.p99Micros = Histogram.percentile(counts, total, 0.99);
+            this.maxMicros = histogram.getMaxMicros();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s %s: n=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms",
+                    key, phase, count, p50Micros / 1000f, p90Micros / 1000f, p99Micros / 1000f,
+                    maxMicros / 1000f);
+        }
+    }
+
+    /**
+     * Histogram of latencies with logarithmic buckets: every power of two of microseconds is split
+     * into 4 buckets, so percentiles are accurate to 25%, from 1us to over a minute.
+     */
+    static class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 26;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0));
+            counts.incrementAndGet(bucketOf(micros));
+            long currentMax;
+            do {
+                currentMax = max.get();
+            } while (micros > currentMax && !max.compareAndSet(currentMax, micros));
+        }
+
+        long getCount() {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts.get(i);
+            }
+            return total;
+        }
+
+        long[] getCounts() {
+            long[] snapshot = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = counts.get(i);
+            }
+            return snapshot;
+        }
+
+        long getMaxMicros() {
+            return max.get();
+        }
+
+        static int bucketOf(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKETS - 1;
+            }
+            int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * @return highest latency falling into bucket
+         */
+        static long upperBoundOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = bucket / SUB_BUCKETS - 1 + SUB_BUCKET_BITS;
+            long subBucket = bucket % SUB_BUCKETS;
+            return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+        }
+
+        static long percentile(long[] counts, long total, double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return upperBoundOf(bucket);
+                }
+            }
+            return upperBoundOf(counts.length - 1);
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package pl.coreorb.shoppinglist.utils;
 
+import android.support.annotation.VisibleForTesting;
 import android.util.Log;
 
 import pl.coreorb.shoppinglist.BuildConfig;
 
 /**
  * Class for adjusting log output.
+ * Methods taking arguments replace successive "{}" in message with them, only if message is
+ * logged, so disabled calls don't build strings nor call toString() of arguments. There are
+ * overloads for fixed number of arguments (and for long and boolean arguments, which aren't boxed,
+ * or are boxed to cached instances), so calls don't allocate arrays or boxes either.
+ * Independently of level, structured events and errors are recorded in EventLog, which can be
+ * dumped to file also from release builds.
  */
 public class Logger {
 
@@ -22,37 +29,221 @@ public class Logger {
     private static final int DEBUG_LEVEL = 6;
     private static final int RELEASE_LEVEL = 2;
 
+    private static final int LEVEL_WTF = 1;
+    private static final int LEVEL_E = 2;
+    private static final int LEVEL_W = 3;
+    private static final int LEVEL_I = 4;
+    private static final int LEVEL_D = 5;
+    private static final int LEVEL_V = 6;
+
+    private static final String PLACEHOLDER = "{}";
+
+    private static int level = BuildConfig.DEBUG ? DEBUG_LEVEL : RELEASE_LEVEL;
+
+    @VisibleForTesting
+    static void setLevel(int level) {
+        Logger.level = level;
+    }
+
     public static void v(String tag, String msg) {
-        if (BuildConfig.DEBUG && DEBUG_LEVEL >= 6 || !BuildConfig.DEBUG && RELEASE_LEVEL >= 6)
+        if (level >= LEVEL_V)
             Log.i(tag, msg);
     }
 
+    public static void v(String tag, String msg, Object arg1) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 1, arg1, null, null));
+    }
+
+    public static void v(String tag, String msg, long arg1) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 1, arg1, null, null));
+    }
+
+    public static void v(String tag, String msg, Object arg1, Object arg2) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    public static void v(String tag, String msg, Object arg1, long arg2) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    public static void v(String tag, String msg, long arg1, long arg2) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    public static void v(String tag, String msg, boolean arg1, long arg2) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    public static void v(String tag, String msg, Object arg1, Object arg2, Object arg3) {
+        if (level >= LEVEL_V)
+            Log.i(tag, format(msg, 3, arg1, arg2, arg3));
+    }
+
     public static void d(String tag, String msg) {
-        if ((BuildConfig.DEBUG && DEBUG_LEVEL >= 5) || (!BuildConfig.DEBUG && RELEASE_LEVEL >= 5))
+        if (level >= LEVEL_D)
             Log.d(tag, msg);
     }
 
+    @SuppressWarnings("unused")
+    public static void d(String tag, String msg, Object arg1) {
+        if (level >= LEVEL_D)
+            Log.d(tag, format(msg, 1, arg1, null, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void d(String tag, String msg, long arg1) {
+        if (level >= LEVEL_D)
+            Log.d(tag, format(msg, 1, arg1, null, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void d(String tag, String msg, Object arg1, Object arg2) {
+        if (level >= LEVEL_D)
+            Log.d(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void d(String tag, String msg, Object arg1, long arg2) {
+        if (level >= LEVEL_D)
+            Log.d(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    public static void d(String tag, String msg, long arg1, long arg2) {
+        if (level >= LEVEL_D)
+            Log.d(tag, format(msg, 2, arg1, arg2, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void d(String tag, String msg, Object arg1, Object arg2, Object arg3) {
+        if (level >= LEVEL_D)
+            Log.d(tag, format(msg, 3, arg1, arg2, arg3));
+    }
+
     @SuppressWarnings("unused")
     public static void i(String tag, String msg) {
-        if (BuildConfig.DEBUG && DEBUG_LEVEL >= 4 || !BuildConfig.DEBUG && RELEASE_LEVEL >= 4)
+        if (level >= LEVEL_I)
             Log.i(tag, msg);
     }
 
+    @SuppressWarnings("unused")
+    public static void i(String tag, String msg, Object arg1) {
+        if (level >= LEVEL_I)
+            Log.i(tag, format(msg, 1, arg1, null, null));
+    }
+
+    public static void i(String tag, String msg, long arg1) {
+        if (level >= LEVEL_I)
+            Log.i(tag, format(msg, 1, arg1, null, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void i(String tag, String msg, Object arg1, Object arg2) {
+        if (level >= LEVEL_I)
+            Log.i(tag, format(msg, 2, arg1, arg2, null));
+    }
+
     @SuppressWarnings("unused")
     public static void w(String tag, String msg) {
-        if (BuildConfig.DEBUG && DEBUG_LEVEL >= 3 || !BuildConfig.DEBUG && RELEASE_LEVEL >= 3)
+        if (level >= LEVEL_W)
             Log.w(tag, msg);
     }
 
+    public static void w(String tag, String msg, Object arg1) {
+        if (level >= LEVEL_W)
+            Log.w(tag, format(msg, 1, arg1, null, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void w(String tag, String msg, long arg1) {
+        if (level >= LEVEL_W)
+            Log.w(tag, format(msg, 1, arg1, null, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void w(String tag, String msg, Object arg1, Object arg2) {
+        if (level >= LEVEL_W)
+            Log.w(tag, format(msg, 2, arg1, arg2, null));
+    }
+
     public static void e(String tag, String msg) {
-        if (BuildConfig.DEBUG && DEBUG_LEVEL >= 2 || !BuildConfig.DEBUG && RELEASE_LEVEL >= 2)
+        recordError(tag);
+        if (level >= LEVEL_E)
             Log.e(tag, msg);
     }
 
+    @SuppressWarnings("unused")
+    public static void e(String tag, String msg, Object arg1) {
+        recordError(tag);
+        if (level >= LEVEL_E)
+            Log.e(tag, format(msg, 1, arg1, null, null));
+    }
+
+    @SuppressWarnings("unused")
+    public static void e(String tag, String msg, Object arg1, Object arg2) {
+        recordError(tag);
+        if (level >= LEVEL_E)
+            Log.e(tag, format(msg, 2, arg1, arg2, null));
+    }
+
     @SuppressWarnings("unused")
     public static void wtf(String tag, String msg) {
-        if (BuildConfig.DEBUG && DEBUG_LEVEL >= 1 || !BuildConfig.DEBUG && RELEASE_LEVEL >= 1)
+        recordError(tag);
+        if (level >= LEVEL_WTF)
             Log.wtf(tag, msg);
     }
 
+    /**
+     * Returns id of event, to keep in constant and pass to event().
+     *
+     * @param name name of event, like "item.update"
+     * @return id of event
+     */
+    public static int registerEvent(String name) {
+        return EventLog.registerName(name);
+    }
+
+    /**
+     * Records event in EventLog, whatever level is. Doesn't allocate.
+     *
+     * @param event         id returned by registerEvent()
+     * @param value1        first value, like id of changed row, or EventLog.NONE
+     * @param value2        second value, like number of changed rows, or EventLog.NONE
+     * @param durationNanos duration of operation, or EventLog.NONE
+     */
+    public static void event(int event, long value1, long value2, long durationNanos) {
+        EventLog.record(event, value1, value2, durationNanos);
+    }
+
+    /**
+     * Errors are recorded as events named after tag, so their place among other events is known.
+     */
+    private static void recordError(String tag) {
+        EventLog.record(EventLog.registerName(tag), EventLog.NONE, EventLog.NONE, EventLog.NONE);
+    }
+
+    /**
+     * Replaces first count placeholders of message with arguments, placeholders without arguments
+     * are left as they are.
+     */
+    @VisibleForTesting
+    static String format(String msg, int count, Object arg1, Object arg2, Object arg3) {
+        StringBuilder builder = new StringBuilder(msg.length() + 32 * count);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int placeholder = msg.indexOf(PLACEHOLDER, start);
+            if (placeholder == -1) {
+                break;
+            }
+            builder.append(msg, start, placeholder).append(i == 0 ? arg1 : i == 1 ? arg2 : arg3);
+            start = placeholder + PLACEHOLDER.length();
+        }
+        return builder.append(msg, start, msg.length()).toString();
+    }
+
 }
@@ -0,0 +1,58 @@
+package pl.coreorb.shoppinglist.utils;
+
+import android.support.v4.os.TraceCompat;
+
+import pl.coreorb.shoppinglist.BuildConfig;
+
+/**
+ * Named sections of system trace (systrace, Android Studio profiler). Sections are written only
+ * in debug builds, in release calls return right away, without building section names.
+ * Every beginSection() must be followed by endSection() on the same thread, use try/finally.
+ */
+public class Tracer {
+
+    private static final boolean ENABLED = BuildConfig.DEBUG;
+
+    //longer names are rejected by system
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private Tracer() {
+    }
+
+    /**
+     * Begins section.
+     *
+     * @param name name of section
+     */
+    public static void beginSection(String name) {
+        if (ENABLED) {
+            TraceCompat.beginSection(truncate(name));
+        }
+    }
+
+    /**
+     * Begins section named with name and code, like uri code matched by content provider.
+     * Name is built only if tracing is enabled.
+     *
+     * @param name name of section
+     * @param code code appended to name
+     */
+    public static void beginSection(String name, int code) {
+        if (ENABLED) {
+            TraceCompat.beginSection(truncate(name + " " + code));
+        }
+    }
+
+    /**
+     * Ends section begun most recently on current thread.
+     */
+    public static void endSection() {
+        if (ENABLED) {
+            TraceCompat.endSection();
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() > MAX_SECTION_NAME_LENGTH ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name;
+    }
+}
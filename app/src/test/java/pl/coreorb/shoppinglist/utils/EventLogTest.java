@@ -0,0 +1,74 @@
+package pl.coreorb.shoppinglist.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that events recorded concurrently are dumped whole and that recording doesn't allocate.
+ */
+public class EventLogTest {
+
+    private static final int THREADS = 4;
+    private static final int EVENTS_PER_THREAD = 10000;
+
+    @Test
+    public void concurrentEventsAreDumpedWhole() throws InterruptedException, IOException {
+        final int event = EventLog.registerName("test.concurrent");
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                        //second value is always derived from first, so torn event is detected
+                        EventLog.record(event, thread * EVENTS_PER_THREAD + i, -(thread * EVENTS_PER_THREAD + i), i);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        StringWriter writer = new StringWriter();
+        int written = EventLog.dump(writer);
+        String[] lines = writer.toString().split("\n");
+        assertEquals(written + 1, lines.length);
+        assertTrue(written > 0);
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split("\t", -1);
+            assertEquals("test.concurrent", fields[1]);
+            assertEquals(-Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+        }
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int event = EventLog.registerName("test.allocation");
+        record(event, 100000);
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        record(event, 1000000);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("recording allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void record(int event, int count) {
+        for (int i = 0; i < count; i++) {
+            EventLog.record(event, 100000 + i, EventLog.NONE, i);
+            EventLog.record(EventLog.registerName("test.allocation"), i, i, EventLog.NONE);
+        }
+    }
+}
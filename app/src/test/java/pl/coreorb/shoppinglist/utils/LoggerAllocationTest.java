@@ -0,0 +1,74 @@
+package pl.coreorb.shoppinglist.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that calls of Logger with arguments don't allocate when their level is disabled, like
+ * verbose calls in release builds. Runs on JVM, which can report bytes allocated by thread.
+ */
+public class LoggerAllocationTest {
+
+    private static final String LOG_TAG = "LoggerAllocationTest";
+    private static final int WARM_UP_CALLS = 100000;
+    private static final int MEASURED_CALLS = 1000000;
+    //measuring itself may allocate few bytes
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    private final Object item = new Object() {
+        @Override
+        public String toString() {
+            throw new AssertionError("toString() called by disabled log call");
+        }
+    };
+
+    @Before
+    public void setUp() {
+        //release level, only errors are logged
+        Logger.setLevel(2);
+    }
+
+    @After
+    public void tearDown() {
+        Logger.setLevel(6);
+    }
+
+    @Test
+    public void disabledCallsDoNotAllocate() {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        logDisabled(WARM_UP_CALLS);
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        logDisabled(MEASURED_CALLS);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("disabled log calls allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    @Test
+    public void formatReplacesPlaceholdersInOrder() {
+        assertEquals("createItem(a, 1000)", Logger.format("createItem({}, {})", 2, "a", 1000L, null));
+        assertEquals("search(a, {})", Logger.format("search({}, {})", 1, "a", null, null));
+        assertEquals("flush(): 1 of 2", Logger.format("flush(): {} of {}", 3, 1, 2, 3));
+    }
+
+    private void logDisabled(int calls) {
+        for (long i = 0; i < calls; i++) {
+            long id = 1000 + i;
+            Logger.v(LOG_TAG, "updateItem({})", item);
+            Logger.v(LOG_TAG, "checkAllItems({})", id);
+            Logger.v(LOG_TAG, "createItem({}, {})", item, id);
+            Logger.v(LOG_TAG, "showViewList({}, {})", true, item);
+            Logger.d(LOG_TAG, "flush(): writing {} items for {} updates", id, id);
+            Logger.v(LOG_TAG, "getItemsForShoppingListPage({}, {}, {})", item, item, item);
+        }
+    }
+}